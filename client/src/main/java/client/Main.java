@@ -18,6 +18,7 @@ package client;
 import client.scenes.BaseCtrl;
 import client.scenes.CollectionCtrl;
 import client.scenes.MainCtrl;
+import client.utils.ServerUtils;
 import com.google.inject.Injector;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
@@ -65,4 +66,13 @@ public class Main extends Application
         FXMLLoader loader = new FXMLLoader(getClass().getResource("/client/scenes/Base.fxml"));
         loader.setResources(bundle);
     }
-}
\ No newline at end of file
+
+    /**
+     * Closes the connections to the servers when the application exits
+     */
+    @Override
+    public void stop()
+    {
+        INJECTOR.getInstance(ServerUtils.class).close();
+    }
+}
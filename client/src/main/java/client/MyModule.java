@@ -19,9 +19,11 @@ import client.scenes.BaseCtrl;
 import client.scenes.CollectionCtrl;
 import client.src.CollectionManager;
 import client.src.CurrentNoteManager;
+import client.src.LiveEditManager;
 import client.src.NoteManager;
 import client.src.PopUpManager;
 import client.utils.Configuration;
+import client.utils.HttpClientPool;
 import client.utils.LanguageManager;
 import client.utils.MyWebSocketClient;
 import client.utils.ServerUtils;
@@ -45,8 +47,10 @@ public class MyModule implements Module
         binder.bind(CollectionCtrl.class).in(Scopes.SINGLETON);
         binder.bind(NoteManager.class).in(Scopes.SINGLETON);
         binder.bind(CurrentNoteManager.class).in(Scopes.SINGLETON);
+        binder.bind(LiveEditManager.class).in(Scopes.SINGLETON);
         binder.bind(MyWebSocketClient.class).in(Scopes.SINGLETON);
         binder.bind(ServerUtils.class).in(Scopes.SINGLETON);
+        binder.bind(HttpClientPool.class).in(Scopes.SINGLETON);
         binder.bind(CollectionManager.class).in(Scopes.SINGLETON);
         binder.bind(Configuration.class).in(Scopes.SINGLETON);
         binder.bind(LanguageManager.class).in(Scopes.SINGLETON);
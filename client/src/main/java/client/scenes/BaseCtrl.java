@@ -5,8 +5,8 @@ import client.utils.LanguageManager;
 import client.src.*;
 import client.utils.MyWebSocketClient;
 import client.utils.ServerUtils;
-import commons.Note;
 import jakarta.inject.Inject;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
@@ -121,15 +121,14 @@ public class BaseCtrl implements Initializable
             return;
         }
 
-        try
-        {
-            Note newNote = serverUtils.createNote(toAddInto.getServerURL(), toAddInto.getId());
-
-            ClientNote newClientNote = noteManager.addNote(newNote, toAddInto.getServerURL());
-            noteManager.setCurrentNote(newClientNote);
-            noteManager.updateVisibilityAll();
-        }
-        catch (Exception _){}
+        String url = toAddInto.getServerURL();
+        serverUtils.createNoteAsync(url, toAddInto.getId())
+                .thenAccept(newNote -> Platform.runLater(() ->
+                {
+                    ClientNote newClientNote = noteManager.addNote(newNote, url);
+                    noteManager.setCurrentNote(newClientNote);
+                    noteManager.updateVisibilityAll();
+                }));
     }
 
     /**
@@ -139,9 +138,8 @@ public class BaseCtrl implements Initializable
     public void refreshBtnClick()
     {
         mainCtrl.closeCollections();
-        collectionManager.refreshCollections();
-        noteManager.refreshNotes();
-        noteManager.updateVisibilityAll();
+        collectionManager.refreshCollections()
+                .thenRun(() -> noteManager.refreshNotes());
         popUpManager.refreshNotification();
 
     }
@@ -175,8 +173,9 @@ public class BaseCtrl implements Initializable
         // On connection established, the wsClient will notify:
         // the collection manager via CollectionManager.serverOnline(String serverURL)
         // next, the collection manager will propagate this to the note manager
-        // via NoteManager.addCollection(ClientCollection collection)
-        // for each collection that came online
+        // via NoteManager.syncServer(String serverURL), which loads collections
+        // that came online for the first time and fetches the changes since
+        // the last sync for the rest
         //
         // On connection lost, the wsClient will notify:
         // the collection manager via CollectionManager.serverOffline(String serverURL)
@@ -184,7 +183,7 @@ public class BaseCtrl implements Initializable
         // via NoteManager.serverOffline(String serverURL)
         wsClient.initialize();
 
-        tfSearchBar.textProperty().addListener( e -> noteManager.updateVisibilityAll());
+        tfSearchBar.textProperty().addListener( e -> noteManager.updateSearchResults());
 
         refreshFilter();
         languageManager.getProperty("all_collections").addListener((ob, oldValue, newValue) ->
@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.ResourceBundle;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.CompletableFuture;
 
 public class CollectionCtrl implements Initializable
 {
@@ -95,6 +96,7 @@ public class CollectionCtrl implements Initializable
     private Timer changeTimer;
 
     private ClientCollection collection;
+    private boolean titleUpdateInFlight;
 
     /**
      * Initialize method for CollectionCtrl
@@ -440,26 +442,21 @@ public class CollectionCtrl implements Initializable
             duplicateNicknameStatus();
             return;
         }
-        try
-        {
-            Collection byTitle = serverUtils.getCollectionByTitle(address, title);
-            if(byTitle != null)
-            {
-                if(collectionManager.collectionExists(byTitle, address))
+        serverUtils.getCollectionByTitleAsync(address, title)
+                .whenComplete((byTitle, e) -> Platform.runLater(() ->
                 {
-                    collectionAlreadySavedStatus();
-                }
-                else
-                {
-                    collectionFoundStatus();
-                }
-            }
-            else
-            {
-                collectionCanBeAddedStatus();
-            }
-        }
-        catch(Exception e)
+                    // Ignore the result if the fields changed in the meantime
+                    if (address.equals(serverAddressComboBox.getValue())
+                            && title.equals(collectionTitleTextField.getText()))
+                    {
+                        showAdditionStatus(address, byTitle, e);
+                    }
+                }));
+    }
+
+    private void showAdditionStatus(String address, Collection byTitle, Throwable e)
+    {
+        if (e != null)
         {
             serverOfflineStatus();
             changeTimer = new Timer();
@@ -472,6 +469,21 @@ public class CollectionCtrl implements Initializable
                 }
             }, SAVING_DELAY * 10);
         }
+        else if(byTitle != null)
+        {
+            if(collectionManager.collectionExists(byTitle, address))
+            {
+                collectionAlreadySavedStatus();
+            }
+            else
+            {
+                collectionFoundStatus();
+            }
+        }
+        else
+        {
+            collectionCanBeAddedStatus();
+        }
     }
 
     /**
@@ -489,28 +501,24 @@ public class CollectionCtrl implements Initializable
         }
         address = address.replaceFirst("(?i)http", "http");
 
-        try
-        {
-            Collection byTitle = serverUtils.getCollectionByTitle(address, title);
-            ClientCollection res;
-            if(byTitle != null)
-            {
-                res = collectionManager.addCollection(byTitle, nickname, address);
-            }
-            else
-            {
-                Collection newCol = serverUtils.createCollection(address, title);
-                res = collectionManager.addCollection(newCol, nickname, address);
-            }
-            updateList();
-            collectionList.getSelectionModel().select(res.getNickname());
-            baseCtrl.refreshFilter();
-            currentNoteManager.refreshCollectionSelect();
-        }
-        catch(Exception e)
-        {
-            updateAddition();
-        }
+        String server = address;
+        serverUtils.getCollectionByTitleAsync(server, title)
+                .thenCompose(byTitle -> byTitle != null
+                        ? CompletableFuture.completedFuture(byTitle)
+                        : serverUtils.createCollectionAsync(server, title))
+                .whenComplete((data, e) -> Platform.runLater(() ->
+                {
+                    if (e != null)
+                    {
+                        updateAddition();
+                        return;
+                    }
+                    ClientCollection res = collectionManager.addCollection(data, nickname, server);
+                    updateList();
+                    collectionList.getSelectionModel().select(res.getNickname());
+                    baseCtrl.refreshFilter();
+                    currentNoteManager.refreshCollectionSelect();
+                }));
     }
 
     /**
@@ -578,31 +586,57 @@ public class CollectionCtrl implements Initializable
      */
     public void updateEditTitle()
     {
-        try
+        if (titleUpdateInFlight)
         {
-            if(serverUtils.getCollectionByTitle(
-                    collection.getServerURL(),
-                    collectionTitleTextField.getText()
-            ) != null)
-            {
-                localNicknameTextField.setDisable(true);
-                titleAlreadyUsedStatus();
-            }
-            else
-            {
-                Collection newData = collection.getCollectionData();
-                newData.setTitle(collectionTitleTextField.getText());
-                serverUtils.updateCollection(collection.getServerURL(), newData);
-                collection.setCollectionData(newData);
-                localNicknameTextField.setDisable(false);
-                titleSavedStatus();
-            }
+            return;
         }
-        catch (Exception e)
+        titleUpdateInFlight = true;
+
+        ClientCollection edited = collection;
+        String title = collectionTitleTextField.getText();
+        Collection newData = edited.getCollectionData();
+        serverUtils.getCollectionByTitleAsync(edited.getServerURL(), title)
+                .thenCompose(byTitle ->
+                {
+                    if (byTitle != null)
+                    {
+                        return CompletableFuture.completedFuture(false);
+                    }
+                    newData.setTitle(title);
+                    return serverUtils.updateCollectionAsync(edited.getServerURL(), newData)
+                            .thenApply(x -> true);
+                })
+                .whenComplete((saved, e) -> Platform.runLater(() ->
+                {
+                    titleUpdateInFlight = false;
+                    if (e == null && saved)
+                    {
+                        edited.setCollectionData(newData);
+                    }
+                    if (edited == collection)
+                    {
+                        showTitleStatus(saved, e);
+                    }
+                }));
+    }
+
+    private void showTitleStatus(Boolean saved, Throwable e)
+    {
+        if (e != null)
         {
             collectionTitleTextField.setText(collection.getTitle());
             updateEdit();
         }
+        else if (saved)
+        {
+            localNicknameTextField.setDisable(false);
+            titleSavedStatus();
+        }
+        else
+        {
+            localNicknameTextField.setDisable(true);
+            titleAlreadyUsedStatus();
+        }
     }
 
     /**
@@ -646,22 +680,23 @@ public class CollectionCtrl implements Initializable
             return;
         }
 
-        try
-        {
-            serverUtils.deleteCollection(
-                    collection.getServerURL(),
-                    collection.getCollectionData().getId()
-            );
-            collectionManager.remove(collection);
-            clearSetup();
-            updateList();
-            baseCtrl.refreshFilter();
-            currentNoteManager.refreshCollectionSelect();
-        }
-        catch (Exception e)
-        {
-            updateEdit();
-        }
+        ClientCollection deleted = collection;
+        serverUtils.deleteCollectionAsync(
+                        deleted.getServerURL(),
+                        deleted.getCollectionData().getId())
+                .whenComplete((x, e) -> Platform.runLater(() ->
+                {
+                    if (e != null)
+                    {
+                        updateEdit();
+                        return;
+                    }
+                    collectionManager.remove(deleted);
+                    clearSetup();
+                    updateList();
+                    baseCtrl.refreshFilter();
+                    currentNoteManager.refreshCollectionSelect();
+                }));
     }
 
     /**
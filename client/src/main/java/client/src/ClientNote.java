@@ -39,6 +39,14 @@ public class ClientNote
     private String serverURL;
     private boolean isOnline;
 
+    /**
+     * The body and revision of the note as the server has them,
+     * body changes are sent as a patch against this state.
+     * Written by the save requests, so visible to all threads.
+     */
+    private volatile String syncedBody;
+    private volatile long syncedRevision;
+
     private NoteManager noteManager;
 
     /**
@@ -54,6 +62,7 @@ public class ClientNote
         this.serverURL = serverURL;
         this.isOnline = true;
         this.noteManager = noteManager;
+        markSynced(noteData.getBody(), noteData.getRevision());
     }
 
     /**
@@ -217,6 +226,16 @@ public class ClientNote
         return serverURL;
     }
 
+    /**
+     * Notes in the list are created from summaries, so their
+     * body is only loaded once the note is opened
+     * @return true if the body of the note is available on the client
+     */
+    public boolean isBodyLoaded()
+    {
+        return noteData.getBody() != null;
+    }
+
     /**
      * Check if the note is online
      * @return true if the note is online, false otherwise
@@ -265,8 +284,35 @@ public class ClientNote
         serverURL = address;
     }
 
+    /**
+     * Replace the note data with the state on the server
+     * @param noteData The note as the server has it
+     */
     public void setNoteData(Note noteData)
     {
         this.noteData = noteData;
+        markSynced(noteData.getBody(), noteData.getRevision());
+    }
+
+    /**
+     * Remember what the server has after a successful save
+     * @param body The body the server has
+     * @param revision The revision of the note on the server
+     */
+    public void markSynced(String body, long revision)
+    {
+        this.syncedBody = body;
+        this.syncedRevision = revision;
+        this.noteData.setRevision(revision);
+    }
+
+    public String getSyncedBody()
+    {
+        return syncedBody;
+    }
+
+    public long getSyncedRevision()
+    {
+        return syncedRevision;
     }
 }
@@ -13,6 +13,7 @@ import javafx.application.Platform;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class CollectionManager
 {
@@ -87,38 +88,43 @@ public class CollectionManager
                 new ArrayList<>(clientCollections
                         .stream().filter(c -> c.getServerURL().equals(url)).toList());
 
-        for (ClientCollection collection : collections)
-        {
-            // Make sure the collection is up to date with the server
-            try
-            {
-                Collection serverCollection =
-                        serverUtils
-                                .getCollectionByID(url, collection.getId());
-                collection.setCollectionData(serverCollection);
-                collection.setOnline(true);
-                noteManager.addCollection(collection);
-            }
-            catch (Exception e)
-            {
-                if (e.getMessage()
-                        .equals(String.valueOf(ErrorCodes.COLLECTION_DOES_NOT_EXIST.getCode())))
+        // Make sure the collections are up to date with the server, then
+        // load new collections and fetch what changed while the server was offline
+        CompletableFuture.allOf(collections.stream()
+                        .map(this::refreshCollection)
+                        .toArray(CompletableFuture[]::new))
+                .thenRun(() -> noteManager.syncServer(url));
+    }
+
+    /**
+     * Fetch the latest data of a collection in the background.
+     * A collection that was deleted on the server is removed on the FX thread.
+     * @param collection The collection to refresh
+     * @return Completes once the collection is refreshed
+     */
+    private CompletableFuture<Void> refreshCollection(ClientCollection collection)
+    {
+        return serverUtils.getCollectionByIDAsync(collection.getServerURL(), collection.getId())
+                .handle((serverCollection, e) ->
                 {
-                    // The collection was deleted on the server
-                    clientCollections.remove(collection);
-                    if (collection.equals(currentDefault))
+                    if (e == null)
                     {
-                        removeCurrentDefault();
+                        collection.setCollectionData(serverCollection);
+                        collection.setOnline(true);
                     }
-                }
-                else if (e.getMessage()
-                        .equals(String.valueOf(ErrorCodes.SERVER_UNREACHABLE.getCode())))
-                {
-                    throw new RuntimeException("Server is unreachable in " +
-                            "CollectionManager serverOnline which should not be the case!");
-                }
-            }
-        }
+                    else if (String.valueOf(ErrorCodes.COLLECTION_DOES_NOT_EXIST.getCode())
+                            .equals(ServerUtils.unwrap(e).getMessage()))
+                    {
+                        // The collection was deleted on the server
+                        collection.setOnline(false);
+                        Platform.runLater(() -> remove(collection));
+                    }
+                    else
+                    {
+                        collection.setOnline(false);
+                    }
+                    return null;
+                });
     }
 
     /**
@@ -151,39 +157,14 @@ public class CollectionManager
     }
 
     /**
-     * Refreshes all collections
+     * Refreshes all collections in the background
+     * @return Completes once every collection is refreshed
      */
-    public void refreshCollections()
+    public CompletableFuture<Void> refreshCollections()
     {
-        clientCollections.forEach(collection ->
-        {
-            try
-            {
-                Collection serverCollection =
-                        serverUtils.getCollectionByID(collection.getServerURL()
-                                , collection.getId());
-                collection.setCollectionData(serverCollection);
-                collection.setOnline(true);
-            }
-            catch (Exception e)
-            {
-                if (e.getMessage().equals(String.valueOf(
-                        ErrorCodes.COLLECTION_DOES_NOT_EXIST.getCode())))
-                {
-                    // The collection was deleted on the server
-                    remove(collection);
-                    if (collection.equals(currentDefault))
-                    {
-                        removeCurrentDefault();
-                    }
-                }
-                else if (e.getMessage().equals(String.valueOf(
-                        ErrorCodes.SERVER_UNREACHABLE.getCode())))
-                {
-                    collection.setOnline(false);
-                }
-            }
-        });
+        return CompletableFuture.allOf(clientCollections.stream()
+                .map(this::refreshCollection)
+                .toArray(CompletableFuture[]::new));
     }
 
     public ClientCollection getCollectionByNickName(String nickName)
@@ -312,7 +293,7 @@ public class CollectionManager
     public void remove(ClientCollection collection)
     {
         clientCollections.remove(collection);
-        if(currentDefault.equals(collection))
+        if(collection.equals(currentDefault))
         {
             removeCurrentDefault();
         }
@@ -321,31 +302,33 @@ public class CollectionManager
         {
             myWebSocketClient.endConnection(collection.getServerURL());
         }
+        else
+        {
+            myWebSocketClient.syncSubscriptions(collection.getServerURL());
+        }
         configuration.setAndSave(clientCollections, currentDefault);
     }
 
     /**
      * The start for handling notifications about collection update
-     * @param id the updated collection's id
+     * @param data the updated collection
      * @param address the updated collection's server address
      */
-    public void updateCollectionNotif(long id, String address)
+    public void updateCollectionNotif(Collection data, String address)
     {
         ClientCollection collection = clientCollections
                 .stream()
-                .filter(x -> x.getId() == id && x.getServerURL().equals(address))
+                .filter(x -> x.getId() == data.getId() && x.getServerURL().equals(address))
                 .findFirst().orElse(null);
         if(collection == null)
         {
             return;
         }
-        try
+        Platform.runLater(() ->
         {
-            collection.setCollectionData(serverUtils.getCollectionByID(address, id));
-            Platform.runLater(() -> collectionCtrl.updateNotif(collection));
-        }
-        catch (Exception _)
-        { }
+            collection.setCollectionData(data);
+            collectionCtrl.updateNotif(collection);
+        });
     }
 
     /**
@@ -2,6 +2,11 @@ package client.src;
 
 import client.utils.LanguageManager;
 import client.utils.ServerUtils;
+import commons.ErrorCodes;
+import commons.Note;
+import commons.NotePatch;
+import commons.TextEdit;
+import commons.TextOperation;
 import jakarta.inject.Inject;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
@@ -12,6 +17,8 @@ import javafx.util.Duration;
 
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 public class CurrentNoteManager
 {
@@ -28,6 +35,12 @@ public class CurrentNoteManager
     private Tooltip ttInvalidTitle;
     private Tooltip ttEmptyTitle;
 
+    /**
+     * The last save sent to the server. Saves are chained on it,
+     * so they reach the server in the order they were made.
+     */
+    private CompletableFuture<Void> lastSave = CompletableFuture.completedFuture(null);
+
     private static final int SAVING_DELAY = 500;
     private static final int MAX_TITLE_LENGTH = 20;
     private static final int CHARACTER_SAVE_THRESHOLD = 10;
@@ -44,6 +57,9 @@ public class CurrentNoteManager
     @Inject
     private PopUpManager popUpManager;
 
+    @Inject
+    private LiveEditManager liveEditManager;
+
     /**
      * Create a new CurrentNoteManager using a TextField and a TextArea
      */
@@ -72,6 +88,7 @@ public class CurrentNoteManager
         this.lMoveCollection = lMoveCollection;
 
         this.markdownParser = new MarkdownParser(wv);
+        liveEditManager.initialize(currentNoteBody, markdownParser::renderMarkdownToWebView);
 
         this.ttInvalidTitle = new Tooltip();
         this.ttInvalidTitle.getStyleClass().add("tooltip");
@@ -95,7 +112,7 @@ public class CurrentNoteManager
         currentNoteTitle.textProperty()
                 .addListener((observable, oldValue, newValue) -> onTitleTyping(newValue));
         currentNoteBody.textProperty()
-                .addListener((observable, oldValue, newValue) -> onBodyTyping(newValue));
+                .addListener((observable, oldValue, newValue) -> onBodyChanged(oldValue, newValue));
         cbNoteMoveCollection.setOnAction(event -> onNoteMove());
 
         ttInvalidTitle.textProperty().bind(languageManager.getProperty("invalid_title"));
@@ -114,9 +131,51 @@ public class CurrentNoteManager
         }
 
         this.currentNoteTitle.setText(currentNote.getNoteTitle());
-        this.currentNoteBody.setText(currentNote.getNoteBody());
         setupCollectionSelect();
-        markdownParser.renderMarkdownToWebView(currentNote.getNoteBody());
+        if (liveEditManager.isLive(currentNote))
+        {
+            // The text area is newer than the saved body, edits of others are merged into it
+            currentNote.setNoteBody(currentNoteBody.getText());
+            return;
+        }
+        this.currentNoteBody.setText(bodyText(currentNote));
+        markdownParser.renderMarkdownToWebView(bodyText(currentNote));
+    }
+
+    /**
+     * Fetch the full note, including its body, from the server.
+     * The note list is built from summaries, so this is done
+     * whenever a note is opened. The body can only be edited once it is loaded.
+     * @param note The note to load
+     */
+    private void loadNote(ClientNote note)
+    {
+        if (!note.isOnline())
+        {
+            return;
+        }
+        serverUtils.getNoteByIdAsync(note.getServerURL(), note.getNoteId())
+                .thenAccept(loaded -> Platform.runLater(() ->
+                {
+                    note.setNoteData(loaded);
+                    ((Label) (note.getNoteBox().getChildren().getFirst()))
+                            .setText(note.getNoteTitle());
+                    if (note.equals(currentNote))
+                    {
+                        syncChanges();
+                        currentNoteBody.setDisable(false);
+                    }
+                }));
+    }
+
+    /**
+     * The body of a note that is not loaded is shown as empty
+     * @param note The note to get the body of
+     * @return The body of the note or an empty string
+     */
+    private static String bodyText(ClientNote note)
+    {
+        return note.isBodyLoaded() ? note.getNoteBody() : "";
     }
 
     /**
@@ -166,6 +225,27 @@ public class CurrentNoteManager
         }, SAVING_DELAY); // 3 seconds delay
     }
 
+    /**
+     * While the body is edited together with others every change is sent right away,
+     * otherwise it is saved after a delay.
+     * @param oldBody The body before the change
+     * @param newBody The body after the change
+     */
+    private void onBodyChanged(String oldBody, String newBody)
+    {
+        if (liveEditManager.isApplyingRemote())
+        {
+            return;
+        }
+        if (!liveEditManager.isLive(currentNote))
+        {
+            onBodyTyping(newBody);
+            return;
+        }
+        markdownParser.renderMarkdownToWebView(newBody);
+        liveEditManager.localEdit(oldBody, newBody);
+    }
+
     /**
      * On change in the body, sets a timer that
      * calls the saveBodyChanges method in <SAVING_DELAY> seconds.
@@ -173,7 +253,7 @@ public class CurrentNoteManager
      */
     private void onBodyTyping(String newBody)
     {
-        if (currentNote == null)
+        if (currentNote == null || !currentNote.isBodyLoaded())
         {
             return;
         }
@@ -227,34 +307,38 @@ public class CurrentNoteManager
                 !selectedCollection.isOnline())
             return;
 
-        try
-        {
-            ClientNote updated = serverUtils
-                    .moveNoteIntoCollection(selectedCollection.getServerURL(),
-                            currentNote, selectedCollection.getId());
+        ClientNote moved = currentNote;
+        serverUtils.moveNoteIntoCollectionAsync(selectedCollection.getServerURL(),
+                        moved, selectedCollection.getId())
+                .whenComplete((updated, e) -> Platform.runLater(() ->
+                {
+                    if (e == null)
+                    {
+                        // If it updates the note, update the current note
+                        moved.setServerURL(updated.getServerURL());
+                        moved.setNoteData(updated.getNoteData());
+                    }
+                    else if (ServerUtils.unwrap(e) instanceof IllegalArgumentException
+                            && moved.equals(currentNote))
+                    {
+                        // If the update fails, show an error notification,
+                        // restore the previous selected val in the combo box
+                        popUpManager.cannotMoveNoteErrorNotification();
+                        cbNoteMoveCollection.setValue(collectionNickname(moved));
+                    }
+                }));
+    }
 
-            // If it updates the note, update the current note
-            currentNote.setServerURL(updated.getServerURL());
-            currentNote.setNoteData(updated.getNoteData());
-        }
-        catch (IllegalArgumentException e)
-        {
-            // If the update fails, show an error notification, restore the previous selected val
-            // in the combo box
-            popUpManager.cannotMoveNoteErrorNotification();
-            Platform.runLater(()->
-            {
-                cbNoteMoveCollection
-                        .setValue(collectionManager
-                                .getCollections()
-                                .stream()
-                                .filter(x -> x.getId() == currentNote.getNoteCollectionId() &&
-                                        x.getServerURL().equals(currentNote.getServerURL()))
-                                .findFirst()
-                                .map(ClientCollection::getNickname)
-                                .orElse(""));
-            });
-        }
+    private String collectionNickname(ClientNote note)
+    {
+        return collectionManager
+                .getCollections()
+                .stream()
+                .filter(x -> x.getId() == note.getNoteCollectionId() &&
+                        x.getServerURL().equals(note.getServerURL()))
+                .findFirst()
+                .map(ClientCollection::getNickname)
+                .orElse("");
     }
 
     /**
@@ -265,52 +349,65 @@ public class CurrentNoteManager
      */
     private void saveTitleChanges(String newTitle)
     {
-        if (currentNote != null && currentNote.isOnline())
+        if (!canSave() || currentNote.getNoteTitle().equals(newTitle))
         {
-            String oldTitle = currentNote.getNoteTitle();
+            return;
+        }
 
-            try
+        ClientNote note = currentNote;
+        String oldTitle = note.getNoteTitle();
+        note.setNoteTitle(newTitle);
+        save(note).whenComplete((x, e) -> Platform.runLater(() ->
+        {
+            if (e == null)
             {
-                currentNote.setNoteTitle(newTitle);
-                serverUtils.updateNote(currentNote.getServerURL() ,currentNote.getNoteData());
-                // If the title is invalid this line will throw an exception,
-                // and we will handle it in the catch block
-
-                // If it is valid, update the title in the UI, and reset the error indicators
-
-                ((Label) (currentNote.getNoteBox().getChildren().getFirst())).setText(newTitle);
-
-                currentNoteTitle.getStyleClass().remove("note-title-invalid");
-                if (!currentNoteTitle.getStyleClass().contains("note-title"))
+                // The title is valid, update the title in the UI
+                // and reset the error indicators
+                ((Label) (note.getNoteBox().getChildren().getFirst())).setText(newTitle);
+                if (note.equals(currentNote))
                 {
-                    currentNoteTitle.getStyleClass().add("note-title");
+                    showTitleValid();
                 }
-                currentNoteTitle.setTooltip(null);
             }
-            catch (IllegalArgumentException e)
+            else if (ServerUtils.unwrap(e) instanceof IllegalArgumentException)
             {
-                // Handle the exception
                 // The title is invalid
                 // Return to previous title but keep the incorrect one in the UI box
                 // and activate the error indicators
-                currentNote.setNoteTitle(oldTitle);
-                currentNoteTitle.getStyleClass().remove("note-title");
-
-                if (!currentNoteTitle.getStyleClass().contains("note-title-invalid"))
+                note.setNoteTitle(oldTitle);
+                if (note.equals(currentNote))
                 {
-                    currentNoteTitle.getStyleClass().add("note-title-invalid");
-                    if(newTitle.isEmpty())
-                    {
-                        currentNoteTitle.setTooltip(ttEmptyTitle);
-                    }
-                    else
-                    {
-                        currentNoteTitle.setTooltip(ttInvalidTitle);
-                    }
-
+                    showTitleInvalid(newTitle);
                 }
             }
+        }));
+    }
 
+    private void showTitleValid()
+    {
+        currentNoteTitle.getStyleClass().remove("note-title-invalid");
+        if (!currentNoteTitle.getStyleClass().contains("note-title"))
+        {
+            currentNoteTitle.getStyleClass().add("note-title");
+        }
+        currentNoteTitle.setTooltip(null);
+    }
+
+    private void showTitleInvalid(String newTitle)
+    {
+        currentNoteTitle.getStyleClass().remove("note-title");
+
+        if (!currentNoteTitle.getStyleClass().contains("note-title-invalid"))
+        {
+            currentNoteTitle.getStyleClass().add("note-title-invalid");
+            if(newTitle.isEmpty())
+            {
+                currentNoteTitle.setTooltip(ttEmptyTitle);
+            }
+            else
+            {
+                currentNoteTitle.setTooltip(ttInvalidTitle);
+            }
         }
     }
 
@@ -321,22 +418,164 @@ public class CurrentNoteManager
      */
     private void saveBodyChanges(String newBody)
     {
-        if (currentNote != null && currentNote.isOnline())
+        if (!canSave() || liveEditManager.isLive(currentNote)
+                || currentNote.getNoteBody().equals(newBody))
         {
-            try
+            return;
+        }
+
+        currentNote.setNoteBody(newBody);
+        savePatch(currentNote);
+    }
+
+    /**
+     * Send the whole note to the server after the previous save completed.
+     * @param note The note to save
+     * @return Completes when this save is done
+     */
+    private CompletableFuture<Void> save(ClientNote note)
+    {
+        Note copy = copyOf(note);
+        return enqueueSave(() -> saveFull(note, copy));
+    }
+
+    /**
+     * Send only the changed part of the body to the server after the
+     * previous save completed. The patch is made against the body the
+     * server had after that save, if the note was changed on the server
+     * in the meantime the whole note is sent instead.
+     * @param note The note to save
+     */
+    private void savePatch(ClientNote note)
+    {
+        Note copy = copyOf(note);
+        enqueueSave(() ->
+        {
+            NotePatch patch = NotePatch.diff(note.getSyncedRevision(),
+                    note.getSyncedBody(), copy.getBody());
+            if (patch.edits().isEmpty())
             {
-                currentNote.setNoteBody(newBody);
-                serverUtils.updateNote(currentNote.getServerURL(), currentNote.getNoteData());
+                return CompletableFuture.completedFuture(null);
             }
-            catch (Exception _)
-            {}
+            return serverUtils.patchNoteAsync(note.getServerURL(), copy.getId(), patch)
+                    .thenAccept(revision -> note.markSynced(copy.getBody(), revision))
+                    .exceptionallyCompose(e -> isOutOfDate(e)
+                            ? saveFull(note, copy)
+                            : CompletableFuture.failedFuture(e));
+        });
+    }
+
+    /**
+     * Send the whole note, made on the revision the earlier saves left it at.
+     * If someone else saved the note in the meantime, their changes are merged in.
+     * @param note The note to save
+     * @param copy The data to send
+     * @return Completes when this save is done
+     */
+    private CompletableFuture<Void> saveFull(ClientNote note, Note copy)
+    {
+        String base = note.getSyncedBody();
+        copy.setRevision(note.getSyncedRevision());
+        return serverUtils.updateNoteAsync(note.getServerURL(), copy)
+                .thenAccept(saved -> note.markSynced(copy.getBody(), saved.getRevision()))
+                .exceptionallyCompose(e -> isOutOfDate(e)
+                        ? rebase(note, copy, base)
+                        : CompletableFuture.failedFuture(e));
+    }
+
+    /**
+     * Merge the local changes into the note as the server has it now and save that,
+     * so neither the local changes nor the ones of others are lost.
+     * Fails if the note changed once more in the meantime.
+     */
+    private CompletableFuture<Void> rebase(ClientNote note, Note copy, String base)
+    {
+        return serverUtils.getNoteByIdAsync(note.getServerURL(), copy.getId())
+                .thenCompose(latest ->
+                {
+                    Note merged = new Note(copy.getId(), copy.getCollectionId(), copy.getTitle(),
+                            TextOperation.merge(base, copy.getBody(), latest.getBody()));
+                    merged.setRevision(latest.getRevision());
+                    return serverUtils.updateNoteAsync(note.getServerURL(), merged);
+                })
+                .thenAccept(saved ->
+                {
+                    note.markSynced(saved.getBody(), saved.getRevision());
+                    Platform.runLater(() -> showMerged(note, copy.getBody(), saved.getBody()));
+                });
+    }
+
+    /**
+     * Show the changes of others merged into a save, keeping what was typed since
+     * @param note The saved note
+     * @param sent The body that was sent
+     * @param saved The body the server saved
+     */
+    private void showMerged(ClientNote note, String sent, String saved)
+    {
+        note.setNoteBody(TextOperation.merge(sent, note.getNoteBody(), saved));
+        if (!note.equals(currentNote) || liveEditManager.isLive(note))
+        {
+            return;
         }
+        String text = currentNoteBody.getText();
+        TextEdit edit = TextEdit.diff(text, TextOperation.merge(sent, text, saved));
+        if (edit != null)
+        {
+            currentNoteBody.replaceText(edit.position(), edit.position() + edit.deleteLength(),
+                    edit.insert());
+        }
+    }
+
+    private static boolean isOutOfDate(Throwable e)
+    {
+        return String.valueOf(ErrorCodes.NOTE_OUT_OF_DATE.getCode())
+                .equals(ServerUtils.unwrap(e).getMessage());
+    }
+
+    /**
+     * The copy is taken on the FX thread, so later edits do not leak into a save
+     * @param note The note to copy
+     * @return A copy of the note data
+     */
+    private static Note copyOf(ClientNote note)
+    {
+        Note data = note.getNoteData();
+        Note copy = new Note(data.getId(), data.getCollectionId(), data.getTitle(), data.getBody());
+        copy.setRevision(data.getRevision());
+        return copy;
+    }
+
+    /**
+     * Chain a save on the previous one, so saves reach the server
+     * in the order they were made, even if one of them failed
+     * @param request Starts the save once the previous one is done
+     * @return Completes when this save is done
+     */
+    private CompletableFuture<Void> enqueueSave(Supplier<CompletableFuture<Void>> request)
+    {
+        CompletableFuture<Void> save = lastSave
+                .handle((x, e) -> null)
+                .thenCompose(x -> request.get());
+        lastSave = save;
+        return save;
+    }
+
+    /**
+     * A note can only be saved if it is online and its body was loaded,
+     * otherwise the empty placeholder body would overwrite the real one
+     * @return true if the current note can be sent to the server
+     */
+    private boolean canSave()
+    {
+        return currentNote != null && currentNote.isOnline() && currentNote.isBodyLoaded();
     }
 
     /**
      * External method to change the current note.
      * It saves the final state of the note.
-     * Then loads the new note into the fields and into the webview.
+     * Then loads the new note into the fields and into the webview,
+     * fetching its body from the server if it was not loaded yet.
      * @param currentNote The new note to set as current
      */
     public void setCurrentNote(ClientNote currentNote)
@@ -346,6 +585,10 @@ public class CurrentNoteManager
             this.currentNote.highlight(false);
             this.currentNote.toggleDeleteButton(false);
         }
+        if (!liveEditManager.isLive(currentNote))
+        {
+            liveEditManager.close();
+        }
 
         // Load the new note contents
         this.currentNote = currentNote;
@@ -353,8 +596,8 @@ public class CurrentNoteManager
         if(this.currentNote != null)
         {
             currentNoteTitle.setText(currentNote.getNoteTitle());
-            currentNoteBody.setText(currentNote.getNoteBody());
-            markdownParser.renderMarkdownToWebView(currentNote.getNoteBody());
+            currentNoteBody.setText(bodyText(currentNote));
+            markdownParser.renderMarkdownToWebView(bodyText(currentNote));
             this.currentNote.highlight(true);
             this.currentNote.toggleDeleteButton(true);
             // Unlock the typing areas
@@ -372,9 +615,40 @@ public class CurrentNoteManager
                 disable();
                 currentNote.toggleDeleteButton(false);
             }
+            else
+            {
+                openLive(currentNote);
+            }
         }
     }
 
+    /**
+     * Edit the body together with everyone else editing the note.
+     * If that is not possible, changes are saved with patches,
+     * and the body is loaded first if it was not loaded yet.
+     * @param note The note to open
+     */
+    private void openLive(ClientNote note)
+    {
+        // Editable again once the body arrived
+        currentNoteBody.setDisable(true);
+        liveEditManager.open(note, live ->
+        {
+            if (!note.equals(currentNote))
+            {
+                return;
+            }
+            if (live || note.isBodyLoaded())
+            {
+                currentNoteBody.setDisable(false);
+            }
+            else
+            {
+                loadNote(note);
+            }
+        });
+    }
+
     private void enable()
     {
         currentNoteTitle.setDisable(false);
@@ -434,6 +708,7 @@ public class CurrentNoteManager
             currentNote.toggleDeleteButton(false);
         }
         currentNote = null;
+        liveEditManager.close();
         currentNoteTitle.clear();
         currentNoteBody.clear();
         markdownParser.renderMarkdownToWebView("");
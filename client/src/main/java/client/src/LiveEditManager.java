@@ -0,0 +1,269 @@
+package client.src;
+
+import client.utils.MyWebSocketClient;
+import client.utils.ServerUtils;
+import commons.NoteDocument;
+import commons.NoteEdit;
+import commons.TextEdit;
+import commons.TextOperation;
+import jakarta.inject.Inject;
+import javafx.application.Platform;
+import javafx.scene.control.TextArea;
+import org.springframework.messaging.simp.stomp.StompSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Edits the body of the current note together with everyone else editing it.
+ * Every change of the body is sent over the websocket right away and the
+ * changes of others are merged into the text area without moving the caret,
+ * instead of saving the whole body and loading it again.
+ */
+public class LiveEditManager
+{
+    /**
+     * Identifies the edits of this client among the edits the server sends back
+     */
+    private final String clientId = UUID.randomUUID().toString();
+
+    private TextArea body;
+    private Consumer<String> onRemoteEdit;
+
+    /**
+     * The note whose body is edited, set as soon as opening starts
+     */
+    private ClientNote note;
+    private NoteEditSession session;
+    private StompSession.Subscription subscription;
+
+    /**
+     * The connection the subscription was made on, it ends with the connection
+     */
+    private StompSession connection;
+
+    /**
+     * Edits received while the body was being loaded
+     */
+    private final List<NoteEdit> early = new ArrayList<>();
+    private Consumer<Boolean> onOpened;
+    private boolean applyingRemote;
+
+    @Inject
+    private ServerUtils serverUtils;
+
+    @Inject
+    private MyWebSocketClient myWebSocketClient;
+
+    /**
+     * Set the text area holding the body of the current note
+     * @param body The text area
+     * @param onRemoteEdit Called with the new body after an edit of someone else was merged
+     */
+    public void initialize(TextArea body, Consumer<String> onRemoteEdit)
+    {
+        this.body = body;
+        this.onRemoteEdit = onRemoteEdit;
+    }
+
+    /**
+     * Start editing a note together with others.
+     * The body is loaded and put into the text area, replacing what it showed.
+     * Nothing is loaded again if the note is open already and still connected.
+     * @param note The note to edit
+     * @param onOpened Called with true once the body can be edited,
+     *                 false if the server cannot be reached over the websocket
+     */
+    public void open(ClientNote note, Consumer<Boolean> onOpened)
+    {
+        if (isConnected(note))
+        {
+            onOpened.accept(true);
+            return;
+        }
+        close();
+        this.note = note;
+        this.onOpened = onOpened;
+        String url = note.getServerURL();
+        long noteId = note.getNoteId();
+
+        // Subscribe before loading, so no edit between loading and subscribing is missed
+        connection = myWebSocketClient.getSession(url);
+        subscription = myWebSocketClient.subscribe(url, "/topic/notes/" + noteId + "/edits",
+                NoteEdit.class, edit -> Platform.runLater(() -> receive(note, edit)));
+        if (subscription == null)
+        {
+            close();
+            onOpened.accept(false);
+            return;
+        }
+
+        serverUtils.getNoteDocumentAsync(url, noteId)
+                .whenComplete((document, e) -> Platform.runLater(() ->
+                {
+                    if (note != this.note)
+                    {
+                        return;
+                    }
+                    if (e != null)
+                    {
+                        close();
+                        onOpened.accept(false);
+                        return;
+                    }
+                    start(document);
+                    onOpened.accept(true);
+                }));
+    }
+
+    /**
+     * Stop editing the current note
+     */
+    public void close()
+    {
+        if (subscription != null)
+        {
+            try
+            {
+                subscription.unsubscribe();
+            }
+            catch (RuntimeException e)
+            {
+                // The connection is gone already, and the subscription with it
+            }
+        }
+        subscription = null;
+        connection = null;
+        session = null;
+        note = null;
+        early.clear();
+    }
+
+    /**
+     * Check if the body of a note is edited together with others
+     * @param note The note
+     * @return true if the note is open and its body loaded
+     */
+    public boolean isLive(ClientNote note)
+    {
+        return session != null && note != null && note.equals(this.note);
+    }
+
+    private boolean isConnected(ClientNote note)
+    {
+        return isLive(note) && connection != null && connection.isConnected()
+                && connection == myWebSocketClient.getSession(note.getServerURL());
+    }
+
+    /**
+     * Check if the text area is being changed by an edit of someone else
+     * @return true while such an edit is applied
+     */
+    public boolean isApplyingRemote()
+    {
+        return applyingRemote;
+    }
+
+    /**
+     * Send a change the user made to the body
+     * @param oldBody The body before the change
+     * @param newBody The body after the change
+     */
+    public void localEdit(String oldBody, String newBody)
+    {
+        TextEdit edit = TextEdit.diff(oldBody, newBody);
+        if (session == null || edit == null)
+        {
+            return;
+        }
+        note.setNoteBody(newBody);
+        session.localEdit(TextOperation.fromEdit(edit, oldBody.length()));
+    }
+
+    private void start(NoteDocument document)
+    {
+        String url = note.getServerURL();
+        session = new NoteEditSession(document.noteId(), document.revision(), clientId,
+                edit -> myWebSocketClient.send(url, "/app/notes/" + edit.noteId() + "/edit", edit));
+        note.setNoteBody(document.body());
+        replaceBody(document.body());
+
+        early.forEach(this::apply);
+        early.clear();
+    }
+
+    private void receive(ClientNote target, NoteEdit edit)
+    {
+        if (target != note)
+        {
+            return;
+        }
+        if (session == null)
+        {
+            early.add(edit);
+            return;
+        }
+        apply(edit);
+    }
+
+    /**
+     * Merge an edit of someone else into the text area.
+     * If the body got out of sync it is loaded again,
+     * local changes the server did not apply yet are lost then.
+     */
+    private void apply(NoteEdit edit)
+    {
+        TextOperation operation;
+        try
+        {
+            operation = session.receive(edit);
+        }
+        catch (IllegalStateException e)
+        {
+            ClientNote reopened = note;
+            close();
+            open(reopened, onOpened);
+            return;
+        }
+        if (operation == null)
+        {
+            return;
+        }
+
+        int anchor = operation.transformIndex(body.getAnchor());
+        int caret = operation.transformIndex(body.getCaretPosition());
+        applyingRemote = true;
+        try
+        {
+            // Replace only the changed ranges, so the scroll position stays
+            for (TextEdit change : operation.toEdits())
+            {
+                body.replaceText(change.position(), change.position() + change.deleteLength(),
+                        change.insert());
+            }
+        }
+        finally
+        {
+            applyingRemote = false;
+        }
+        body.selectRange(anchor, caret);
+        note.setNoteBody(body.getText());
+        onRemoteEdit.accept(body.getText());
+    }
+
+    private void replaceBody(String text)
+    {
+        applyingRemote = true;
+        try
+        {
+            body.setText(text);
+        }
+        finally
+        {
+            applyingRemote = false;
+        }
+        onRemoteEdit.accept(text);
+    }
+}
@@ -0,0 +1,183 @@
+package client.src;
+
+import commons.NoteEdit;
+import commons.TextOperation;
+
+import java.util.function.Consumer;
+
+/**
+ * Keeps the body of a note in sync with the other editors of the note.
+ * At most one local edit is sent to the server at a time, edits made while
+ * waiting for its confirmation are combined and sent together afterwards.
+ * Edits of other clients are transformed against the local edits
+ * the server did not apply yet, so they can be applied to the local text.
+ * Not thread safe, all methods are called on the FX thread.
+ */
+public class NoteEditSession
+{
+    private final long noteId;
+    private final String clientId;
+    private final Consumer<NoteEdit> sender;
+
+    /**
+     * The last revision received from the server
+     */
+    private long revision;
+
+    /**
+     * The edit sent to the server and not confirmed yet
+     */
+    private TextOperation sent;
+
+    /**
+     * The edits made while waiting for the confirmation, combined into one
+     */
+    private TextOperation waiting;
+
+    /**
+     * Start editing a note
+     * @param noteId The ID of the note
+     * @param revision The revision of the body the local text was loaded at
+     * @param clientId The ID the server echoes back with the edits of this client
+     * @param sender Sends an edit to the server
+     */
+    public NoteEditSession(long noteId, long revision, String clientId, Consumer<NoteEdit> sender)
+    {
+        this.noteId = noteId;
+        this.revision = revision;
+        this.clientId = clientId;
+        this.sender = sender;
+    }
+
+    public long getNoteId()
+    {
+        return noteId;
+    }
+
+    public long getRevision()
+    {
+        return revision;
+    }
+
+    /**
+     * Check if the server has every local edit
+     * @return true if no local edit is waiting for confirmation
+     */
+    public boolean isSynced()
+    {
+        return sent == null;
+    }
+
+    /**
+     * Send an edit made to the local text
+     * @param operation The edit, already applied to the local text
+     */
+    public void localEdit(TextOperation operation)
+    {
+        if (sent == null)
+        {
+            send(operation);
+        }
+        else
+        {
+            waiting = waiting == null ? operation : waiting.compose(operation);
+        }
+    }
+
+    /**
+     * Handle an edit the server applied
+     * @param edit The edit, in the order the server applied it
+     * @return The edit to apply to the local text,
+     * or null if there is nothing to apply, e.g. when a local edit was confirmed
+     * @throws IllegalStateException if the local text cannot be kept in sync anymore
+     * and has to be loaded again
+     */
+    public TextOperation receive(NoteEdit edit)
+    {
+        if (edit.noteId() != noteId)
+        {
+            return null;
+        }
+        if (edit.rejected())
+        {
+            return rejected(edit);
+        }
+        if (edit.revision() != revision)
+        {
+            return missed(edit);
+        }
+
+        revision++;
+        return isOwn(edit) ? confirm() : transform(edit.operation());
+    }
+
+    private TextOperation rejected(NoteEdit edit)
+    {
+        if (clientId.equals(edit.clientId()))
+        {
+            throw new IllegalStateException("The server rejected an edit at revision "
+                    + edit.revision());
+        }
+        return null;
+    }
+
+    /**
+     * Edits before the current revision are already part of the loaded text,
+     * after it one was missed and nothing can be applied anymore
+     */
+    private TextOperation missed(NoteEdit edit)
+    {
+        if (edit.revision() > revision)
+        {
+            throw new IllegalStateException("Missed the edits from revision " + revision);
+        }
+        return null;
+    }
+
+    private boolean isOwn(NoteEdit edit)
+    {
+        return sent != null && clientId.equals(edit.clientId());
+    }
+
+    /**
+     * The server applied the sent edit, send the edits made in the meantime
+     */
+    private TextOperation confirm()
+    {
+        sent = null;
+        if (waiting != null)
+        {
+            send(waiting);
+        }
+        return null;
+    }
+
+    /**
+     * Transform an edit of another client so it applies after the local edits,
+     * and the local edits so they apply after it, like the server will do
+     */
+    private TextOperation transform(TextOperation operation)
+    {
+        TextOperation result = operation;
+        if (sent != null)
+        {
+            TextOperation.Transformed t = TextOperation.transform(sent, result);
+            sent = t.first();
+            result = t.second();
+        }
+        if (waiting != null)
+        {
+            TextOperation.Transformed t = TextOperation.transform(waiting, result);
+            waiting = t.first();
+            result = t.second();
+        }
+        return result;
+    }
+
+    private void send(TextOperation operation)
+    {
+        sent = operation;
+        waiting = null;
+        sender.accept(new NoteEdit(noteId, revision, operation, clientId));
+    }
+}
@@ -3,6 +3,8 @@ package client.src;
 import client.utils.LanguageManager;
 import client.utils.ServerUtils;
 import commons.Note;
+import commons.NoteChange;
+import commons.NoteSummary;
 import jakarta.inject.Inject;
 import javafx.application.Platform;
 import javafx.scene.control.ChoiceBox;
@@ -10,8 +12,9 @@ import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.VBox;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class NoteManager
 {
@@ -22,6 +25,34 @@ public class NoteManager
     private TextField searchBar;
 
     private ChoiceBox<String> cbCollectionFilter;
+
+    /**
+     * IDs of the notes matching the search bar per server URL,
+     * as ranked by the server side index. Null until the search
+     * for the current text of the search bar finished.
+     */
+    private Map<String, Set<Long>> searchMatches;
+    private Timer searchTimer;
+
+    /**
+     * Counts the changes of the search bar, a search only applies its
+     * results if no change came after it started
+     */
+    private long searchNumber;
+
+    /**
+     * Revision of the last change applied per server URL
+     */
+    private final Map<String, Long> serverRevisions = new ConcurrentHashMap<>();
+
+    /**
+     * IDs of the collections per server URL whose notes are loaded,
+     * later changes to them are fetched as deltas
+     */
+    private final Map<String, Set<Long>> loadedCollections = new ConcurrentHashMap<>();
+
+    private static final int SEARCH_DELAY = 300;
+    private static final int SEARCH_PAGE_SIZE = 100;
     
     @Inject
     private ServerUtils serverUtils;
@@ -64,35 +95,43 @@ public class NoteManager
      * Go through each collection we have subscribed to and fetch
      * the notes that should be shown to the client.
      * @param collection The collection to add notes from
+     * @return Completes once the notes are queued to be added on the FX thread
      */
-    public void addCollection(ClientCollection collection)
+    public CompletableFuture<Void> addCollection(ClientCollection collection)
     {
-        try
-        {
-            List<Note> notes = serverUtils.
-                    getNotesByServerCollection(collection.getServerURL(), collection.getId());
-
-            for (Note note : notes)
-            {
-                boolean found = false;
-
-                for (ClientNote clientNote : availableNotes)
+        String url = collection.getServerURL();
+        return serverUtils.getNoteSummariesByServerCollectionAsync(url, collection.getId())
+                .thenAccept(notes -> Platform.runLater(() ->
                 {
-                    if (note.getId() == clientNote.getNoteId()
-                            && collection.getServerURL().equals(clientNote.getServerURL()))
+                    Map<Long, ClientNote> local = notesOf(url);
+                    for (NoteSummary note : notes)
                     {
-                        clientNote.setOnline(true);
-                        found = true;
+                        ClientNote clientNote = local.get(note.id());
+                        if (clientNote != null)
+                        {
+                            clientNote.setOnline(true);
+                        }
+                        else
+                        {
+                            addNote(note.toNote(), url);
+                        }
                     }
-                }
+                    setCurrentNote(currentNoteManager.getCurrentNote());
+                }));
+    }
 
-                if (!found)
-                    Platform.runLater(() -> addNote(note, collection.getServerURL()));
-            }
-            Platform.runLater(() -> setCurrentNote(currentNoteManager.getCurrentNote()));
-        }
-        catch (Exception _)
-        { }
+    /**
+     * The notes of a server that are on the client, by ID
+     * @param url The url of the server
+     * @return The notes of the server
+     */
+    private Map<Long, ClientNote> notesOf(String url)
+    {
+        Map<Long, ClientNote> local = new HashMap<>();
+        availableNotes.stream()
+                .filter(x -> x.getServerURL().equals(url))
+                .forEach(x -> local.put(x.getNoteId(), x));
+        return local;
     }
 
     /**
@@ -137,135 +176,157 @@ public class NoteManager
      */
     public void deleteNote(ClientNote note)
     {
-        try
-        {
-            serverUtils
-                    .deleteNote(note.getServerURL(), note.getNoteId());
+        serverUtils.deleteNoteAsync(note.getServerURL(), note.getNoteId())
+                .thenRun(() -> Platform.runLater(() -> removeNoteLocally(note)));
+    }
 
-            // Remove note from the UI
-            notesContainer.getChildren().remove(note.getNoteBox());
+    /**
+     * Remove a note from the list of available notes and from the UI,
+     * without deleting it on the server.
+     *
+     * @param note The note to remove
+     */
+    private void removeNoteLocally(ClientNote note)
+    {
+        // Remove note from the UI
+        notesContainer.getChildren().remove(note.getNoteBox());
 
-            // Remove note from the lists
-            availableNotes.remove(note);
+        // Remove note from the lists
+        availableNotes.remove(note);
 
-            if (currentNoteManager.getCurrentNote() != null &&
-                    currentNoteManager.getCurrentNote().equals(note))
-            {
-                availableNotes
-                        .stream()
-                        .filter(this::filterCheck).findFirst()
-                        .ifPresentOrElse(currentNoteManager
-                                ::setCurrentNote, currentNoteManager
-                                ::reset);
-            }
+        if (currentNoteManager.getCurrentNote() != null &&
+                currentNoteManager.getCurrentNote().equals(note))
+        {
+            availableNotes
+                    .stream()
+                    .filter(this::filterCheck).findFirst()
+                    .ifPresentOrElse(currentNoteManager
+                            ::setCurrentNote, currentNoteManager
+                            ::reset);
         }
-        catch (Exception _)
-        {}
     }
 
     /**
-     * Foreach collection we have subscribed to, fetch the notes
-     * and update the notes on the client. This is a massive update
-     * and uses all the available notes because it is called
-     * manually with the refresh button.
+     * Bring the notes of every online server up to date.
+     * Called manually with the refresh button.
      */
     public void refreshNotes()
     {
-        for (ClientCollection cc : collectionManager
-                .getCollections())
-        {
-            if (!cc.isOnline())
-                continue;
-            try
-            {
-                // Fetch the current state of notes on each (collection, server) pair
-                List<Note> notes = serverUtils
-                        .getNotesByServerCollection(cc.getServerURL(), cc.getId());
+        collectionManager.getCollections().stream()
+                .filter(ClientCollection::isOnline)
+                .map(ClientCollection::getServerURL)
+                .distinct()
+                .forEach(this::syncServer);
+    }
 
-                notes.forEach(note ->
+    /**
+     * Bring the notes of a server up to date. Collections whose notes
+     * were never loaded are loaded in full, for everything else only
+     * the changes since the last sync are fetched.
+     * Everything is fetched in the background, only applying the
+     * changes is done on the FX thread.
+     * @param url The url of the server
+     */
+    public void syncServer(String url)
+    {
+        // Changes made while loading the collections are fetched again afterwards
+        CompletableFuture<Long> since = serverRevisions.containsKey(url)
+                ? CompletableFuture.completedFuture(serverRevisions.get(url))
+                : serverUtils.getRevisionAsync(url)
+                        .thenApply(x -> serverRevisions.computeIfAbsent(url, y -> x));
+
+        since.thenCompose(x -> loadNewCollections(url))
+                .thenCompose(x -> serverUtils.getNoteChangesAsync(url, serverRevisions.get(url)))
+                .thenAccept(changes ->
                 {
-                    for (ClientNote availableNote : availableNotes)
+                    if (!changes.isEmpty())
                     {
-                        // ClientNote is identified by (noteId, serverURL)
-                        if (availableNote.getNoteId().equals(note.getId()) &&
-                                availableNote.getServerURL().equals(cc.getServerURL()))
-                        {
-                            ((Label) (availableNote.getNoteBox().getChildren().getFirst()))
-                                    .setText(note.getTitle());
-                            availableNote.setNoteTitle(note.getTitle());
-                            availableNote.setNoteBody(note.getBody());
-                            currentNoteManager.syncChanges();
-                            return;
-                        }
+                        serverRevisions.merge(url, changes.getLast().revision(), Math::max);
                     }
+                    Platform.runLater(() -> applyChanges(url, changes));
+                })
+                .exceptionally(e -> null);
+    }
 
-                    // If the (noteId, serverURL) is not found, it is a new note
-                    this.addNote(note, cc.getServerURL());
-                });
+    private CompletableFuture<Void> loadNewCollections(String url)
+    {
+        Set<Long> loaded = loadedCollections
+                .computeIfAbsent(url, x -> ConcurrentHashMap.newKeySet());
+        return CompletableFuture.allOf(collectionManager.getCollections().stream()
+                .filter(x -> x.isOnline() && x.getServerURL().equals(url))
+                .filter(x -> loaded.add(x.getId()))
+                .map(this::addCollection)
+                .toArray(CompletableFuture[]::new));
+    }
 
-                availableNotes.removeIf(oldNote ->
+    private void applyChanges(String url, List<NoteChange> changes)
+    {
+        Map<Long, ClientNote> local = notesOf(url);
+        local.values().forEach(x -> x.setOnline(true));
+
+        for (NoteChange change : changes)
+        {
+            ClientNote existing = local.get(change.noteId());
+            if (change.deleted() || !isSubscribed(url, change.note().getCollectionId()))
+            {
+                if (existing != null)
                 {
-                    // if there is no note in notes from the same collection
-                    // such that (noteId, serverURL) is the same as oldNote
-                    // it has been deleted and should be removed from the UI
-                    if (notes.stream().noneMatch
-                            (newNote -> newNote.getId() == oldNote.getNoteId()
-                                    && cc.getServerURL().equals(oldNote.getServerURL()))
-                                    && oldNote.getNoteCollectionId() == cc.getId())
-                    {
-                        notesContainer.getChildren().remove(oldNote.getNoteBox());
-                        return true;
-                    }
-                    return false;
-                });
+                    removeNoteLocally(existing);
+                    local.remove(change.noteId());
+                }
+            }
+            else if (existing == null)
+            {
+                local.put(change.noteId(), addNote(change.note(), url));
+            }
+            else
+            {
+                applyNoteData(existing, change.note());
             }
-            catch (Exception _)
-            {}
         }
+        setCurrentNote(currentNoteManager.getCurrentNote());
+    }
+
+    private boolean isSubscribed(String url, long collectionId)
+    {
+        return collectionManager.getCollections()
+                .stream()
+                .anyMatch(x -> x.getId() == collectionId && x.getServerURL().equals(url));
+    }
+
+    /**
+     * Replace the data of a client note with the latest version from the server
+     * @param clientNote The note on the client
+     * @param note The latest version of the note
+     */
+    private void applyNoteData(ClientNote clientNote, Note note)
+    {
+        ((Label) (clientNote.getNoteBox().getChildren().getFirst())).setText(note.getTitle());
+        clientNote.setNoteData(note);
+        // If the changed note is the current note we are editing, sync changes
+        if (clientNote.equals(currentNoteManager.getCurrentNote()))
+        {
+            currentNoteManager.syncChanges();
+        }
+        updateVisibility(clientNote);
     }
 
     /**
      * Pushed by server when a note is outdated and
      * should be updated
-     * @param noteId The id of the note to update
+     * @param note The note after the update
      * @param serverUrl The url of the server that hosts the note
      */
-    public void updateNote(long noteId, String serverUrl)
+    public void updateNote(Note note, String serverUrl)
     {
-        try
+        Platform.runLater(() ->
         {
-            Note note = serverUtils
-                    .getNoteById(serverUrl, noteId);
-
-            for (ClientNote availableNote : availableNotes)
+            ClientNote availableNote = notesOf(serverUrl).get(note.getId());
+            if (availableNote != null)
             {
-                if (availableNote.getNoteId().equals(note.getId()) &&
-                        availableNote.getServerURL().equals(serverUrl))
-                {
-                    Platform.runLater(() ->
-                    {
-                        ((Label) (availableNote.getNoteBox().getChildren().getFirst()))
-                                .setText(note.getTitle());
-                        // If the changed note is the current note we are editing, sync changes
-                        if (currentNoteManager.getCurrentNote() != null &&
-                                currentNoteManager.getCurrentNote().equals(availableNote))
-                        {
-                            availableNote.setNoteTitle(note.getTitle());
-                            availableNote.setNoteBody(note.getBody());
-                            currentNoteManager.syncChanges();
-                        }
-                        // Else just update the note data
-                        else
-                        {
-                            availableNote.setNoteTitle(note.getTitle());
-                            availableNote.setNoteBody(note.getBody());
-                        }
-                    });
-                }
+                applyNoteData(availableNote, note);
             }
-        }
-        catch (Exception _)
-        {}
+        });
     }
 
     /**
@@ -281,7 +342,8 @@ public class NoteManager
             if (availableNote.getNoteId().equals(noteId) &&
                     availableNote.getServerURL().equals(serverUrl))
             {
-                Platform.runLater(() -> deleteNote(availableNote));
+                // Already deleted on the server, only remove it here
+                Platform.runLater(() -> removeNoteLocally(availableNote));
                 return;
             }
         }
@@ -290,70 +352,62 @@ public class NoteManager
     /**
      * Pushed by server when a note is added and
      * should be added on the client
-     * @param noteId The id of the note to add
+     * @param note The added note
      * @param serverUrl The url of the server that hosts the note
      */
-    public void addNoteNotif(long noteId, String serverUrl)
+    public void addNoteNotif(Note note, String serverUrl)
     {
-        try
-        {
-            Note newNote = serverUtils
-                    .getNoteById(serverUrl, noteId);
-            Platform.runLater(() -> addNote(newNote, serverUrl));
-        }
-        catch (Exception _)
-        {}
+        Platform.runLater(() -> addNote(note, serverUrl));
     }
 
     /**
      * Pushed by server when a note is moved to a different collection
-     * but the collection is on the same server so no changes in serverUrl
-     * @param noteId The id of the note to move
-     * @param collectionId The id of the collection to move to
+     * but the collection is on the same server so no changes in serverUrl.
+     * It is pushed to the subscribers of both collections,
+     * so the note is added, moved or removed depending on what is subscribed.
+     * @param note The note after the move
      * @param serverUrl The url of the server that hosts the note
      */
-    public void moveNoteLocalNotif(long noteId, long collectionId, String serverUrl)
+    public void moveNoteLocalNotif(Note note, String serverUrl)
     {
-        for (ClientNote availableNote : availableNotes)
+        Platform.runLater(() ->
         {
-            if (availableNote.getNoteId().equals(noteId) &&
-                    availableNote.getServerURL().equals(serverUrl))
+            ClientNote availableNote = notesOf(serverUrl).get(note.getId());
+            boolean isSubscribedToNewCollection = isSubscribed(serverUrl,
+                    note.getCollectionId());
+            if (availableNote == null)
             {
-                boolean isSubscribedToNewCollection = collectionManager
-                        .getCollections()
-                        .stream()
-                        .anyMatch(x -> x.getId() == collectionId &&
-                                x.getServerURL().equals(serverUrl));
-                if (!isSubscribedToNewCollection)
+                if (isSubscribedToNewCollection)
                 {
-                    Platform.runLater(() -> notesContainer.getChildren()
-                            .remove(availableNote.getNoteBox()));
-                    availableNotes.remove(availableNote);
-                }
-                else
-                {
-                    availableNote.setNoteCollectionId(collectionId);
-                    Platform.runLater(() -> currentNoteManager.syncChanges());
-                    updateVisibility(availableNote);
+                    addNote(note, serverUrl);
                 }
             }
-        }
+            else if (!isSubscribedToNewCollection)
+            {
+                removeNoteLocally(availableNote);
+            }
+            else
+            {
+                availableNote.setNoteCollectionId(note.getCollectionId());
+                currentNoteManager.syncChanges();
+                updateVisibility(availableNote);
+            }
+        });
     }
 
     /**
      * Pushed by server when a note is moved to a different collection
      * and the collection is on a different server. This means the note
      * has just been created on the server.
-     * @param noteId The id of the note to move
-     * @param collectionId The id of the collection to move to
+     * @param note The note as it was created in the collection it was moved to
      * @param serverUrl The url of the server that hosts the note
      */
-    public void moveNoteForeignNotif(long noteId, long collectionId, String serverUrl)
+    public void moveNoteForeignNotif(Note note, String serverUrl)
     {
         boolean isSubscribedToNewCollection = collectionManager
                 .getCollections()
                 .stream()
-                .anyMatch(x -> x.getId() == collectionId &&
+                .anyMatch(x -> x.getId() == note.getCollectionId() &&
                         x.getServerURL().equals(serverUrl));
 
         if (!isSubscribedToNewCollection)
@@ -361,14 +415,7 @@ public class NoteManager
             return;
         }
 
-        try
-        {
-            Note newNote = serverUtils
-                    .getNoteById(serverUrl, noteId);
-            Platform.runLater(() -> addNote(newNote, serverUrl));
-        }
-        catch (Exception _)
-        {}
+        Platform.runLater(() -> addNote(note, serverUrl));
     }
 
     public void setCurrentNote(ClientNote newCurrentNote)
@@ -401,19 +448,35 @@ public class NoteManager
 
 
     /**
-     Checks if given client note passes filters.
-     * Currently has to have search bar text in title
-     * or as keywords anywhere in body, both case-insensitive.
+     * Checks if given client note passes the search bar filter.
+     * The title is matched locally, the body is matched by the server
+     * side search index. If a server could not be searched, the body is
+     * matched locally as long as it is available.
      * @param note the client note to check
      * @return true if filters passed
      */
     public boolean filterSearchBar(ClientNote note)
     {
         String search = searchBar.getText().toLowerCase();
-        if (note.getNoteTitle().toLowerCase().matches(".*\\Q" + search + "\\E.*"))
+        if (search.isBlank() || note.getNoteTitle().toLowerCase().contains(search))
         {
             return true;
         }
+
+        Set<Long> matches = searchMatches == null ? null : searchMatches.get(note.getServerURL());
+        if (matches != null)
+        {
+            return matches.contains(note.getNoteId());
+        }
+        return filterBodyLocally(note, search);
+    }
+
+    private boolean filterBodyLocally(ClientNote note, String search)
+    {
+        if (note.getNoteBody() == null)
+        {
+            return false;
+        }
         String body = note.getNoteBody().toLowerCase();
         for(String s : search.split("\\s+"))
         {
@@ -426,6 +489,82 @@ public class NoteManager
         return true;
     }
 
+    /**
+     * Called when the search bar changes.
+     * Title matches are shown right away, the server side search
+     * is run once the user stops typing for SEARCH_DELAY ms.
+     * Until then bodies are matched locally, the matches of the
+     * previous search are dropped.
+     */
+    public void updateSearchResults()
+    {
+        if (searchTimer != null)
+        {
+            searchTimer.cancel();
+        }
+        long number = ++searchNumber;
+        searchMatches = null;
+        updateVisibilityAll();
+
+        String search = searchBar.getText();
+        if (search.isBlank())
+        {
+            return;
+        }
+
+        searchTimer = new Timer();
+        searchTimer.schedule(new TimerTask()
+        {
+            @Override
+            public void run()
+            {
+                fetchSearchMatches(search).thenAccept(matches -> Platform.runLater(() ->
+                {
+                    // Ignore results of a search that is already outdated,
+                    // even if the search bar was changed back to the same text
+                    if (number == searchNumber)
+                    {
+                        searchMatches = matches;
+                        updateVisibilityAll();
+                    }
+                }));
+            }
+        }, SEARCH_DELAY);
+    }
+
+    /**
+     * Search all online collections at the same time
+     * @param search The search query
+     * @return Completes with the matching note IDs per server URL,
+     * servers that could not be searched are left out
+     */
+    private CompletableFuture<Map<String, Set<Long>>> fetchSearchMatches(String search)
+    {
+        Map<String, Set<Long>> matches = new ConcurrentHashMap<>();
+        return CompletableFuture.allOf(collectionManager.getCollections().stream()
+                        .filter(ClientCollection::isOnline)
+                        .map(cc -> searchPages(cc, search, 0, new HashSet<>())
+                                .thenAccept(ids -> matches.computeIfAbsent(cc.getServerURL(),
+                                        x -> ConcurrentHashMap.newKeySet()).addAll(ids))
+                                .exceptionally(e -> null))
+                        .toArray(CompletableFuture[]::new))
+                .thenApply(x -> matches);
+    }
+
+    private CompletableFuture<Set<Long>> searchPages(ClientCollection cc, String search,
+                                                     int page, Set<Long> ids)
+    {
+        return serverUtils
+                .searchNotesAsync(cc.getServerURL(), cc.getId(), search, page, SEARCH_PAGE_SIZE)
+                .thenCompose(results ->
+                {
+                    results.forEach(x -> ids.add(x.getId()));
+                    return results.size() == SEARCH_PAGE_SIZE
+                            ? searchPages(cc, search, page + 1, ids)
+                            : CompletableFuture.completedFuture(ids);
+                });
+    }
+
     /**
      * Checks if a client note is in the selected collection.
      * @param note the client note to check
@@ -498,6 +637,8 @@ public class NoteManager
         availableNotes.removeIf(x ->
                 x.getNoteCollectionId().equals(collection.getId()) &&
                 x.getServerURL().equals(collection.getServerURL()));
+        loadedCollections.getOrDefault(collection.getServerURL(), new HashSet<>())
+                .remove(collection.getId());
     }
     public PopUpManager getPopUpManager()
     {
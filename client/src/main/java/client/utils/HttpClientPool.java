@@ -0,0 +1,108 @@
+package client.utils;
+
+import commons.Notification;
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.ClientBuilder;
+import jakarta.ws.rs.client.ClientRequestFilter;
+import jakarta.ws.rs.client.WebTarget;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.filter.EncodingFilter;
+import org.glassfish.jersey.message.DeflateEncoder;
+import org.glassfish.jersey.message.GZipEncoder;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared Jersey clients, one per server URL. Building a client scans
+ * for providers, so it is done once per server instead of once per request.
+ * The connections underneath are kept alive between requests
+ * as long as every response is closed.
+ * Every request carries the ID of this client, the server pushes it back
+ * with the notifications of the changes the request made.
+ * Responses the server tagged are kept, so they are only sent again when they changed.
+ * Responses may be compressed with gzip or deflate, they are decompressed when read.
+ */
+public class HttpClientPool implements AutoCloseable
+{
+    /**
+     * Time to wait for a connection to a server, in milliseconds
+     */
+    public static final int CONNECT_TIMEOUT = 3000;
+
+    /**
+     * Time to wait for a response from a server, in milliseconds
+     */
+    public static final int READ_TIMEOUT = 10000;
+
+    /**
+     * Number of idle connections kept alive per server
+     */
+    public static final int MAX_IDLE_CONNECTIONS = 8;
+
+    static
+    {
+        // Jersey uses HttpURLConnection, whose keep-alive cache reads this once
+        if (System.getProperty("http.maxConnections") == null)
+        {
+            System.setProperty("http.maxConnections", String.valueOf(MAX_IDLE_CONNECTIONS));
+        }
+    }
+
+    private final String clientId = UUID.randomUUID().toString();
+    private final ValidatorCache validators = new ValidatorCache();
+    private final Map<String, Client> clients = new ConcurrentHashMap<>();
+    private final Map<String, WebTarget> targets = new ConcurrentHashMap<>();
+
+    /**
+     * Get the target for a fixed path on a server.
+     * Targets are immutable, so they are cached and shared between threads.
+     * Paths that contain IDs should be appended to a cached target
+     * with WebTarget.path instead of being cached themselves.
+     * @param address The server address
+     * @param path The path on the server
+     * @return The target for the path
+     */
+    public WebTarget target(String address, String path)
+    {
+        return targets.computeIfAbsent(address + " " + path,
+                x -> client(address).target(address).path(path));
+    }
+
+    /**
+     * The ID this client sends with every request
+     * @return The client ID
+     */
+    public String getClientId()
+    {
+        return clientId;
+    }
+
+    private Client client(String address)
+    {
+        return clients.computeIfAbsent(address, x -> ClientBuilder.newBuilder()
+                .withConfig(new ClientConfig())
+                .connectTimeout(CONNECT_TIMEOUT, TimeUnit.MILLISECONDS)
+                .readTimeout(READ_TIMEOUT, TimeUnit.MILLISECONDS)
+                .register((ClientRequestFilter) request -> request.getHeaders()
+                        .putSingle(Notification.CLIENT_ID_HEADER, clientId))
+                .register(validators)
+                .register(EncodingFilter.class)
+                .register(GZipEncoder.class)
+                .register(DeflateEncoder.class)
+                .build());
+    }
+
+    /**
+     * Close all clients and the connections they keep open
+     */
+    @Override
+    public void close()
+    {
+        targets.clear();
+        clients.values().forEach(Client::close);
+        clients.clear();
+    }
+}
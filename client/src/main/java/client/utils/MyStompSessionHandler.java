@@ -2,15 +2,20 @@ package client.utils;
 
 import client.src.CollectionManager;
 import client.src.NoteManager;
+import commons.Notification;
+import commons.NotificationBatch;
 import org.springframework.messaging.simp.stomp.StompHeaders;
 import org.springframework.messaging.simp.stomp.StompSession;
 import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
 
+import java.lang.reflect.Type;
+
 public class MyStompSessionHandler extends StompSessionHandlerAdapter
 {
 
     private StompSession session = null;
     private final String serverURL;
+    private final String clientId;
 
     private final NoteManager noteManager;
     private final CollectionManager collectionManager;
@@ -20,16 +25,19 @@ public class MyStompSessionHandler extends StompSessionHandlerAdapter
     /**
      * Constructor for the handler
      * @param serverURL The server URL
+     * @param clientId The ID this client sends with its requests to the server
      * @param noteManager The note manager reference
      * @param collectionManager The collection manager reference
      * @param myWebSocketClient The web socket client reference
      */
     public MyStompSessionHandler(String serverURL,
+                                  String clientId,
                                   NoteManager noteManager,
                                   CollectionManager collectionManager,
                                   MyWebSocketClient myWebSocketClient)
     {
         this.serverURL = serverURL;
+        this.clientId = clientId;
         this.noteManager = noteManager;
         this.collectionManager = collectionManager;
         this.myWebSocketClient = myWebSocketClient;
@@ -65,53 +73,51 @@ public class MyStompSessionHandler extends StompSessionHandlerAdapter
     }
 
     /**
-     * Called on message pushed to the selected topic
+     * Notifications are sent in batches, in the compact form of NotificationCodec
+     * @param headers The headers
+     * @return The type of the payload
+     */
+    @Override
+    public Type getPayloadType(StompHeaders headers)
+    {
+        return NotificationBatch.class;
+    }
+
+    /**
+     * Called on message pushed to the selected topic.
+     * The notifications carry the changed note or collection,
+     * so they are applied without requesting it from the server.
      * @param headers The headers
      * @param payload The message object
      */
     @Override
     public void handleFrame(StompHeaders headers, Object payload)
     {
-        String[] msg = ((String) payload).split("\\|");
+        ((NotificationBatch) payload).notifications().forEach(this::handle);
+    }
 
-        // If the sender is the same session ignore the message
-        if (msg[msg.length - 1].equals(session.getSessionId()))
+    private void handle(Notification notification)
+    {
+        // This client applied its own change already
+        if (clientId.equals(notification.origin()))
         {
             return;
         }
 
         // Call the appropriate method
-        String action = msg[0];
-
-        switch (action)
+        switch (notification.type())
         {
-            case "updateNote":
-                noteManager
-                        .updateNote(Long.parseLong(msg[1]), msg[2]);
-                break;
-            case "deleteNote":
-                noteManager
-                        .deleteNoteNotif(Long.parseLong(msg[1]), msg[2]);
-                break;
-            case "addedNote":
-                noteManager
-                        .addNoteNotif(Long.parseLong(msg[1]), msg[2]);
-                break;
-            case "moveNoteLocal":
-                noteManager
-                        .moveNoteLocalNotif(Long.parseLong(msg[1]), Long.parseLong(msg[2]), msg[3]);
-                break;
-            case "moveNoteForeign":
-                noteManager
-                        .moveNoteForeignNotif(Long.parseLong(msg[1]),
-                                Long.parseLong(msg[2]), msg[3]);
-                break;
-            case "updateCollection":
-                collectionManager.updateCollectionNotif(Long.parseLong(msg[1]), msg[2]);
-                break;
-            case "deleteCollection":
-                collectionManager.deleteCollectionNotif(Long.parseLong(msg[1]), msg[2]);
-                break;
+            case UPDATE_NOTE -> noteManager.updateNote(notification.note(), serverURL);
+            case DELETE_NOTE -> noteManager.deleteNoteNotif(notification.id(), serverURL);
+            case ADD_NOTE -> noteManager.addNoteNotif(notification.note(), serverURL);
+            case MOVE_NOTE_LOCAL -> noteManager.moveNoteLocalNotif(notification.note(),
+                    serverURL);
+            case MOVE_NOTE_FOREIGN -> noteManager.moveNoteForeignNotif(notification.note(),
+                    serverURL);
+            case UPDATE_COLLECTION -> collectionManager.updateCollectionNotif(
+                    notification.collection(), serverURL);
+            case DELETE_COLLECTION -> collectionManager.deleteCollectionNotif(notification.id(),
+                    serverURL);
         }
     }
 }
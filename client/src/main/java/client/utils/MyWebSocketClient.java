@@ -6,20 +6,36 @@ import client.src.NoteManager;
 import client.src.PopUpManager;
 import jakarta.inject.Inject;
 import javafx.application.Platform;
+import org.springframework.messaging.converter.CompositeMessageConverter;
 import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
 import org.springframework.messaging.simp.stomp.StompSession;
 import org.springframework.messaging.simp.stomp.StompSessionHandler;
 import org.springframework.web.socket.client.WebSocketClient;
 import org.springframework.web.socket.client.standard.StandardWebSocketClient;
 import org.springframework.web.socket.messaging.WebSocketStompClient;
 
+import java.lang.reflect.Type;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 
 public class MyWebSocketClient
 {
     private final Map<String, StompSession> stompSessions;
 
+    /**
+     * The handler of the notifications per server URL
+     */
+    private final Map<String, StompSessionHandler> handlers = new HashMap<>();
+
+    /**
+     * The subscriptions to the topics of the subscribed collections per server URL, by ID
+     */
+    private final Map<String, Map<Long, StompSession.Subscription>> collectionSubscriptions =
+            new HashMap<>();
+
     @Inject
     private Configuration configuration;
 
@@ -32,6 +48,9 @@ public class MyWebSocketClient
     @Inject
     private PopUpManager popUpManager;
 
+    @Inject
+    private HttpClientPool http;
+
     /**
      * Constructor
      */
@@ -64,6 +83,7 @@ public class MyWebSocketClient
     {
         if(stompSessions.containsKey(url) && stompSessions.get(url) != null)
         {
+            syncSubscriptions(url);
             collectionManager.serverOnline(url);
         }
         else
@@ -89,7 +109,7 @@ public class MyWebSocketClient
     }
 
     /**
-     * Establish a connection to a server and subscribe to /topic/news
+     * Establish a connection to a server
      * @param url The url of the server
      * @return The stomp session established
      * @throws InterruptedException
@@ -100,17 +120,21 @@ public class MyWebSocketClient
 
         WebSocketStompClient stompClient = new WebSocketStompClient(wsClient);
 
-        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+        stompClient.setMessageConverter(new CompositeMessageConverter(List.of(
+                new NotificationMessageConverter(), new MappingJackson2MessageConverter())));
 
         StompSessionHandler sessionHandler =
-                new MyStompSessionHandler(url, noteManager, collectionManager, this);
+                new MyStompSessionHandler(url, http.getClientId(), noteManager,
+                        collectionManager, this);
 
         String wsurl = url.replace("http", "ws") + "ws-connect";
 
         System.out.println("Connecting to: " + wsurl);
         StompSession stompSession = stompClient.connect(wsurl, sessionHandler).get();
-
-        stompSession.subscribe("/topic/news", sessionHandler);
+        synchronized (this)
+        {
+            handlers.put(url, sessionHandler);
+        }
 
         return stompSession;
     }
@@ -129,6 +153,7 @@ public class MyWebSocketClient
         {
             Platform.runLater(() -> popUpManager.serverOfflineNotification(url));
             stompSessions.put(url, null);
+            dropSubscriptions(url);
             collectionManager.serverOffline(url);
         }
 
@@ -156,18 +181,106 @@ public class MyWebSocketClient
             Platform.runLater(() -> popUpManager.serverOnlineNotification(url));
         }
         stompSessions.put(url, session);
+        syncSubscriptions(url);
         collectionManager.serverOnline(url);
     }
 
     /**
-     * Send a message to a server
+     * Subscribe to the topics of the collections of a server the client is subscribed to,
+     * and unsubscribe from the topics of the others.
+     * Only the changes to these collections are pushed to the client.
+     * Called whenever the collections of the server change.
      * @param url The url of the server
-     * @param message The message
      */
-    public void sendMessage(String url, String message)
+    public synchronized void syncSubscriptions(String url)
     {
-        stompSessions.get(url).send("/topic/news",
-                message + stompSessions.get(url).getSessionId());
+        StompSession session = stompSessions.get(url);
+        if (session == null || !session.isConnected())
+        {
+            return;
+        }
+        Set<Long> wanted = new HashSet<>();
+        collectionManager.getCollections().stream()
+                .filter(x -> x.getServerURL().equals(url))
+                .forEach(x -> wanted.add(x.getId()));
+
+        Map<Long, StompSession.Subscription> subscribed = collectionSubscriptions
+                .computeIfAbsent(url, x -> new HashMap<>());
+        subscribed.entrySet().removeIf(x ->
+        {
+            if (wanted.contains(x.getKey()))
+            {
+                return false;
+            }
+            x.getValue().unsubscribe();
+            return true;
+        });
+        for (long id : wanted)
+        {
+            subscribed.computeIfAbsent(id, x ->
+                    session.subscribe("/topic/collections/" + x, handlers.get(url)));
+        }
+    }
+
+    /**
+     * The connection to a server
+     * @param url The url of the server
+     * @return The stomp session, or null if the server is not connected
+     */
+    public StompSession getSession(String url)
+    {
+        return stompSessions.get(url);
+    }
+
+    /**
+     * Subscribe to a topic of a server with typed payloads
+     * @param url The url of the server
+     * @param destination The topic to subscribe to
+     * @param type The type the payloads are converted to
+     * @param handler Called with each payload, on the websocket thread
+     * @param <T> The payload type
+     * @return The subscription, or null if the server is not connected
+     */
+    public <T> StompSession.Subscription subscribe(String url, String destination,
+                                                   Class<T> type, Consumer<T> handler)
+    {
+        StompSession session = stompSessions.get(url);
+        if (session == null || !session.isConnected())
+        {
+            return null;
+        }
+        return session.subscribe(destination, new StompFrameHandler()
+        {
+            @Override
+            public Type getPayloadType(StompHeaders headers)
+            {
+                return type;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload)
+            {
+                handler.accept(type.cast(payload));
+            }
+        });
+    }
+
+    /**
+     * Send an object to an application destination of a server as JSON
+     * @param url The url of the server
+     * @param destination The destination, starting with /app
+     * @param payload The object to send
+     * @return true if the server is connected and the payload was sent
+     */
+    public boolean send(String url, String destination, Object payload)
+    {
+        StompSession session = stompSessions.get(url);
+        if (session == null || !session.isConnected())
+        {
+            return false;
+        }
+        session.send(destination, payload);
+        return true;
     }
 
     /**
@@ -182,7 +295,17 @@ public class MyWebSocketClient
             session.disconnect();
         }
         stompSessions.remove(url);
+        dropSubscriptions(url);
 
         System.out.println("Disconnected from server: " + url);
     }
+
+    /**
+     * Forget the subscriptions of a server, they end with the connection
+     */
+    private synchronized void dropSubscriptions(String url)
+    {
+        collectionSubscriptions.remove(url);
+        handlers.remove(url);
+    }
 }
\ No newline at end of file
@@ -17,24 +17,45 @@ package client.utils;
 
 import static jakarta.ws.rs.core.MediaType.APPLICATION_JSON;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 
 import client.src.ClientNote;
 import commons.Collection;
 import commons.ErrorCodes;
 import commons.Note;
+import commons.NoteChange;
+import commons.NoteDocument;
+import commons.NotePatch;
+import commons.NoteSummary;
+import commons.NoteTransfer;
 import jakarta.inject.Inject;
+import jakarta.ws.rs.ProcessingException;
 import jakarta.ws.rs.core.Response;
-import org.glassfish.jersey.client.ClientConfig;
 
-import jakarta.ws.rs.client.ClientBuilder;
 import jakarta.ws.rs.client.Entity;
 import jakarta.ws.rs.core.GenericType;
 
-public class ServerUtils
+public class ServerUtils implements AutoCloseable
 {
+    private static final int NOTE_PAGE_SIZE = 500;
+    private static final int TRANSFER_ATTEMPTS = 3;
+
     @Inject
-    private MyWebSocketClient myWebSocketClient;
+    private HttpClientPool http;
+
+    /**
+     * Runs the requests of the async variants, a virtual thread per request
+     * is cheap, so a slow server never holds up requests to other servers
+     */
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
 
     /**
      * Requests a Collection from the server by providing the server url
@@ -45,17 +66,18 @@ public class ServerUtils
      */
     public Collection getCollectionByID(String address, long collectionId)
     {
-        Response response = ClientBuilder.newClient(new ClientConfig())
-                .target(address).path("api/collections/" + collectionId)
+        try (Response response = http.target(address, "api/collections")
+                .path(String.valueOf(collectionId))
                 .request(APPLICATION_JSON)
-                .get();
-
-        if (response.getStatus() != 200)
+                .get())
         {
-            throw new RuntimeException(String.valueOf(response.getStatus()));
-        }
+            if (response.getStatus() != 200)
+            {
+                throw new RuntimeException(String.valueOf(response.getStatus()));
+            }
 
-        return response.readEntity(Collection.class);
+            return response.readEntity(Collection.class);
+        }
     }
 
     /**
@@ -67,21 +89,22 @@ public class ServerUtils
      */
     public Collection getCollectionByTitle(String address, String title)
     {
-        Response response = ClientBuilder.newClient(new ClientConfig())
-                .target(address).path("api/collections/title/" + title)
+        try (Response response = http.target(address, "api/collections/title")
+                .path(title)
                 .request(APPLICATION_JSON)
-                .get();
-
-        if(response.getStatus() == ErrorCodes.COLLECTION_DOES_NOT_EXIST.getCode())
-        {
-            return null;
-        }
-        if (response.getStatus() != 200)
+                .get())
         {
-            throw new RuntimeException(String.valueOf(response.getStatus()));
+            if (response.getStatus() == ErrorCodes.COLLECTION_DOES_NOT_EXIST.getCode())
+            {
+                return null;
+            }
+            if (response.getStatus() != 200)
+            {
+                throw new RuntimeException(String.valueOf(response.getStatus()));
+            }
+
+            return response.readEntity(Collection.class);
         }
-
-        return response.readEntity(Collection.class);
     }
 
     /**
@@ -94,17 +117,17 @@ public class ServerUtils
      */
     public Collection createCollection(String address, String title)
     {
-        Response response = ClientBuilder.newClient(new ClientConfig())
-                .target(address).path("api/collections/create")
+        try (Response response = http.target(address, "api/collections/create")
                 .request(APPLICATION_JSON)
-                .post(Entity.entity(title, APPLICATION_JSON));
-
-        if (response.getStatus() != 200)
+                .post(Entity.entity(title, APPLICATION_JSON)))
         {
-            throw new RuntimeException("Failed : HTTP error code : " + response.getStatus());
-        }
+            if (response.getStatus() != 200)
+            {
+                throw new RuntimeException("Failed : HTTP error code : " + response.getStatus());
+            }
 
-        return response.readEntity(Collection.class);
+            return response.readEntity(Collection.class);
+        }
     }
 
     /**
@@ -115,20 +138,15 @@ public class ServerUtils
      */
     public void updateCollection(String address, Collection collection)
     {
-        Response response = ClientBuilder.newClient(new ClientConfig())
-                .target(address).path("api/collections/update")
+        try (Response response = http.target(address, "api/collections/update")
                 .request(APPLICATION_JSON)
-                .post(Entity.entity(collection, APPLICATION_JSON));
-
-        if (response.getStatus() != 200)
+                .post(Entity.entity(collection, APPLICATION_JSON)))
         {
-            throw new RuntimeException("Failed : HTTP error code : " + response.getStatus());
+            if (response.getStatus() != 200)
+            {
+                throw new RuntimeException("Failed : HTTP error code : " + response.getStatus());
+            }
         }
-
-        myWebSocketClient.sendMessage(
-                address,
-                "updateCollection|" + collection.getId() + "|" + address + "|"
-        );
     }
 
     /**
@@ -139,18 +157,15 @@ public class ServerUtils
      */
     public void deleteCollection(String address, long id)
     {
-        Response response = ClientBuilder.newClient(new ClientConfig())
-                .target(address).path("api/collections/delete")
+        try (Response response = http.target(address, "api/collections/delete")
                 .request(APPLICATION_JSON)
-                .post(Entity.entity(id, APPLICATION_JSON));
-
-        if (response.getStatus() != 200)
+                .post(Entity.entity(id, APPLICATION_JSON)))
         {
-            throw new RuntimeException("Failed : HTTP error code : " + response.getStatus());
+            if (response.getStatus() != 200)
+            {
+                throw new RuntimeException("Failed : HTTP error code : " + response.getStatus());
+            }
         }
-
-        myWebSocketClient
-                .sendMessage(address, "deleteCollection|" + id + "|" + address + "|");
     }
 
     /**
@@ -162,40 +177,154 @@ public class ServerUtils
      */
     public Note getNoteById(String address, long noteId)
     {
-        Response response = ClientBuilder.newClient(new ClientConfig())
-                .target(address).path("api/notes/" + noteId)
+        try (Response response = http.target(address, "api/notes")
+                .path(String.valueOf(noteId))
                 .request(APPLICATION_JSON)
-                .get();
-
-        if (response.getStatus() != 200)
+                .get())
         {
-            throw new RuntimeException("Failed : HTTP error code : " + response.getStatus());
+            if (response.getStatus() != 200)
+            {
+                throw new RuntimeException("Failed : HTTP error code : " + response.getStatus());
+            }
+
+            return response.readEntity(Note.class);
         }
+    }
+
+    /**
+     * Requests the body of a note as its editors share it.
+     * Edits of the note received over the websocket apply to its revision.
+     * The path is api/notes/{id}/document
+     * @param address The server address
+     * @param noteId The note id
+     * @return The shared body of the note
+     */
+    public NoteDocument getNoteDocument(String address, long noteId)
+    {
+        try (Response response = http.target(address, "api/notes")
+                .path(String.valueOf(noteId))
+                .path("document")
+                .request(APPLICATION_JSON)
+                .get())
+        {
+            if (response.getStatus() != 200)
+            {
+                throw new RuntimeException("Failed : HTTP error code : " + response.getStatus());
+            }
 
-        return response.readEntity(Note.class);
+            return response.readEntity(NoteDocument.class);
+        }
     }
 
     /**
-     * Requests a List<Note> from the server by providing the server url
-     * and the collection id. Notes returned will be from the collection.
-     * The path is api/notes/byCollectionId/{id}
+     * Requests the summaries of all notes in a collection. Summaries do not
+     * contain the note bodies, which are loaded with getNoteById when needed.
+     * The summaries are requested page by page, the path is
+     * api/notes/byCollectionId/{id}/summaries?after={last id}&size={NOTE_PAGE_SIZE}
      * @param address The server address
      * @param collectionId The collection id
-     * @return The list of notes with the given collection id on that server
+     * @return The summaries of the notes with the given collection id on that server
+     */
+    public List<NoteSummary> getNoteSummariesByServerCollection(String address,
+                                                                long collectionId)
+    {
+        return getAllPages(address, "api/notes/byCollectionId/" + collectionId + "/summaries",
+                "after", 0, new GenericType<List<NoteSummary>>() {}, NoteSummary::id);
+    }
+
+    /**
+     * Requests all changes to notes on the server after a revision,
+     * oldest change first. Deleted notes are changes without a note.
+     * The changes are requested page by page, the path is
+     * api/notes/changes?since={last revision}&size={NOTE_PAGE_SIZE}
+     * @param address The server address
+     * @param since The last revision the client has seen
+     * @return The changes on that server since the given revision
+     */
+    public List<NoteChange> getNoteChanges(String address, long since)
+    {
+        return getAllPages(address, "api/notes/changes", "since", since,
+                new GenericType<List<NoteChange>>() {}, NoteChange::revision);
+    }
+
+    /**
+     * Requests the revision of the last change on the server.
+     * The path is api/notes/revision
+     * @param address The server address
+     * @return The current revision of the server
      */
-    public List<Note> getNotesByServerCollection(String address, long collectionId)
+    public long getRevision(String address)
     {
-        Response response = ClientBuilder.newClient(new ClientConfig())
-                .target(address).path("api/notes/byCollectionId/" + collectionId)
+        try (Response response = http.target(address, "api/notes/revision")
                 .request(APPLICATION_JSON)
-                .get();
+                .get())
+        {
+            if (response.getStatus() != 200)
+            {
+                throw new RuntimeException("Failed : HTTP error code : " + response.getStatus());
+            }
+
+            return response.readEntity(Long.class);
+        }
+    }
 
-        if (response.getStatus() != 200)
+    private <T> List<T> getAllPages(String address, String path, String key, long start,
+                                    GenericType<List<T>> type, ToLongFunction<T> keyOf)
+    {
+        List<T> items = new ArrayList<>();
+        List<T> page;
+        do
         {
-            throw new RuntimeException("Failed : HTTP error code : " + response.getStatus());
+            long last = items.isEmpty() ? start : keyOf.applyAsLong(items.getLast());
+            try (Response response = http.target(address, path)
+                    .queryParam(key, last)
+                    .queryParam("size", NOTE_PAGE_SIZE)
+                    .request(APPLICATION_JSON)
+                    .get())
+            {
+                if (response.getStatus() != 200)
+                {
+                    throw new RuntimeException("Failed : HTTP error code : "
+                            + response.getStatus());
+                }
+
+                page = response.readEntity(type);
+            }
+            items.addAll(page);
         }
+        while (page.size() == NOTE_PAGE_SIZE);
 
-        return response.readEntity(new GenericType<>() {});
+        return items;
+    }
+
+    /**
+     * Search the notes of a collection on the server by title and body.
+     * The path is api/notes/search
+     * @param address The server address
+     * @param collectionId The collection to search in
+     * @param query The words to search for
+     * @param page The zero-based page of results
+     * @param size The number of results per page
+     * @return The matching notes, best match first
+     */
+    public List<Note> searchNotes(String address, long collectionId,
+                                  String query, int page, int size)
+    {
+        try (Response response = http.target(address, "api/notes/search")
+                .queryParam("q", query)
+                .queryParam("collectionId", collectionId)
+                .queryParam("page", page)
+                .queryParam("size", size)
+                .request(APPLICATION_JSON)
+                .get())
+        {
+            if (response.getStatus() != 200)
+            {
+                throw new RuntimeException("Failed : HTTP error code : " + response.getStatus());
+            }
+
+            return response.readEntity(new GenericType<>() {});
+        }
     }
 
     /**
@@ -209,21 +338,18 @@ public class ServerUtils
      */
     public Note createNote(String address, long collectionId)
     {
-        Response response = ClientBuilder.newClient(new ClientConfig())
-                .target(address).path("api/notes/create")
+        Note newNote;
+        try (Response response = http.target(address, "api/notes/create")
                 .request(APPLICATION_JSON)
-                .post(Entity.entity(collectionId, APPLICATION_JSON));
-
-        if (response.getStatus() != 200)
+                .post(Entity.entity(collectionId, APPLICATION_JSON)))
         {
-            throw new RuntimeException("Failed : HTTP error code : " + response.getStatus());
-        }
-
-        Note newNote = response.readEntity(Note.class);
+            if (response.getStatus() != 200)
+            {
+                throw new RuntimeException("Failed : HTTP error code : " + response.getStatus());
+            }
 
-        // Note creation was successful -> time to notify other clients of the change
-        myWebSocketClient
-                .sendMessage(address, "addedNote|" + newNote.getId() + "|" + address + "|");
+            newNote = response.readEntity(Note.class);
+        }
 
         return newNote;
     }
@@ -252,60 +378,90 @@ public class ServerUtils
         return new ClientNote(temp, collectionAddress, null);
     }
 
+    /**
+     * Let the target server take the note from its server.
+     * The servers move the note between them, a failed attempt is sent again
+     * with the same key, so the note is neither lost nor copied twice.
+     */
     private Note moveNoteForeign(String address, ClientNote note, long collectionId)
     {
-        Response response = ClientBuilder.newClient(new ClientConfig())
-                .target(address).path("api/notes/move/foreign/" + collectionId)
-                .request(APPLICATION_JSON)
-                .post(Entity.entity(note.getNoteData(), APPLICATION_JSON));
-
-        if (response.getStatus() == ErrorCodes.INVALID_NOTE_TITLE.getCode())
-        {
-            throw new IllegalArgumentException(
-                    String.valueOf(ErrorCodes.INVALID_NOTE_TITLE.getCode()));
-        }
-        if (response.getStatus() != 200)
+        NoteTransfer transfer = new NoteTransfer(note.getServerURL(), note.getNoteId(),
+                UUID.randomUUID().toString());
+        for (int attempt = 1; attempt < TRANSFER_ATTEMPTS; attempt++)
         {
-            throw new RuntimeException("Failed : HTTP error code : " + response.getStatus());
+            try
+            {
+                return postTransfer(address, transfer, collectionId);
+            }
+            catch (ProcessingException | ServerUnreachableException e)
+            {
+                // Sent again with the same key, so a note copied before the failure is not doubled
+            }
         }
-        Note newNote = response.readEntity(Note.class);
-        myWebSocketClient.sendMessage(
-                address,
-                "moveNoteForeign|" +
-                        newNote.getId() + "|" +
-                        collectionId + "|" +
-                        address + "|"
-        );
-        deleteNote(note.getServerURL(), note.getNoteId());
-        return newNote;
+        return postTransfer(address, transfer, collectionId);
     }
 
-    private Note moveNoteLocal(ClientNote note, long collectionId)
+    private Note postTransfer(String address, NoteTransfer transfer, long collectionId)
     {
-        Response response = ClientBuilder.newClient(new ClientConfig())
-                .target(note.getServerURL()).path("api/notes/move/local/" + collectionId)
+        try (Response response = http.target(address, "api/notes/transfer")
+                .path(String.valueOf(collectionId))
                 .request(APPLICATION_JSON)
-                .post(Entity.entity(note.getNoteData(), APPLICATION_JSON));
-
-        if (response.getStatus() == ErrorCodes.INVALID_NOTE_TITLE.getCode())
+                .post(Entity.entity(transfer, APPLICATION_JSON)))
         {
-            throw new IllegalArgumentException(
-                    String.valueOf(ErrorCodes.INVALID_NOTE_TITLE.getCode()));
+            if (response.getStatus() == ErrorCodes.INVALID_NOTE_TITLE.getCode())
+            {
+                throw new IllegalArgumentException(
+                        String.valueOf(ErrorCodes.INVALID_NOTE_TITLE.getCode()));
+            }
+            if (response.getStatus() == ErrorCodes.SERVER_UNREACHABLE.getCode())
+            {
+                throw new ServerUnreachableException(transfer.sourceUrl());
+            }
+            if (response.getStatus() != 200)
+            {
+                throw new RuntimeException("Failed : HTTP error code : " + response.getStatus());
+            }
+
+            return response.readEntity(Note.class);
         }
-        if (response.getStatus() != 200)
+    }
+
+    /**
+     * The server moving a note could not reach the server the note is on
+     */
+    private static class ServerUnreachableException extends RuntimeException
+    {
+        ServerUnreachableException(String server)
         {
-            throw new RuntimeException("Failed : HTTP error code : " + response.getStatus());
+            super(ErrorCodes.SERVER_UNREACHABLE.getMessage() + " " + server);
         }
+    }
 
-        myWebSocketClient.sendMessage(
-                note.getServerURL(),
-                "moveNoteLocal|" +
-                        note.getNoteId() + "|"
-                        + collectionId + "|"
-                        + note.getServerURL() + "|"
-        );
+    private Note moveNoteLocal(ClientNote note, long collectionId)
+    {
+        return postMove(note.getServerURL(), "local", note.getNoteData(), collectionId);
+    }
 
-        return response.readEntity(Note.class);
+    private Note postMove(String address, String source, Note note, long collectionId)
+    {
+        try (Response response = http.target(address, "api/notes/move")
+                .path(source)
+                .path(String.valueOf(collectionId))
+                .request(APPLICATION_JSON)
+                .post(Entity.entity(note, APPLICATION_JSON)))
+        {
+            if (response.getStatus() == ErrorCodes.INVALID_NOTE_TITLE.getCode())
+            {
+                throw new IllegalArgumentException(
+                        String.valueOf(ErrorCodes.INVALID_NOTE_TITLE.getCode()));
+            }
+            if (response.getStatus() != 200)
+            {
+                throw new RuntimeException("Failed : HTTP error code : " + response.getStatus());
+            }
+
+            return response.readEntity(Note.class);
+        }
     }
 
     /**
@@ -317,55 +473,313 @@ public class ServerUtils
      */
     public void deleteNote(String address, long noteId)
     {
-        Response response = ClientBuilder.newClient(new ClientConfig())
-                .target(address).path("api/notes/delete")
+        try (Response response = http.target(address, "api/notes/delete")
                 .request(APPLICATION_JSON)
-                .post(Entity.entity(noteId, APPLICATION_JSON));
-
-        if (response.getStatus() != 200)
+                .post(Entity.entity(noteId, APPLICATION_JSON)))
         {
-            throw new RuntimeException("Failed : HTTP error code : " + response.getStatus());
+            if (response.getStatus() != 200)
+            {
+                throw new RuntimeException("Failed : HTTP error code : " + response.getStatus());
+            }
         }
-
-        // Note deletion was successful -> time to notify other clients of the change
-        myWebSocketClient
-                .sendMessage(address, "deleteNote|" + noteId + "|" + address + "|");
     }
 
     /**
      * Update a note on the given server.
      * The path is api/notes/update.
-     * No response is used for now.
      *
      * @param address The address of the server that hosts the note
-     * @param note The note to update
+     * @param note The note to update, with the revision the changes were made on
+     * @return The note as saved on the server, with its new revision
+     * @throws RuntimeException with the NOTE_OUT_OF_DATE code as message if the note
+     * changed on the server since its revision
      */
-    public void updateNote(String address, Note note)
+    public Note updateNote(String address, Note note)
     {
-        Response response = ClientBuilder.newClient(new ClientConfig())
-                .target(address).path("api/notes/update")
+        Note saved;
+        try (Response response = http.target(address, "api/notes/update")
                 .request(APPLICATION_JSON)
-                .post(Entity.entity(note, APPLICATION_JSON));
-
-        if (response.getStatus() == ErrorCodes.INVALID_NOTE_TITLE.getCode())
+                .post(Entity.entity(note, APPLICATION_JSON)))
         {
-            throw new IllegalArgumentException(String.
-                    valueOf(ErrorCodes.INVALID_NOTE_TITLE.getCode()));
+            if (response.getStatus() == ErrorCodes.INVALID_NOTE_TITLE.getCode())
+            {
+                throw new IllegalArgumentException(String.
+                        valueOf(ErrorCodes.INVALID_NOTE_TITLE.getCode()));
+            }
+
+            if (response.getStatus() == ErrorCodes.EMPTY_NOTE_TITLE.getCode())
+            {
+                throw new IllegalArgumentException(String.
+                        valueOf(ErrorCodes.EMPTY_NOTE_TITLE.getCode()));
+            }
+
+            if (response.getStatus() == ErrorCodes.NOTE_OUT_OF_DATE.getCode())
+            {
+                throw new RuntimeException(String.valueOf(response.getStatus()));
+            }
+
+            if (response.getStatus() != 200)
+            {
+                throw new RuntimeException("Failed : HTTP error code : " + response.getStatus());
+            }
+
+            saved = response.readEntity(Note.class);
         }
 
-        if (response.getStatus() == ErrorCodes.EMPTY_NOTE_TITLE.getCode())
-        {
-            throw new IllegalArgumentException(String.
-                    valueOf(ErrorCodes.EMPTY_NOTE_TITLE.getCode()));
-        }
+        return saved;
+    }
 
-        if (response.getStatus() != 200)
+    /**
+     * Send only the changed parts of a note body to the given server.
+     * The path is api/notes/{id}/patch.
+     *
+     * @param address The address of the server that hosts the note
+     * @param noteId The id of the note to change
+     * @param patch The changes and the revision they were made on
+     * @return The new revision of the note
+     * @throws RuntimeException with the NOTE_OUT_OF_DATE code as message if the note
+     * changed on the server since the base revision of the patch
+     */
+    public long patchNote(String address, long noteId, NotePatch patch)
+    {
+        long revision;
+        try (Response response = http.target(address, "api/notes")
+                .path(noteId + "/patch")
+                .request(APPLICATION_JSON)
+                .post(Entity.entity(patch, APPLICATION_JSON)))
         {
-            throw new RuntimeException("Failed : HTTP error code : " + response.getStatus());
+            if (response.getStatus() == ErrorCodes.NOTE_OUT_OF_DATE.getCode())
+            {
+                throw new RuntimeException(String.valueOf(response.getStatus()));
+            }
+            if (response.getStatus() != 200)
+            {
+                throw new RuntimeException("Failed : HTTP error code : " + response.getStatus());
+            }
+
+            revision = response.readEntity(Long.class);
         }
 
-        // Note update was successful -> time to notify other clients of the change
-        myWebSocketClient
-                .sendMessage(address, "updateNote|" + note.getId() + "|" + address + "|");
+        return revision;
+    }
+
+    /**
+     * Async variant of getCollectionByID
+     * @param address The server address
+     * @param collectionId The collection id
+     * @return Completes with the collection, or exceptionally like getCollectionByID
+     */
+    public CompletableFuture<Collection> getCollectionByIDAsync(String address,
+                                                                long collectionId)
+    {
+        return async(() -> getCollectionByID(address, collectionId));
+    }
+
+    /**
+     * Async variant of getCollectionByTitle
+     * @param address The server address
+     * @param title The title
+     * @return Completes with the collection, or null if there is none with the title
+     */
+    public CompletableFuture<Collection> getCollectionByTitleAsync(String address, String title)
+    {
+        return async(() -> getCollectionByTitle(address, title));
+    }
+
+    /**
+     * Async variant of createCollection
+     * @param address The server to create the collection on
+     * @param title The title for the new collection
+     * @return Completes with the created collection
+     */
+    public CompletableFuture<Collection> createCollectionAsync(String address, String title)
+    {
+        return async(() -> createCollection(address, title));
+    }
+
+    /**
+     * Async variant of updateCollection
+     * @param address The server to update the collection on
+     * @param collection The updated collection
+     * @return Completes when the collection is updated
+     */
+    public CompletableFuture<Void> updateCollectionAsync(String address, Collection collection)
+    {
+        return async(() -> updateCollection(address, collection));
+    }
+
+    /**
+     * Async variant of deleteCollection
+     * @param address The server to delete the collection on
+     * @param id The id of the collection to delete
+     * @return Completes when the collection is deleted
+     */
+    public CompletableFuture<Void> deleteCollectionAsync(String address, long id)
+    {
+        return async(() -> deleteCollection(address, id));
+    }
+
+    /**
+     * Async variant of getNoteDocument
+     * @param address The server address
+     * @param noteId The note id
+     * @return Completes with the shared body of the note
+     */
+    public CompletableFuture<NoteDocument> getNoteDocumentAsync(String address, long noteId)
+    {
+        return async(() -> getNoteDocument(address, noteId));
+    }
+
+    /**
+     * Async variant of getNoteById
+     * @param address The server address
+     * @param noteId The note id
+     * @return Completes with the note
+     */
+    public CompletableFuture<Note> getNoteByIdAsync(String address, long noteId)
+    {
+        return async(() -> getNoteById(address, noteId));
+    }
+
+    /**
+     * Async variant of getNoteSummariesByServerCollection
+     * @param address The server address
+     * @param collectionId The collection id
+     * @return Completes with the summaries of all notes of the collection
+     */
+    public CompletableFuture<List<NoteSummary>> getNoteSummariesByServerCollectionAsync(
+            String address, long collectionId)
+    {
+        return async(() -> getNoteSummariesByServerCollection(address, collectionId));
+    }
+
+    /**
+     * Async variant of getNoteChanges
+     * @param address The server address
+     * @param since The last revision the client has seen
+     * @return Completes with the changes since the revision
+     */
+    public CompletableFuture<List<NoteChange>> getNoteChangesAsync(String address, long since)
+    {
+        return async(() -> getNoteChanges(address, since));
+    }
+
+    /**
+     * Async variant of getRevision
+     * @param address The server address
+     * @return Completes with the current revision of the server
+     */
+    public CompletableFuture<Long> getRevisionAsync(String address)
+    {
+        return async(() -> getRevision(address));
+    }
+
+    /**
+     * Async variant of searchNotes
+     * @param address The server address
+     * @param collectionId The collection to search in
+     * @param query The words to search for
+     * @param page The zero-based page of results
+     * @param size The number of results per page
+     * @return Completes with the matching notes, best match first
+     */
+    public CompletableFuture<List<Note>> searchNotesAsync(String address, long collectionId,
+                                                          String query, int page, int size)
+    {
+        return async(() -> searchNotes(address, collectionId, query, page, size));
+    }
+
+    /**
+     * Async variant of createNote
+     * @param address The server to create a note on
+     * @param collectionId The id of the collection to create the note in
+     * @return Completes with the created note
+     */
+    public CompletableFuture<Note> createNoteAsync(String address, long collectionId)
+    {
+        return async(() -> createNote(address, collectionId));
+    }
+
+    /**
+     * Async variant of moveNoteIntoCollection
+     * @param collectionAddress The address of collection to move into
+     * @param note The note to move
+     * @param collectionId The id of the collection to move the note into
+     * @return Completes with the moved note, or exceptionally with an
+     * IllegalArgumentException if the title is taken in the collection
+     */
+    public CompletableFuture<ClientNote> moveNoteIntoCollectionAsync(String collectionAddress,
+                                                                     ClientNote note,
+                                                                     long collectionId)
+    {
+        return async(() -> moveNoteIntoCollection(collectionAddress, note, collectionId));
+    }
+
+    /**
+     * Async variant of deleteNote
+     * @param address The address of the server that hosts the note
+     * @param noteId The id of the note to delete
+     * @return Completes when the note is deleted
+     */
+    public CompletableFuture<Void> deleteNoteAsync(String address, long noteId)
+    {
+        return async(() -> deleteNote(address, noteId));
+    }
+
+    /**
+     * Async variant of updateNote.
+     * The note is sent as it is when the request runs,
+     * so pass a copy if it can still change on the FX thread.
+     * @param address The address of the server that hosts the note
+     * @param note The note to update
+     * @return Completes with the saved note, or exceptionally with an
+     * IllegalArgumentException if the title is invalid
+     */
+    public CompletableFuture<Note> updateNoteAsync(String address, Note note)
+    {
+        return async(() -> updateNote(address, note));
+    }
+
+    /**
+     * Async variant of patchNote
+     * @param address The address of the server that hosts the note
+     * @param noteId The id of the note to change
+     * @param patch The changes and the revision they were made on
+     * @return Completes with the new revision of the note
+     */
+    public CompletableFuture<Long> patchNoteAsync(String address, long noteId, NotePatch patch)
+    {
+        return async(() -> patchNote(address, noteId, patch));
+    }
+
+    private <T> CompletableFuture<T> async(Supplier<T> request)
+    {
+        return CompletableFuture.supplyAsync(request, executor);
+    }
+
+    private CompletableFuture<Void> async(Runnable request)
+    {
+        return CompletableFuture.runAsync(request, executor);
+    }
+
+    /**
+     * Get the exception thrown by the request of an async variant,
+     * futures wrap it in a CompletionException when it is passed on
+     * @param e The exception the future completed with
+     * @return The exception thrown by the request
+     */
+    public static Throwable unwrap(Throwable e)
+    {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    /**
+     * Close the HTTP clients of all servers
+     */
+    @Override
+    public void close()
+    {
+        executor.shutdown();
+        http.close();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,169 @@
+package client.utils;
+
+import jakarta.ws.rs.HttpMethod;
+import jakarta.ws.rs.client.ClientRequestContext;
+import jakarta.ws.rs.client.ClientRequestFilter;
+import jakarta.ws.rs.client.ClientResponseContext;
+import jakarta.ws.rs.client.ClientResponseFilter;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URI;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the last response of every GET request the server tagged with an ETag.
+ * The tag is sent back with If-None-Match, and when the server answers
+ * 304 Not Modified without a body, the kept body is handed to the caller
+ * as if the server had sent it again. Callers read the response as usual.
+ * Bodies are kept as the bytes the server sent, so every caller parses its own copy.
+ * Compressed responses have no known length, they are read up to MAX_BODY_BYTES
+ * and passed through without being kept if they are longer.
+ */
+public class ValidatorCache implements ClientRequestFilter, ClientResponseFilter
+{
+    /**
+     * Max size of all kept bodies together, in bytes
+     */
+    public static final long MAX_BYTES = 32L * 1024 * 1024;
+
+    /**
+     * Bodies larger than this are not kept, in bytes
+     */
+    public static final int MAX_BODY_BYTES = 4 * 1024 * 1024;
+
+    private static final String SENT_ENTRY = ValidatorCache.class.getName() + ".entry";
+
+    private record Entry(String eTag, String contentType, String contentEncoding, byte[] body)
+    {
+    }
+
+    /**
+     * Least recently used first
+     */
+    private final Map<URI, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    /**
+     * Ask the server to answer 304 Not Modified if the kept response is still current
+     * @param request the request about to be sent
+     */
+    @Override
+    public void filter(ClientRequestContext request)
+    {
+        if (!HttpMethod.GET.equals(request.getMethod()))
+        {
+            return;
+        }
+        Entry entry = get(request.getUri());
+        if (entry != null)
+        {
+            // The response may arrive after the entry was evicted, so it travels along
+            request.setProperty(SENT_ENTRY, entry);
+            request.getHeaders().putSingle(HttpHeaders.IF_NONE_MATCH, entry.eTag());
+        }
+    }
+
+    /**
+     * Keep a tagged response, or put the kept body back into a 304 Not Modified response
+     * @param request the request that was sent
+     * @param response the response of the server
+     * @throws IOException if the body cannot be read
+     */
+    @Override
+    public void filter(ClientRequestContext request, ClientResponseContext response)
+            throws IOException
+    {
+        if (!HttpMethod.GET.equals(request.getMethod()))
+        {
+            return;
+        }
+        if (response.getStatus() == Response.Status.NOT_MODIFIED.getStatusCode())
+        {
+            replay(request, response);
+            return;
+        }
+
+        String eTag = response.getHeaderString(HttpHeaders.ETAG);
+        if (response.getStatus() == Response.Status.OK.getStatusCode() && eTag != null
+                && response.hasEntity() && response.getLength() <= MAX_BODY_BYTES)
+        {
+            InputStream entity = response.getEntityStream();
+            byte[] body = entity.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES)
+            {
+                // Too large to keep, the caller reads what was read and then the rest
+                response.setEntityStream(new SequenceInputStream(
+                        new ByteArrayInputStream(body), entity));
+                return;
+            }
+            response.setEntityStream(new ByteArrayInputStream(body));
+            put(request.getUri(), new Entry(eTag,
+                    response.getHeaderString(HttpHeaders.CONTENT_TYPE),
+                    response.getHeaderString(HttpHeaders.CONTENT_ENCODING), body));
+        }
+    }
+
+    /**
+     * The number of kept responses
+     * @return the number of responses
+     */
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    private synchronized Entry get(URI uri)
+    {
+        return entries.get(uri);
+    }
+
+    private synchronized void put(URI uri, Entry entry)
+    {
+        Entry old = entries.put(uri, entry);
+        if (old != null)
+        {
+            bytes -= old.body().length;
+        }
+        bytes += entry.body().length;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (bytes > MAX_BYTES && eldest.hasNext())
+        {
+            bytes -= eldest.next().body().length;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Turn a 304 answer into the kept response it confirmed
+     */
+    private static void replay(ClientRequestContext request, ClientResponseContext response)
+    {
+        if (request.getProperty(SENT_ENTRY) instanceof Entry entry)
+        {
+            response.setStatus(Response.Status.OK.getStatusCode());
+            putHeader(response, HttpHeaders.CONTENT_TYPE, entry.contentType());
+            putHeader(response, HttpHeaders.CONTENT_ENCODING, entry.contentEncoding());
+            response.getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
+            response.setEntityStream(new ByteArrayInputStream(entry.body()));
+        }
+    }
+
+    private static void putHeader(ClientResponseContext response, String name, String value)
+    {
+        if (value == null)
+        {
+            response.getHeaders().remove(name);
+        }
+        else
+        {
+            response.getHeaders().putSingle(name, value);
+        }
+    }
+}
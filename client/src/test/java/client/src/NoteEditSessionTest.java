@@ -0,0 +1,132 @@
+package client.src;
+
+import commons.NoteEdit;
+import commons.TextEdit;
+import commons.TextOperation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NoteEditSessionTest
+{
+    /**
+     * Applies edits like the server does, transforming them against
+     * the edits applied since their revision
+     */
+    private String serverText;
+    private List<TextOperation> serverHistory;
+    private List<NoteEdit> sentA;
+    private List<NoteEdit> sentB;
+
+    @BeforeEach
+    public void setUp()
+    {
+        serverText = "hello";
+        serverHistory = new ArrayList<>();
+        sentA = new ArrayList<>();
+        sentB = new ArrayList<>();
+    }
+
+    private NoteEdit serverApply(NoteEdit edit)
+    {
+        TextOperation operation = edit.operation();
+        for (TextOperation concurrent : serverHistory.subList((int) edit.revision(),
+                serverHistory.size()))
+        {
+            operation = TextOperation.transform(operation, concurrent).first();
+        }
+        serverText = operation.applyTo(serverText);
+        serverHistory.add(operation);
+        return new NoteEdit(edit.noteId(), serverHistory.size() - 1, operation, edit.clientId());
+    }
+
+    private static String type(NoteEditSession session, String text, int position, String insert)
+    {
+        String result = new TextEdit(position, 0, insert).applyTo(text);
+        session.localEdit(TextOperation.fromEdit(new TextEdit(position, 0, insert),
+                text.length()));
+        return result;
+    }
+
+    private static String receive(NoteEditSession session, String text, NoteEdit edit)
+    {
+        TextOperation operation = session.receive(edit);
+        return operation == null ? text : operation.applyTo(text);
+    }
+
+    @Test
+    public void concurrentEditsConverge()
+    {
+        NoteEditSession a = new NoteEditSession(1, 0, "a", sentA::add);
+        NoteEditSession b = new NoteEditSession(1, 0, "b", sentB::add);
+        String textA = type(a, "hello", 0, "A");
+        String textB = type(b, "hello", 5, "B");
+        // Typed while the first edit is not confirmed, so it waits
+        textA = type(a, textA, 1, "a");
+        assertEquals(1, sentA.size());
+
+        NoteEdit first = serverApply(sentA.getFirst());
+        NoteEdit second = serverApply(sentB.getFirst());
+
+        textA = receive(a, textA, first);
+        assertEquals(2, sentA.size());
+        NoteEdit third = serverApply(sentA.get(1));
+        textA = receive(a, textA, second);
+        textA = receive(a, textA, third);
+
+        textB = receive(b, textB, first);
+        textB = receive(b, textB, second);
+        textB = receive(b, textB, third);
+
+        assertEquals("Aahello" + "B", serverText);
+        assertEquals(serverText, textA);
+        assertEquals(serverText, textB);
+        assertTrue(a.isSynced());
+        assertTrue(b.isSynced());
+        assertEquals(3, a.getRevision());
+    }
+
+    @Test
+    public void ignoreOldEdits()
+    {
+        NoteEditSession session = new NoteEditSession(1, 3, "a", sentA::add);
+        NoteEdit old = new NoteEdit(1, 2, TextOperation.builder().insert("x").build(), "b");
+
+        assertNull(session.receive(old));
+        assertEquals(3, session.getRevision());
+    }
+
+    @Test
+    public void ignoreOtherNotes()
+    {
+        NoteEditSession session = new NoteEditSession(1, 0, "a", sentA::add);
+        NoteEdit other = new NoteEdit(2, 0, TextOperation.builder().insert("x").build(), "b");
+
+        assertNull(session.receive(other));
+        assertEquals(0, session.getRevision());
+    }
+
+    @Test
+    public void missedEdit()
+    {
+        NoteEditSession session = new NoteEditSession(1, 0, "a", sentA::add);
+        NoteEdit later = new NoteEdit(1, 1, TextOperation.builder().insert("x").build(), "b");
+
+        assertThrows(IllegalStateException.class, () -> session.receive(later));
+    }
+
+    @Test
+    public void ownEditRejected()
+    {
+        NoteEditSession session = new NoteEditSession(1, 0, "a", sentA::add);
+        type(session, "hello", 0, "x");
+
+        assertNull(session.receive(new NoteEdit(1, 0, null, "b")));
+        assertThrows(IllegalStateException.class,
+                () -> session.receive(new NoteEdit(1, 0, null, "a")));
+    }
+}
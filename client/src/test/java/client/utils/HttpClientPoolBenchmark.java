@@ -0,0 +1,97 @@
+package client.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import commons.Note;
+import jakarta.ws.rs.client.ClientBuilder;
+import jakarta.ws.rs.core.Response;
+import org.glassfish.jersey.client.ClientConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+
+import static jakarta.ws.rs.core.MediaType.APPLICATION_JSON;
+
+/**
+ * Per request latency of fetching a note with a new client per request,
+ * as ServerUtils used to do, against the shared clients of HttpClientPool.
+ * Not part of the regular test run (surefire only picks up *Test classes), run with
+ * mvn -pl client test -Dtest=HttpClientPoolBenchmark
+ */
+class HttpClientPoolBenchmark
+{
+    private static final int WARMUP = 200;
+    private static final int REQUESTS = 2000;
+
+    private HttpServer server;
+    private String address;
+    private HttpClientPool pool;
+
+    @BeforeEach
+    void setUp() throws IOException
+    {
+        byte[] note = new ObjectMapper()
+                .writeValueAsBytes(new Note(1, 1, "Title", "Body of the note"));
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/notes/1", exchange ->
+        {
+            exchange.getResponseHeaders().add("Content-Type", APPLICATION_JSON);
+            exchange.sendResponseHeaders(200, note.length);
+            try (OutputStream out = exchange.getResponseBody())
+            {
+                out.write(note);
+            }
+        });
+        server.start();
+        address = "http://localhost:" + server.getAddress().getPort() + "/";
+        pool = new HttpClientPool();
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        pool.close();
+        server.stop(0);
+    }
+
+    @Test
+    void latency()
+    {
+        double perRequest = measure(() -> ClientBuilder.newClient(new ClientConfig())
+                .target(address).path("api/notes/1")
+                .request(APPLICATION_JSON)
+                .get()
+                .readEntity(Note.class));
+
+        double pooled = measure(() ->
+        {
+            try (Response response = pool.target(address, "api/notes").path("1")
+                    .request(APPLICATION_JSON)
+                    .get())
+            {
+                response.readEntity(Note.class);
+            }
+        });
+
+        System.out.printf("new client per request: %.1f us/request%n", perRequest);
+        System.out.printf("shared pooled client:   %.1f us/request%n", pooled);
+    }
+
+    private static double measure(Runnable request)
+    {
+        for (int i = 0; i < WARMUP; i++)
+        {
+            request.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++)
+        {
+            request.run();
+        }
+        return (System.nanoTime() - start) / 1000.0 / REQUESTS;
+    }
+}
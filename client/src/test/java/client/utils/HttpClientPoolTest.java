@@ -0,0 +1,60 @@
+package client.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpClientPoolTest {
+    private HttpClientPool pool;
+    @BeforeEach
+    void setUp()
+    {
+        pool = new HttpClientPool();
+    }
+    @AfterEach
+    void tearDown()
+    {
+        pool.close();
+    }
+    @Test
+    void targetIsCached()
+    {
+        assertSame(pool.target("http://server1.com/", "api/notes"),
+                pool.target("http://server1.com/", "api/notes"));
+    }
+    @Test
+    void targetPerPath()
+    {
+        assertNotSame(pool.target("http://server1.com/", "api/notes"),
+                pool.target("http://server1.com/", "api/collections"));
+    }
+    @Test
+    void targetUri()
+    {
+        assertEquals("http://server1.com/api/notes/5",
+                pool.target("http://server1.com/", "api/notes").path("5").getUri().toString());
+    }
+    @Test
+    void clientPerServer()
+    {
+        var q = pool.target("http://server1.com/", "api/notes");
+        var m = pool.target("http://server2.com/", "api/notes");
+        assertNotSame(q, m);
+        assertEquals("http://server2.com/api/notes", m.getUri().toString());
+    }
+    @Test
+    void closeDropsTargets()
+    {
+        var q = pool.target("http://server1.com/", "api/notes");
+        pool.close();
+        assertNotSame(q, pool.target("http://server1.com/", "api/notes"));
+    }
+    @Test
+    void clientIdIsStable()
+    {
+        assertEquals(pool.getClientId(), pool.getClientId());
+        assertNotEquals(pool.getClientId(), new HttpClientPool().getClientId());
+    }
+}
@@ -0,0 +1,33 @@
+package client.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServerUtilsTest {
+    @Test
+    void unwrapCompletionException()
+    {
+        var cause = new IllegalArgumentException("460");
+        assertSame(cause, ServerUtils.unwrap(new CompletionException(cause)));
+    }
+    @Test
+    void unwrapOtherException()
+    {
+        var e = new RuntimeException("404");
+        assertSame(e, ServerUtils.unwrap(e));
+    }
+    @Test
+    void unwrapChainedFuture()
+    {
+        var cause = new IllegalArgumentException("460");
+        CompletableFuture<Void> future = CompletableFuture
+                .<Void>failedFuture(cause)
+                .thenRun(() -> {});
+        var e = assertThrows(CompletionException.class, future::join);
+        assertSame(cause, ServerUtils.unwrap(e));
+    }
+}
@@ -0,0 +1,123 @@
+package client.utils;
+
+import jakarta.ws.rs.HttpMethod;
+import jakarta.ws.rs.client.ClientRequestContext;
+import jakarta.ws.rs.client.ClientResponseContext;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.MultivaluedMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ValidatorCacheTest {
+    private static final URI NOTE = URI.create("http://server1.com/api/notes/5");
+    private ValidatorCache cache;
+    @BeforeEach
+    void setUp()
+    {
+        cache = new ValidatorCache();
+    }
+    private static ClientRequestContext request(String method)
+    {
+        ClientRequestContext request = mock(ClientRequestContext.class);
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        Map<String, Object> properties = new HashMap<>();
+        when(request.getMethod()).thenReturn(method);
+        when(request.getUri()).thenReturn(NOTE);
+        when(request.getHeaders()).thenReturn(headers);
+        doAnswer(x -> properties.put(x.getArgument(0), x.getArgument(1)))
+                .when(request).setProperty(any(), any());
+        when(request.getProperty(any())).thenAnswer(x -> properties.get(x.getArgument(0)));
+        return request;
+    }
+    private static ClientResponseContext response(int status, String eTag, String body)
+    {
+        ClientResponseContext response = mock(ClientResponseContext.class);
+        MultivaluedMap<String, String> headers = new MultivaluedHashMap<>();
+        when(response.getStatus()).thenReturn(status);
+        when(response.getHeaders()).thenReturn(headers);
+        when(response.getHeaderString(HttpHeaders.ETAG)).thenReturn(eTag);
+        when(response.getHeaderString(HttpHeaders.CONTENT_TYPE)).thenReturn("application/json");
+        if (body != null)
+        {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            when(response.hasEntity()).thenReturn(true);
+            when(response.getLength()).thenReturn(bytes.length);
+            when(response.getEntityStream()).thenReturn(new ByteArrayInputStream(bytes));
+        }
+        return response;
+    }
+    @Test
+    void unchangedResponseIsReplayed() throws IOException
+    {
+        ClientRequestContext first = request(HttpMethod.GET);
+        cache.filter(first);
+        cache.filter(first, response(200, "\"5-3\"", "{\"id\":5}"));
+        assertFalse(first.getHeaders().containsKey(HttpHeaders.IF_NONE_MATCH));
+
+        ClientRequestContext second = request(HttpMethod.GET);
+        cache.filter(second);
+        assertEquals("\"5-3\"", second.getHeaders().getFirst(HttpHeaders.IF_NONE_MATCH));
+
+        ClientResponseContext notModified = response(304, null, null);
+        cache.filter(second, notModified);
+        verify(notModified).setStatus(200);
+        ArgumentCaptor<InputStream> body = ArgumentCaptor.forClass(InputStream.class);
+        verify(notModified).setEntityStream(body.capture());
+        assertEquals("{\"id\":5}", new String(body.getValue().readAllBytes(),
+                StandardCharsets.UTF_8));
+        assertEquals("application/json",
+                notModified.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE));
+    }
+    @Test
+    void untaggedResponseIsNotKept() throws IOException
+    {
+        ClientRequestContext request = request(HttpMethod.GET);
+        cache.filter(request, response(200, null, "[]"));
+        assertEquals(0, cache.size());
+    }
+    @Test
+    void otherMethodsAreIgnored() throws IOException
+    {
+        ClientRequestContext request = request(HttpMethod.POST);
+        cache.filter(request, response(200, "\"5-3\"", "{\"id\":5}"));
+        cache.filter(request);
+        assertEquals(0, cache.size());
+        assertFalse(request.getHeaders().containsKey(HttpHeaders.IF_NONE_MATCH));
+    }
+    @Test
+    void compressedResponseIsKept() throws IOException
+    {
+        ClientRequestContext request = request(HttpMethod.GET);
+        ClientResponseContext response = response(200, "W/\"r3\"", "[]");
+        // Compressed responses are sent in chunks, without a length
+        when(response.getLength()).thenReturn(-1);
+        cache.filter(request, response);
+        assertEquals(1, cache.size());
+    }
+    @Test
+    void largeResponseIsPassedThrough() throws IOException
+    {
+        ClientRequestContext request = request(HttpMethod.GET);
+        ClientResponseContext response = response(200, "W/\"r3\"",
+                "x".repeat(ValidatorCache.MAX_BODY_BYTES + 10));
+        when(response.getLength()).thenReturn(-1);
+        cache.filter(request, response);
+        assertEquals(0, cache.size());
+        ArgumentCaptor<InputStream> body = ArgumentCaptor.forClass(InputStream.class);
+        verify(response).setEntityStream(body.capture());
+        assertEquals(ValidatorCache.MAX_BODY_BYTES + 10, body.getValue().readAllBytes().length);
+    }
+}
@@ -8,6 +8,7 @@ import org.apache.commons.lang3.builder.ToStringBuilder;
 import static org.apache.commons.lang3.builder.ToStringStyle.MULTI_LINE_STYLE;
 
 @Entity
+@Cacheable
 public class Collection
 {
     @Id
@@ -27,6 +28,17 @@ public class Collection
         this.title = title;
     }
 
+    /**
+     * Constructor for a Collection that already exists on the server
+     * @param id the ID of the collection on the server
+     * @param title the title of the collection
+     */
+    public Collection(long id, String title)
+    {
+        this(title);
+        this.id = id;
+    }
+
     /**
      * Empty constructor for JPA
      */
@@ -5,6 +5,7 @@ public enum ErrorCodes
     INVALID_NOTE_TITLE("Note title already exists in this collection.", 460),
     EMPTY_NOTE_TITLE("Note title cannot be empty.", 461),
     COLLECTION_DOES_NOT_EXIST("Collection does not exist.", 462),
+    NOTE_OUT_OF_DATE("Note was changed on the server in the meantime.", 463),
     SERVER_UNREACHABLE("Server is unreachable.", 500);
 
     private final String message;
@@ -8,6 +8,7 @@ import org.apache.commons.lang3.builder.ToStringBuilder;
 import static org.apache.commons.lang3.builder.ToStringStyle.MULTI_LINE_STYLE;
 
 @Entity
+@Cacheable
 public class Note
 {
     @Id
@@ -29,6 +30,13 @@ public class Note
     @Column(nullable = false, columnDefinition = "TEXT")
     private String body;
 
+    /**
+     * Server wide revision of the last change to this note.
+     * Increases with every change to any note on the server.
+     */
+    @Column(nullable = false)
+    private long revision;
+
     /**
      * Constructor for Note
      * id is generated when saved to DB
@@ -43,6 +51,19 @@ public class Note
         this.body = body;
     }
 
+    /**
+     * Constructor for a Note that already exists on the server
+     * @param id the ID of the note on the server
+     * @param collectionId the ID of the collection the note belongs to
+     * @param title the title of the note
+     * @param body the markdown body of the note, null if it is not loaded
+     */
+    public Note(long id, long collectionId, String title, String body)
+    {
+        this(collectionId, title, body);
+        this.id = id;
+    }
+
     /**
      * Empty constructor for JPA
      */
@@ -71,6 +92,16 @@ public class Note
         return body;
     }
 
+    public long getRevision()
+    {
+        return revision;
+    }
+
+    public void setRevision(long revision)
+    {
+        this.revision = revision;
+    }
+
     public void setCollectionId(long collectionId)
     {
         this.collectionId = collectionId;
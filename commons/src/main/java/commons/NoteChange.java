@@ -0,0 +1,21 @@
+package commons;
+
+/**
+ * A change to a note on the server, used to synchronize
+ * clients without downloading every note again.
+ *
+ * @param noteId the ID of the changed note
+ * @param revision the server wide revision of the change
+ * @param note the note after the change, or null if the note was deleted
+ */
+public record NoteChange(long noteId, long revision, Note note)
+{
+    /**
+     * Check if this change is a tombstone for a deleted note
+     * @return true if the note was deleted
+     */
+    public boolean deleted()
+    {
+        return note == null;
+    }
+}
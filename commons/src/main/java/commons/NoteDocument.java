@@ -0,0 +1,13 @@
+package commons;
+
+/**
+ * The body of a note as its editors share it, the starting point
+ * for the edits a client receives afterwards.
+ *
+ * @param noteId the ID of the note
+ * @param revision the revision of the body, the next edit applies to this revision
+ * @param body the body of the note
+ */
+public record NoteDocument(long noteId, long revision, String body)
+{
+}
@@ -0,0 +1,26 @@
+package commons;
+
+/**
+ * An edit of the body of a note that is being edited by several clients at once.
+ * Clients send edits made on the revision of the body they know,
+ * the server transforms them against the edits made in the meantime
+ * and sends them to all editors of the note in the order it applied them.
+ *
+ * @param noteId the ID of the edited note
+ * @param revision the revision of the body the operation applies to
+ * @param operation the edit, or null if the server could not apply it
+ * @param clientId the ID of the client that made the edit
+ */
+public record NoteEdit(long noteId, long revision, TextOperation operation, String clientId)
+{
+    /**
+     * Check if the server could not apply the edit,
+     * e.g. because it was made on a revision the server no longer knows.
+     * The client that made it has to load the body again.
+     * @return true if the edit was rejected
+     */
+    public boolean rejected()
+    {
+        return operation == null;
+    }
+}
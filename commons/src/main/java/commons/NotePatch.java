@@ -0,0 +1,43 @@
+package commons;
+
+import java.util.List;
+
+/**
+ * Changes to the body of a note, sent instead of the whole note.
+ * The edits are applied one after the other, so the position of an edit
+ * refers to the body after all previous edits.
+ *
+ * @param baseRevision the revision of the note the edits were made on
+ * @param edits the edits to apply
+ */
+public record NotePatch(long baseRevision, List<TextEdit> edits)
+{
+    /**
+     * Apply all edits to a body
+     * @param body the body at the base revision
+     * @return the edited body
+     * @throws IllegalArgumentException if an edit does not fit the body
+     */
+    public String applyTo(String body)
+    {
+        String result = body;
+        for (TextEdit edit : edits)
+        {
+            result = edit.applyTo(result);
+        }
+        return result;
+    }
+
+    /**
+     * Make the patch that turns one body into another
+     * @param baseRevision the revision of the old body
+     * @param oldBody the body the server has
+     * @param newBody the body the client has
+     * @return the patch, without edits if the bodies are equal
+     */
+    public static NotePatch diff(long baseRevision, String oldBody, String newBody)
+    {
+        TextEdit edit = TextEdit.diff(oldBody, newBody);
+        return new NotePatch(baseRevision, edit == null ? List.of() : List.of(edit));
+    }
+}
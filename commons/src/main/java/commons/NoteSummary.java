@@ -0,0 +1,21 @@
+package commons;
+
+/**
+ * The fields of a note needed to show it in a list, without its body.
+ * Used so that listing a collection does not transfer every note body.
+ *
+ * @param id the ID of the note
+ * @param collectionId the ID of the collection the note belongs to
+ * @param title the title of the note
+ */
+public record NoteSummary(long id, long collectionId, String title)
+{
+    /**
+     * Create a note from this summary whose body is not loaded yet
+     * @return a note with a null body
+     */
+    public Note toNote()
+    {
+        return new Note(id, collectionId, title, null);
+    }
+}
@@ -0,0 +1,15 @@
+package commons;
+
+/**
+ * Asks a server to take over a note from another server.
+ * The server copies the note from the source server and deletes it there,
+ * so the note does not go through the client.
+ *
+ * @param sourceUrl the address of the server that has the note
+ * @param noteId the ID of the note on that server
+ * @param key chosen by the client for the move and sent again when the request is retried,
+ *            so the note is copied only once
+ */
+public record NoteTransfer(String sourceUrl, long noteId, String key)
+{
+}
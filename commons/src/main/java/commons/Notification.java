@@ -0,0 +1,117 @@
+package commons;
+
+/**
+ * A change on a server, pushed to the clients subscribed to the changed collection.
+ * The server pushes it once the change is saved, carrying the changed
+ * note or collection, so receivers can apply the change without asking for it.
+ *
+ * @param type what changed
+ * @param id the ID of the changed note or collection
+ * @param collectionId the collection of the changed note, after a move the one it moved to
+ * @param fromCollectionId the collection a note was moved out of, 0 for other changes
+ * @param note the note after the change, for added, updated and moved notes
+ * @param collection the collection after the change, for updated collections
+ * @param origin the client that made the change, it ignores the notification,
+ *               null for changes made by the server itself
+ */
+public record Notification(Type type, long id, long collectionId, long fromCollectionId,
+                           Note note, Collection collection, String origin)
+{
+    /**
+     * The request header clients send their ID in,
+     * it becomes the origin of the notifications of their changes
+     */
+    public static final String CLIENT_ID_HEADER = "X-Client-Id";
+
+    /**
+     * What changed
+     */
+    public enum Type
+    {
+        ADD_NOTE,
+        UPDATE_NOTE,
+        DELETE_NOTE,
+        MOVE_NOTE_LOCAL,
+        MOVE_NOTE_FOREIGN,
+        UPDATE_COLLECTION,
+        DELETE_COLLECTION;
+
+        /**
+         * Check if the change is to a note that still exists afterwards
+         * @return true if the notification carries the note
+         */
+        public boolean carriesNote()
+        {
+            return this != DELETE_NOTE && this != UPDATE_COLLECTION && this != DELETE_COLLECTION;
+        }
+    }
+
+    /**
+     * A change to a collection
+     * @param type UPDATE_COLLECTION or DELETE_COLLECTION
+     * @param id the ID of the changed collection
+     * @return the notification, without the changed collection
+     */
+    public static Notification of(Type type, long id)
+    {
+        return new Notification(type, id, id, 0, null, null, null);
+    }
+
+    /**
+     * A note added or updated
+     * @param type ADD_NOTE or UPDATE_NOTE
+     * @param note the note after the change
+     * @return the notification, carrying the note
+     */
+    public static Notification ofNote(Type type, Note note)
+    {
+        return new Notification(type, note.getId(), note.getCollectionId(), 0, note, null, null);
+    }
+
+    /**
+     * A note moved to another collection
+     * @param type MOVE_NOTE_LOCAL or MOVE_NOTE_FOREIGN
+     * @param note the moved note, on the server of the collection it moved to
+     * @param fromCollectionId the collection the note was moved out of,
+     *                         0 if it was on another server
+     * @return the notification, carrying the note
+     */
+    public static Notification moved(Type type, Note note, long fromCollectionId)
+    {
+        return new Notification(type, note.getId(), note.getCollectionId(), fromCollectionId,
+                note, null, null);
+    }
+
+    /**
+     * A note deleted
+     * @param id the ID of the deleted note
+     * @param collectionId the collection the note was in
+     * @return the notification
+     */
+    public static Notification deleted(long id, long collectionId)
+    {
+        return new Notification(Type.DELETE_NOTE, id, collectionId, 0, null, null, null);
+    }
+
+    /**
+     * The same notification, caused by a client
+     * @param origin the ID of the client
+     * @return the notification with the origin set
+     */
+    public Notification withOrigin(String origin)
+    {
+        return new Notification(type, id, collectionId, fromCollectionId, note, collection,
+                origin);
+    }
+
+    /**
+     * The same notification, carrying the changed collection
+     * @param collection the collection after the change
+     * @return the notification with the collection set
+     */
+    public Notification withCollection(Collection collection)
+    {
+        return new Notification(type, id, collectionId, fromCollectionId, note, collection,
+                origin);
+    }
+}
@@ -0,0 +1,21 @@
+package commons;
+
+import java.util.List;
+
+/**
+ * Notifications pushed together in one message, oldest first.
+ *
+ * @param notifications the notifications, in the order the changes were made
+ */
+public record NotificationBatch(List<Notification> notifications)
+{
+    /**
+     * A batch of a single notification
+     * @param notification the notification
+     * @return the batch
+     */
+    public static NotificationBatch of(Notification notification)
+    {
+        return new NotificationBatch(List.of(notification));
+    }
+}
@@ -0,0 +1,211 @@
+package commons;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes notification batches in a compact binary form and reads them back.
+ * Numbers are written as variable length integers and strings as UTF-8,
+ * so a notification without a note body takes a few dozen bytes.
+ * The first byte is the version of the format, a reader refuses versions it does not know.
+ * Types are written by their position in Notification.Type,
+ * so new types may only be added at the end.
+ */
+public final class NotificationCodec
+{
+    /**
+     * The content type of encoded batches in message headers.
+     * Spring only sends octet streams in binary websocket frames,
+     * other payloads would be sent as text and break on bytes that are not valid UTF-8.
+     */
+    public static final String CONTENT_TYPE = "application/octet-stream;format=notifications";
+
+    /**
+     * The version of the format written by this codec
+     */
+    public static final int VERSION = 1;
+
+    private static final int HAS_NOTE = 1;
+    private static final int HAS_COLLECTION = 2;
+    private static final int HAS_ORIGIN = 4;
+
+    private NotificationCodec()
+    {
+    }
+
+    /**
+     * Encode a batch of notifications
+     * @param batch the batch
+     * @return the encoded batch
+     */
+    public static byte[] encode(NotificationBatch batch)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(VERSION);
+        writeNumber(out, batch.notifications().size());
+        for (Notification notification : batch.notifications())
+        {
+            write(out, notification);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode a batch of notifications
+     * @param data the encoded batch
+     * @return the batch
+     * @throws IllegalArgumentException if the data is not a batch in a known version
+     */
+    public static NotificationBatch decode(byte[] data)
+    {
+        ByteBuffer in = ByteBuffer.wrap(data);
+        try
+        {
+            int version = in.get();
+            if (version != VERSION)
+            {
+                throw new IllegalArgumentException("Unknown notification format " + version);
+            }
+            int size = (int) readNumber(in);
+            List<Notification> notifications = new ArrayList<>(Math.min(size, data.length));
+            for (int i = 0; i < size; i++)
+            {
+                notifications.add(read(in));
+            }
+            return new NotificationBatch(notifications);
+        }
+        catch (BufferUnderflowException | IndexOutOfBoundsException e)
+        {
+            throw new IllegalArgumentException("Malformed notification batch", e);
+        }
+    }
+
+    private static void write(ByteArrayOutputStream out, Notification notification)
+    {
+        out.write(notification.type().ordinal());
+        writeNumber(out, notification.id());
+        writeNumber(out, notification.collectionId());
+        writeNumber(out, notification.fromCollectionId());
+        out.write(flags(notification));
+        if (notification.note() != null)
+        {
+            writeNote(out, notification.note());
+        }
+        if (notification.collection() != null)
+        {
+            writeNumber(out, notification.collection().getId());
+            writeString(out, notification.collection().getTitle());
+        }
+        if (notification.origin() != null)
+        {
+            writeString(out, notification.origin());
+        }
+    }
+
+    private static void writeNote(ByteArrayOutputStream out, Note note)
+    {
+        writeNumber(out, note.getId());
+        writeNumber(out, note.getCollectionId());
+        writeNumber(out, note.getRevision());
+        writeString(out, note.getTitle());
+        writeString(out, note.getBody());
+    }
+
+    private static int flags(Notification notification)
+    {
+        int flags = notification.note() != null ? HAS_NOTE : 0;
+        flags |= notification.collection() != null ? HAS_COLLECTION : 0;
+        return flags | (notification.origin() != null ? HAS_ORIGIN : 0);
+    }
+
+    private static Notification read(ByteBuffer in)
+    {
+        Notification.Type type = Notification.Type.values()[in.get()];
+        long id = readNumber(in);
+        long collectionId = readNumber(in);
+        long fromCollectionId = readNumber(in);
+        int flags = in.get();
+
+        Note note = (flags & HAS_NOTE) != 0 ? readNote(in) : null;
+        Collection collection = null;
+        if ((flags & HAS_COLLECTION) != 0)
+        {
+            collection = new Collection(readNumber(in), readString(in));
+        }
+        String origin = (flags & HAS_ORIGIN) != 0 ? readString(in) : null;
+        return new Notification(type, id, collectionId, fromCollectionId, note, collection,
+                origin);
+    }
+
+    private static Note readNote(ByteBuffer in)
+    {
+        long id = readNumber(in);
+        long collectionId = readNumber(in);
+        long revision = readNumber(in);
+        Note note = new Note(id, collectionId, readString(in), readString(in));
+        note.setRevision(revision);
+        return note;
+    }
+
+    /**
+     * Write a number in 7 bit groups, low group first,
+     * the high bit of a byte is set if more groups follow
+     */
+    private static void writeNumber(ByteArrayOutputStream out, long value)
+    {
+        long rest = value;
+        while ((rest & ~0x7FL) != 0)
+        {
+            out.write((int) (rest & 0x7F) | 0x80);
+            rest >>>= 7;
+        }
+        out.write((int) rest);
+    }
+
+    private static long readNumber(ByteBuffer in)
+    {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7)
+        {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+            {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Number too long");
+    }
+
+    /**
+     * Write a string as its length in bytes plus one and its UTF-8 bytes,
+     * a length of zero stands for null
+     */
+    private static void writeString(ByteArrayOutputStream out, String value)
+    {
+        if (value == null)
+        {
+            writeNumber(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeNumber(out, bytes.length + 1L);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String readString(ByteBuffer in)
+    {
+        int length = (int) readNumber(in) - 1;
+        if (length < 0)
+        {
+            return null;
+        }
+        String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+}
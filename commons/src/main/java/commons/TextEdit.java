@@ -0,0 +1,68 @@
+package commons;
+
+/**
+ * Replaces a range of a text with new text.
+ *
+ * @param position the index where the replaced range starts
+ * @param deleteLength the number of characters removed at position
+ * @param insert the text inserted at position
+ */
+public record TextEdit(int position, int deleteLength, String insert)
+{
+    /**
+     * Apply the edit to a text
+     * @param text the text to edit
+     * @return the edited text
+     * @throws IllegalArgumentException if the range is not inside the text
+     */
+    public String applyTo(String text)
+    {
+        if (position < 0 || deleteLength < 0 || insert == null
+                || position > text.length() - deleteLength)
+        {
+            throw new IllegalArgumentException("Edit does not fit the text");
+        }
+        return text.substring(0, position) + insert + text.substring(position + deleteLength);
+    }
+
+    /**
+     * Find the single edit that turns one text into another,
+     * by skipping the common start and end of both texts
+     * @param oldText the text before the change
+     * @param newText the text after the change
+     * @return the edit, or null if the texts are equal
+     */
+    public static TextEdit diff(String oldText, String newText)
+    {
+        if (oldText.equals(newText))
+        {
+            return null;
+        }
+
+        int max = Math.min(oldText.length(), newText.length());
+        int prefix = 0;
+        while (prefix < max && oldText.charAt(prefix) == newText.charAt(prefix))
+        {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix && oldText.charAt(oldText.length() - 1 - suffix)
+                == newText.charAt(newText.length() - 1 - suffix))
+        {
+            suffix++;
+        }
+
+        // Never split a surrogate pair, half of one cannot be sent as JSON
+        if (prefix > 0 && Character.isHighSurrogate(oldText.charAt(prefix - 1)))
+        {
+            prefix--;
+        }
+        if (suffix > 0 && Character.isLowSurrogate(oldText.charAt(oldText.length() - suffix)))
+        {
+            suffix--;
+        }
+
+        return new TextEdit(prefix, oldText.length() - prefix - suffix,
+                newText.substring(prefix, newText.length() - suffix));
+    }
+}
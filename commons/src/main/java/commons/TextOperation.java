@@ -0,0 +1,497 @@
+package commons;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * An edit of a whole text, walking over it from start to end.
+ * Each component either keeps, inserts or removes characters:
+ * a positive number keeps that many characters, a negative number removes
+ * that many characters and a string is inserted.
+ * Unlike a TextEdit, concurrent operations on the same text can be
+ * transformed against each other, which is what collaborative editing needs.
+ *
+ * @param ops the components, covering the whole text the operation applies to
+ */
+public record TextOperation(List<Object> ops)
+{
+    /**
+     * Check that every component is a non-zero number or a non-empty string
+     * @param ops the components
+     */
+    public TextOperation
+    {
+        for (Object op : ops)
+        {
+            if (!(op instanceof Integer n && n != 0 || op instanceof String s && !s.isEmpty()))
+            {
+                throw new IllegalArgumentException("Invalid component: " + op);
+            }
+        }
+        ops = List.copyOf(ops);
+    }
+
+    /**
+     * Start an empty operation
+     * @return a builder that merges adjacent components of the same kind
+     */
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Turn a single edit into an operation
+     * @param edit the edit
+     * @param length the length of the text the edit applies to
+     * @return the operation doing the same as the edit
+     */
+    public static TextOperation fromEdit(TextEdit edit, int length)
+    {
+        return builder()
+                .retain(edit.position())
+                .delete(edit.deleteLength())
+                .insert(edit.insert())
+                .retain(length - edit.position() - edit.deleteLength())
+                .build();
+    }
+
+    /**
+     * The length of the text this operation applies to
+     * @return the number of kept and removed characters
+     */
+    public int baseLength()
+    {
+        return ops.stream()
+                .filter(x -> x instanceof Integer)
+                .mapToInt(TextOperation::length)
+                .sum();
+    }
+
+    /**
+     * Check if applying this operation changes nothing
+     * @return true if the operation only keeps characters
+     */
+    public boolean changesNothing()
+    {
+        return ops.stream().allMatch(x -> x instanceof Integer n && n > 0);
+    }
+
+    /**
+     * Apply the operation to a text
+     * @param text the text to edit
+     * @return the edited text
+     * @throws IllegalArgumentException if the operation was made for a text of another length
+     */
+    public String applyTo(String text)
+    {
+        if (text.length() != baseLength())
+        {
+            throw new IllegalArgumentException("Operation does not fit the text");
+        }
+        StringBuilder result = new StringBuilder();
+        int index = 0;
+        for (Object op : ops)
+        {
+            if (op instanceof String insert)
+            {
+                result.append(insert);
+            }
+            else if ((Integer) op > 0)
+            {
+                result.append(text, index, index + (Integer) op);
+                index += (Integer) op;
+            }
+            else
+            {
+                index -= (Integer) op;
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * The same changes as single edits, each position refers
+     * to the text after all previous edits
+     * @return the edits, in order
+     */
+    public List<TextEdit> toEdits()
+    {
+        List<TextEdit> edits = new ArrayList<>();
+        int index = 0;
+        for (Object op : ops)
+        {
+            if (op instanceof String insert)
+            {
+                edits.add(new TextEdit(index, 0, insert));
+                index += insert.length();
+            }
+            else if ((Integer) op > 0)
+            {
+                index += (Integer) op;
+            }
+            else
+            {
+                edits.add(new TextEdit(index, -(Integer) op, ""));
+            }
+        }
+        return edits;
+    }
+
+    /**
+     * Move a position in the text along with this operation,
+     * e.g. to keep the caret in place when someone else edits the text.
+     * A position at the place of an insert stays in front of it.
+     * @param index the position in the text before the operation
+     * @return the position in the text after the operation
+     */
+    public int transformIndex(int index)
+    {
+        int result = index;
+        int position = 0;
+        for (Object op : ops)
+        {
+            if (position >= index)
+            {
+                break;
+            }
+            if (op instanceof String insert)
+            {
+                result += insert.length();
+            }
+            else if ((Integer) op > 0)
+            {
+                position += (Integer) op;
+            }
+            else
+            {
+                result -= Math.min(-(Integer) op, index - position);
+                position -= (Integer) op;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Merge this operation with one made on its result
+     * @param next the operation applied after this one
+     * @return one operation with the effect of both
+     * @throws IllegalArgumentException if next does not apply to the result of this operation
+     */
+    public TextOperation compose(TextOperation next)
+    {
+        Builder result = builder();
+        Cursor first = new Cursor(this);
+        Cursor second = new Cursor(next);
+        while (!first.done() || !second.done())
+        {
+            if (first.isDelete())
+            {
+                result.add(first.take(first.remaining()));
+            }
+            else if (second.isInsert())
+            {
+                result.add(second.take(second.remaining()));
+            }
+            else
+            {
+                composeStep(first, second, result);
+            }
+        }
+        return result.build();
+    }
+
+    /**
+     * Compose the overlapping part of a component that keeps or inserts characters
+     * with a component that keeps or removes them.
+     * Characters removed by the second operation are either removed
+     * from the original text or never inserted at all.
+     */
+    private static void composeStep(Cursor first, Cursor second, Builder result)
+    {
+        int n = Math.min(first.remaining(), second.remaining());
+        Object kept = first.take(n);
+        boolean removed = (Integer) second.take(n) < 0;
+        if (!removed)
+        {
+            result.add(kept);
+        }
+        else if (kept instanceof Integer)
+        {
+            result.delete(n);
+        }
+    }
+
+    private static int length(Object op)
+    {
+        return op instanceof String s ? s.length() : Math.abs((Integer) op);
+    }
+
+    /**
+     * Transform two operations made concurrently on the same text,
+     * so each can be applied after the other and both orders give the same text.
+     * If both insert at the same position, the text of the first goes first.
+     * @param first an operation
+     * @param second an operation on the same text as first
+     * @return first to apply after second, and second to apply after first
+     * @throws IllegalArgumentException if the operations were made on texts of different length
+     */
+    public static Transformed transform(TextOperation first, TextOperation second)
+    {
+        Builder firstPrime = builder();
+        Builder secondPrime = builder();
+        Cursor a = new Cursor(first);
+        Cursor b = new Cursor(second);
+        while (!a.done() || !b.done())
+        {
+            if (a.isInsert())
+            {
+                Object insert = a.take(a.remaining());
+                firstPrime.add(insert);
+                secondPrime.retain(((String) insert).length());
+            }
+            else if (b.isInsert())
+            {
+                Object insert = b.take(b.remaining());
+                firstPrime.retain(((String) insert).length());
+                secondPrime.add(insert);
+            }
+            else
+            {
+                transformStep(a, b, firstPrime, secondPrime);
+            }
+        }
+        return new Transformed(firstPrime.build(), secondPrime.build());
+    }
+
+    /**
+     * Merge two texts changed concurrently from the same text, keeping both changes
+     * @param base the text both were changed from
+     * @param mine a changed text, what it inserts goes first at the same position
+     * @param theirs the other changed text
+     * @return the text with the changes of both
+     */
+    public static String merge(String base, String mine, String theirs)
+    {
+        TextEdit myEdit = TextEdit.diff(base, mine);
+        TextEdit theirEdit = TextEdit.diff(base, theirs);
+        if (myEdit == null || theirEdit == null)
+        {
+            return myEdit == null ? theirs : mine;
+        }
+        Transformed t = transform(fromEdit(myEdit, base.length()),
+                fromEdit(theirEdit, base.length()));
+        return t.second().applyTo(mine);
+    }
+
+    /**
+     * Transform the overlapping part of two components that keep or remove characters.
+     * Characters removed by one operation are gone for the other.
+     */
+    private static void transformStep(Cursor a, Cursor b, Builder firstPrime, Builder secondPrime)
+    {
+        int n = Math.min(a.remaining(), b.remaining());
+        boolean aKeeps = (Integer) a.take(n) > 0;
+        boolean bKeeps = (Integer) b.take(n) > 0;
+        if (aKeeps && bKeeps)
+        {
+            firstPrime.retain(n);
+            secondPrime.retain(n);
+        }
+        else if (bKeeps)
+        {
+            firstPrime.delete(n);
+        }
+        else if (aKeeps)
+        {
+            secondPrime.delete(n);
+        }
+    }
+
+    /**
+     * The result of transforming two concurrent operations
+     *
+     * @param first the first operation, to apply after the second
+     * @param second the second operation, to apply after the first
+     */
+    public record Transformed(TextOperation first, TextOperation second)
+    {
+    }
+
+    /**
+     * Builds an operation from left to right, merging adjacent components
+     * of the same kind and putting inserts in front of removals,
+     * so equal operations also have equal components.
+     */
+    public static final class Builder
+    {
+        private final List<Object> ops = new ArrayList<>();
+
+        private Builder()
+        {
+        }
+
+        /**
+         * Keep characters
+         * @param n the number of characters
+         * @return this builder
+         */
+        public Builder retain(int n)
+        {
+            if (n > 0)
+            {
+                mergeLast(n, x -> x instanceof Integer m && m > 0);
+            }
+            return this;
+        }
+
+        /**
+         * Remove characters
+         * @param n the number of characters
+         * @return this builder
+         */
+        public Builder delete(int n)
+        {
+            if (n > 0)
+            {
+                mergeLast(-n, x -> x instanceof Integer m && m < 0);
+            }
+            return this;
+        }
+
+        /**
+         * Insert text
+         * @param text the text to insert
+         * @return this builder
+         */
+        public Builder insert(String text)
+        {
+            if (text.isEmpty())
+            {
+                return this;
+            }
+            int last = ops.size() - 1;
+            if (last >= 0 && ops.get(last) instanceof Integer n && n < 0)
+            {
+                // Insert before the removal, it has the same effect
+                ops.remove(last);
+                insert(text);
+                ops.add(n);
+                return this;
+            }
+            mergeLast(text, x -> x instanceof String);
+            return this;
+        }
+
+        /**
+         * Finish the operation
+         * @return the operation
+         */
+        public TextOperation build()
+        {
+            return new TextOperation(ops);
+        }
+
+        private void add(Object op)
+        {
+            if (op instanceof String text)
+            {
+                insert(text);
+            }
+            else if (op instanceof Integer n)
+            {
+                retain(n);
+                delete(-n);
+            }
+        }
+
+        private void mergeLast(Object op, Predicate<Object> sameKind)
+        {
+            int last = ops.size() - 1;
+            if (last < 0 || !sameKind.test(ops.get(last)))
+            {
+                ops.add(op);
+            }
+            else if (op instanceof String text)
+            {
+                ops.set(last, ops.get(last) + text);
+            }
+            else
+            {
+                ops.set(last, (Integer) ops.get(last) + (Integer) op);
+            }
+        }
+    }
+
+    /**
+     * Walks over the components of an operation,
+     * taking parts of a component when the other operation needs less.
+     */
+    private static final class Cursor
+    {
+        private final List<Object> ops;
+        private int index;
+        private int offset;
+
+        private Cursor(TextOperation operation)
+        {
+            this.ops = operation.ops();
+        }
+
+        private boolean done()
+        {
+            return index >= ops.size();
+        }
+
+        private Object current()
+        {
+            if (done())
+            {
+                throw new IllegalArgumentException("Operations do not fit the same text");
+            }
+            return ops.get(index);
+        }
+
+        private boolean isInsert()
+        {
+            return !done() && ops.get(index) instanceof String;
+        }
+
+        private boolean isDelete()
+        {
+            return !done() && ops.get(index) instanceof Integer n && n < 0;
+        }
+
+        private int remaining()
+        {
+            return length(current()) - offset;
+        }
+
+        /**
+         * Take up to n characters of the current component
+         * @param n the number of characters, at most remaining()
+         * @return an insert with the taken text or the number of kept or removed characters
+         */
+        private Object take(int n)
+        {
+            Object op = current();
+            Object part;
+            if (op instanceof String s)
+            {
+                part = s.substring(offset, offset + n);
+            }
+            else
+            {
+                part = (Integer) op > 0 ? n : -n;
+            }
+            offset += n;
+            if (offset == length(op))
+            {
+                index++;
+                offset = 0;
+            }
+            return part;
+        }
+    }
+}
@@ -18,5 +18,6 @@ class ErrorCodesTest {
         assertEquals(460, errorCode1);
         int errorCode2 = ErrorCodes.EMPTY_NOTE_TITLE.getCode();
         assertEquals(461, errorCode2);
+        assertEquals(463, ErrorCodes.NOTE_OUT_OF_DATE.getCode());
     }
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+package commons;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NoteChangeTest {
+    @Test
+    public void tombstone()
+    {
+        var q = new NoteChange(5, 3, null);
+        assertTrue(q.deleted());
+    }
+    @Test
+    public void update()
+    {
+        var q = new NoteChange(5, 3, new Note(5, 2, "Title", "Body"));
+        assertFalse(q.deleted());
+        assertEquals("Title", q.note().getTitle());
+    }
+}
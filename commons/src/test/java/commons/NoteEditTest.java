@@ -0,0 +1,19 @@
+package commons;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NoteEditTest {
+    @Test
+    public void rejected()
+    {
+        assertTrue(new NoteEdit(1, 2, null, "client").rejected());
+    }
+    @Test
+    public void applied()
+    {
+        var op = TextOperation.builder().retain(1).insert("a").build();
+        assertFalse(new NoteEdit(1, 2, op, "client").rejected());
+    }
+}
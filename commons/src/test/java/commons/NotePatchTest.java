@@ -0,0 +1,28 @@
+package commons;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NotePatchTest {
+    @Test
+    public void applyInOrder()
+    {
+        var q = new NotePatch(1, List.of(new TextEdit(0, 1, "X"), new TextEdit(3, 0, "Y")));
+        assertEquals("XbcY", q.applyTo("abc"));
+    }
+    @Test
+    public void diffEqual()
+    {
+        assertEquals(List.of(), NotePatch.diff(3, "abc", "abc").edits());
+    }
+    @Test
+    public void diff()
+    {
+        var q = NotePatch.diff(3, "abc", "abd");
+        assertEquals(3, q.baseRevision());
+        assertEquals("abd", q.applyTo("abc"));
+    }
+}
@@ -0,0 +1,25 @@
+package commons;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NoteSummaryTest {
+    @Test
+    public void toNoteTest()
+    {
+        var q = new NoteSummary(5, 2, "Title").toNote();
+        assertEquals(5, q.getId());
+        assertEquals(2, q.getCollectionId());
+        assertEquals("Title", q.getTitle());
+        assertNull(q.getBody());
+    }
+    @Test
+    public void equalsHashCode()
+    {
+        var q = new NoteSummary(5, 2, "Title");
+        var m = new NoteSummary(5, 2, "Title");
+        assertEquals(q, m);
+        assertEquals(q.hashCode(), m.hashCode());
+    }
+}
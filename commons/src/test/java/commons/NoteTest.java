@@ -105,4 +105,12 @@ public class NoteTest {
         assertTrue(actual.contains("\n"));
         assertTrue(actual.contains("Collection"));
     }
+    @Test
+    public void existingNoteConstructor()
+    {
+        var q = new Note(7, 1, "NewCollection", "Hello");
+        assertEquals(7, q.getId());
+        assertEquals(q, new Note(7, 1, "NewCollection", "Hello"));
+        assertNotEquals(q, new Note(1, "NewCollection", "Hello"));
+    }
 }
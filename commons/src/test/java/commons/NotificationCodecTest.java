@@ -0,0 +1,73 @@
+package commons;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NotificationCodecTest {
+    private static NotificationBatch roundTrip(Notification... notifications)
+    {
+        return NotificationCodec.decode(NotificationCodec.encode(
+                new NotificationBatch(List.of(notifications))));
+    }
+    @Test
+    public void noteChange()
+    {
+        var note = new Note(4, 7, "Title", "Body with ünïcode and\nlines");
+        note.setRevision(300);
+        var q = Notification.ofNote(Notification.Type.UPDATE_NOTE, note).withOrigin("client");
+        assertEquals(NotificationBatch.of(q), roundTrip(q));
+    }
+    @Test
+    public void collectionChange()
+    {
+        var q = Notification.of(Notification.Type.UPDATE_COLLECTION, 4)
+                .withCollection(new Collection(4, "Title"));
+        assertEquals(NotificationBatch.of(q), roundTrip(q));
+    }
+    @Test
+    public void batchKeepsOrder()
+    {
+        var note = new Note(4, 7, "Title", null);
+        var q = List.of(Notification.moved(Notification.Type.MOVE_NOTE_LOCAL, note, 2),
+                Notification.deleted(4, 7),
+                Notification.of(Notification.Type.DELETE_COLLECTION, 7));
+        assertEquals(new NotificationBatch(q), roundTrip(q.toArray(Notification[]::new)));
+    }
+    @Test
+    public void largeNumbers()
+    {
+        var q = Notification.deleted(Long.MAX_VALUE, 1L << 40);
+        assertEquals(NotificationBatch.of(q), roundTrip(q));
+    }
+    @Test
+    public void largeBody()
+    {
+        var note = new Note(4, 7, "Title", "x".repeat(100_000));
+        var q = Notification.ofNote(Notification.Type.ADD_NOTE, note);
+        assertEquals(NotificationBatch.of(q), roundTrip(q));
+    }
+    @Test
+    public void compact()
+    {
+        var q = Notification.deleted(4, 7).withOrigin("0f8fad5b-d9cb-469f-a165-70867728950e");
+        assertTrue(NotificationCodec.encode(NotificationBatch.of(q)).length < 50);
+    }
+    @Test
+    public void unknownVersion()
+    {
+        byte[] data = NotificationCodec.encode(NotificationBatch.of(Notification.deleted(4, 7)));
+        data[0] = NotificationCodec.VERSION + 1;
+        assertThrows(IllegalArgumentException.class, () -> NotificationCodec.decode(data));
+    }
+    @Test
+    public void truncated()
+    {
+        byte[] data = NotificationCodec.encode(NotificationBatch.of(Notification.ofNote(
+                Notification.Type.ADD_NOTE, new Note(4, 7, "Title", "Body"))));
+        byte[] part = java.util.Arrays.copyOf(data, data.length - 2);
+        assertThrows(IllegalArgumentException.class, () -> NotificationCodec.decode(part));
+    }
+}
@@ -0,0 +1,50 @@
+package commons;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NotificationTest {
+    @Test
+    public void collectionChange()
+    {
+        var q = Notification.of(Notification.Type.DELETE_COLLECTION, 4).withOrigin("client");
+        assertEquals(4, q.id());
+        assertEquals(4, q.collectionId());
+        assertEquals("client", q.origin());
+        assertNull(q.note());
+    }
+    @Test
+    public void noteChange()
+    {
+        var note = new Note(4, 7, "Title", "Body");
+        var q = Notification.ofNote(Notification.Type.ADD_NOTE, note).withOrigin("s");
+        assertEquals(4, q.id());
+        assertEquals(7, q.collectionId());
+        assertEquals(note, q.note());
+        assertEquals("s", q.origin());
+    }
+    @Test
+    public void moved()
+    {
+        var note = new Note(4, 7, "Title", "Body");
+        var q = Notification.moved(Notification.Type.MOVE_NOTE_LOCAL, note, 2);
+        assertEquals(7, q.collectionId());
+        assertEquals(2, q.fromCollectionId());
+    }
+    @Test
+    public void deleted()
+    {
+        var q = Notification.deleted(4, 7);
+        assertEquals(Notification.Type.DELETE_NOTE, q.type());
+        assertEquals(7, q.collectionId());
+    }
+    @Test
+    public void carriesNote()
+    {
+        assertTrue(Notification.Type.UPDATE_NOTE.carriesNote());
+        assertTrue(Notification.Type.MOVE_NOTE_FOREIGN.carriesNote());
+        assertFalse(Notification.Type.DELETE_NOTE.carriesNote());
+        assertFalse(Notification.Type.UPDATE_COLLECTION.carriesNote());
+    }
+}
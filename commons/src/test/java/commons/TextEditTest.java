@@ -0,0 +1,60 @@
+package commons;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TextEditTest {
+    @Test
+    public void applyInsert()
+    {
+        assertEquals("abXc", new TextEdit(2, 0, "X").applyTo("abc"));
+    }
+    @Test
+    public void applyReplace()
+    {
+        assertEquals("aXYZ", new TextEdit(1, 2, "XYZ").applyTo("abc"));
+    }
+    @Test
+    public void applyOutOfRange()
+    {
+        assertThrows(IllegalArgumentException.class, () -> new TextEdit(2, 2, "").applyTo("abc"));
+        assertThrows(IllegalArgumentException.class, () -> new TextEdit(-1, 0, "").applyTo("abc"));
+    }
+    @Test
+    public void diffEqual()
+    {
+        assertNull(TextEdit.diff("abc", "abc"));
+    }
+    @Test
+    public void diffMiddle()
+    {
+        var q = TextEdit.diff("hello world", "hello big world");
+        assertEquals(new TextEdit(6, 0, "big "), q);
+    }
+    @Test
+    public void diffDelete()
+    {
+        var q = TextEdit.diff("aaaa", "aa");
+        assertEquals("aa", q.applyTo("aaaa"));
+        assertEquals(2, q.deleteLength());
+        assertEquals("", q.insert());
+    }
+    @Test
+    public void diffRoundTrip()
+    {
+        String before = "# Title\nSome text here\nend";
+        String after = "# Title\nOther text\nend!";
+        assertEquals(after, TextEdit.diff(before, after).applyTo(before));
+    }
+    @Test
+    public void diffKeepsSurrogatePairs()
+    {
+        String before = "a😀b";
+        String after = "a😁b";
+        var q = TextEdit.diff(before, after);
+        assertEquals(1, q.position());
+        assertEquals("😁", q.insert());
+        assertEquals(after, q.applyTo(before));
+    }
+}
@@ -0,0 +1,129 @@
+package commons;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TextOperationTest {
+    private static TextOperation edit(String text, int position, int delete, String insert)
+    {
+        return TextOperation.fromEdit(new TextEdit(position, delete, insert), text.length());
+    }
+    @Test
+    public void builderMerges()
+    {
+        TextOperation op = TextOperation.builder()
+                .retain(1).retain(2).delete(1).insert("a").insert("b").retain(0).build();
+        assertEquals(List.of(3, "ab", -1), op.ops());
+    }
+    @Test
+    public void invalidComponent()
+    {
+        assertThrows(IllegalArgumentException.class, () -> new TextOperation(List.of(0)));
+        assertThrows(IllegalArgumentException.class, () -> new TextOperation(List.of("")));
+    }
+    @Test
+    public void apply()
+    {
+        assertEquals("aXYd", edit("abcd", 1, 2, "XY").applyTo("abcd"));
+        assertEquals(4, edit("abcd", 1, 2, "XY").baseLength());
+    }
+    @Test
+    public void applyWrongLength()
+    {
+        assertThrows(IllegalArgumentException.class, () -> edit("abcd", 1, 2, "XY").applyTo("abc"));
+    }
+    @Test
+    public void changesNothing()
+    {
+        assertTrue(TextOperation.builder().retain(3).build().changesNothing());
+        assertFalse(edit("abc", 1, 0, "X").changesNothing());
+    }
+    @Test
+    public void toEdits()
+    {
+        TextOperation op = TextOperation.builder()
+                .retain(1).insert("X").retain(1).delete(1).build();
+        String text = "abc";
+        for (TextEdit edit : op.toEdits())
+        {
+            text = edit.applyTo(text);
+        }
+        assertEquals(op.applyTo("abc"), text);
+    }
+    @Test
+    public void compose()
+    {
+        TextOperation first = edit("abc", 1, 0, "XY");
+        TextOperation second = edit("aXYbc", 2, 2, "Z");
+        assertEquals("aXZc", first.compose(second).applyTo("abc"));
+    }
+    @Test
+    public void transformSamePosition()
+    {
+        TextOperation a = edit("abc", 1, 0, "X");
+        TextOperation b = edit("abc", 1, 0, "Y");
+        TextOperation.Transformed t = TextOperation.transform(a, b);
+        assertEquals("aXYbc", t.first().applyTo(b.applyTo("abc")));
+        assertEquals("aXYbc", t.second().applyTo(a.applyTo("abc")));
+    }
+    @Test
+    public void transformOverlappingDeletes()
+    {
+        TextOperation a = edit("abcdef", 1, 3, "");
+        TextOperation b = edit("abcdef", 2, 3, "X");
+        TextOperation.Transformed t = TextOperation.transform(a, b);
+        assertEquals("aXf", t.first().applyTo(b.applyTo("abcdef")));
+        assertEquals("aXf", t.second().applyTo(a.applyTo("abcdef")));
+    }
+    @Test
+    public void transformDifferentTexts()
+    {
+        assertThrows(IllegalArgumentException.class,
+                () -> TextOperation.transform(edit("abc", 0, 0, "X"), edit("ab", 0, 0, "Y")));
+    }
+    @Test
+    public void transformConverges()
+    {
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++)
+        {
+            String text = "0123456789".substring(random.nextInt(10));
+            TextOperation a = randomEdit(random, text);
+            TextOperation b = randomEdit(random, text);
+            TextOperation.Transformed t = TextOperation.transform(a, b);
+            assertEquals(a.compose(t.second()).applyTo(text), b.compose(t.first()).applyTo(text));
+        }
+    }
+    private static TextOperation randomEdit(Random random, String text)
+    {
+        int position = random.nextInt(text.length() + 1);
+        int delete = random.nextInt(text.length() - position + 1);
+        return edit(text, position, delete, "ab".substring(random.nextInt(3) % 2));
+    }
+    @Test
+    public void transformIndex()
+    {
+        TextOperation op = edit("abcdef", 1, 2, "XYZ");
+        assertEquals(0, op.transformIndex(0));
+        assertEquals(1, op.transformIndex(1));
+        assertEquals(4, op.transformIndex(2));
+        assertEquals(5, op.transformIndex(4));
+    }
+    @Test
+    public void mergeKeepsBothChanges()
+    {
+        assertEquals("My shopping list: milk, bread",
+                TextOperation.merge("shopping list: milk", "My shopping list: milk",
+                        "shopping list: milk, bread"));
+    }
+    @Test
+    public void mergeOneSideUnchanged()
+    {
+        assertEquals("theirs", TextOperation.merge("base", "base", "theirs"));
+        assertEquals("mine", TextOperation.merge("base", "mine", "base"));
+    }
+}
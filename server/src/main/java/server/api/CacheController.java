@@ -0,0 +1,37 @@
+package server.api;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import server.services.CacheStatistics;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/cache")
+public class CacheController
+{
+
+    private final CacheStatistics cacheStatistics;
+
+    /**
+     * Constructor for dependency injection.
+     *
+     * @param cacheStatistics The statistics of the second-level cache.
+     */
+    public CacheController(CacheStatistics cacheStatistics)
+    {
+        this.cacheStatistics = cacheStatistics;
+    }
+
+    /**
+     * Return the hit and miss counts of the cached notes, collections and queries
+     * @return the statistics by cache region
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, CacheStatistics.RegionStatistics>> getStats()
+    {
+        return ResponseEntity.ok(cacheStatistics.getRegions());
+    }
+}
@@ -37,7 +37,8 @@ public class CollectionController
     }
 
     /**
-     * Return a collection by ID.
+     * Return a collection by ID, tagged with its title.
+     * A client sending the tag with If-None-Match gets 304 while the collection is unchanged.
      *
      * @param id The ID to look for.
      * @return Either the collection with the corresponding ID or a bad request.
@@ -46,14 +47,14 @@ public class CollectionController
     public ResponseEntity<Collection> getById(@PathVariable("id") long id)
     {
         return collectionService.getCollectionById(id)
-                .map(ResponseEntity::ok)
+                .map(x -> ResponseEntity.ok().eTag(ETags.of(x)).body(x))
                 .orElse(ResponseEntity
                         .status(ErrorCodes.COLLECTION_DOES_NOT_EXIST.getCode())
                         .build());
     }
 
     /**
-     * Return a collection by Title.
+     * Return a collection by Title, tagged like getById.
      *
      * @param title The title to look for.
      * @return Either the collection with the corresponding title or a bad request.
@@ -62,7 +63,7 @@ public class CollectionController
     public ResponseEntity<Collection> getByTitle(@PathVariable("title") String title)
     {
         return collectionService.getCollectionByTitle(title)
-                .map(ResponseEntity::ok)
+                .map(x -> ResponseEntity.ok().eTag(ETags.of(x)).body(x))
                 .orElse(ResponseEntity
                         .status(ErrorCodes.COLLECTION_DOES_NOT_EXIST.getCode())
                         .build());
@@ -90,14 +91,13 @@ public class CollectionController
     @PostMapping("/create")
     public ResponseEntity<Collection> create(@RequestBody String title)
     {
-        if (title == null ||
-                title.trim().isEmpty() ||
-                collectionService.getCollectionByTitle(title).isPresent())
+        if (title == null || title.trim().isEmpty())
         {
             return ResponseEntity.badRequest().build();
         }
-        Collection newCollection = collectionService.createCollection(title);
-        return ResponseEntity.ok(newCollection);
+        return collectionService.createCollection(title)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.badRequest().build());
     }
 
     /**
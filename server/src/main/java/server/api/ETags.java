@@ -0,0 +1,60 @@
+package server.api;
+
+import commons.Collection;
+import commons.Note;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Weak entity tags of the responses, derived from what the response shows,
+ * so a client sending the tag back with If-None-Match gets 304 without a body
+ * as long as nothing changed. The tags are weak because the same response
+ * is sent compressed or not, and Tomcat never compresses a response with a strong tag.
+ */
+public final class ETags
+{
+    private ETags()
+    {
+
+    }
+
+    /**
+     * The tag of a note, which changes with every change to the note
+     * @param note the note
+     * @return the weak tag
+     */
+    public static String of(Note note)
+    {
+        return weak(note.getId() + "-" + note.getRevision());
+    }
+
+    /**
+     * The tag of a collection, which has no revision, so its title is hashed
+     * @param collection the collection
+     * @return the weak tag
+     */
+    public static String of(Collection collection)
+    {
+        String title = collection.getTitle() == null ? "" : collection.getTitle();
+        return weak(collection.getId() + "-"
+                + DigestUtils.md5DigestAsHex(title.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * The tag of a listing of notes, which changes with every change to any note.
+     * The revision must be read before the notes, so a listing that includes
+     * newer changes gets an older tag and is fetched again, never the other way round.
+     * @param revision the current revision of the server
+     * @return the weak tag
+     */
+    public static String ofRevision(long revision)
+    {
+        return weak("r" + revision);
+    }
+
+    private static String weak(String tag)
+    {
+        return "W/\"" + tag + "\"";
+    }
+}
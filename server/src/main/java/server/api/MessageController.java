@@ -1,36 +1,46 @@
 package server.api;
 
+import commons.NoteEdit;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Controller;
 import server.services.MessageBroadcaster;
+import server.services.NoteService;
 
+/**
+ * Handles the messages clients send over the websocket.
+ * Notifications of changes are not among them, the services push those
+ * themselves once a change is saved.
+ */
 @Controller
 public class MessageController
 {
     private final MessageBroadcaster messageBroadcaster;
+    private final NoteService noteService;
 
     /**
      * Constructor that used to inject the SMT
      * @param messageBroadcaster The service used to broadcast messages.
+     * @param noteService The note service that applies edits of note bodies.
      */
-    public MessageController(MessageBroadcaster messageBroadcaster)
+    public MessageController(MessageBroadcaster messageBroadcaster, NoteService noteService)
     {
         this.messageBroadcaster = messageBroadcaster;
+        this.noteService = noteService;
     }
 
     /**
-     * This is not used for now.
-     * It is needed if you want to manipulate the message before
-     * sending it back
-     * @param message The received message from the client
+     * Apply an edit of a note body and send it to everyone editing the note,
+     * including the client that made it, which takes it as confirmation.
+     * Edits are sent in the order they were applied.
+     * @param id The ID of the edited note
+     * @param edit The edit, made on the revision of the body the client knows
      */
-    @MessageMapping("/news")
-    public void broadcastNews(@Payload String message)
+    @MessageMapping("/notes/{id}/edit")
+    public void editNote(@DestinationVariable("id") long id, @Payload NoteEdit edit)
     {
-        System.out.println("Message received: " + message);
-        messageBroadcaster.broadcast("/topic/news", message);
+        noteService.editNote(new NoteEdit(id, edit.revision(), edit.operation(), edit.clientId()),
+                applied -> messageBroadcaster.broadcast("/topic/notes/" + id + "/edits", applied));
     }
 }
-
-
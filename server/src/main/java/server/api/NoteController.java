@@ -1,40 +1,70 @@
 package server.api;
 
+import commons.ErrorCodes;
 import commons.Note;
+import commons.NoteChange;
+import commons.NoteDocument;
+import commons.NotePatch;
+import commons.NoteSummary;
+import commons.NoteTransfer;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import server.services.NoteService;
+import server.services.NoteTransferService;
 import java.util.List;
+import java.util.Locale;
 
 @RestController
 @RequestMapping("/api/notes")
 public class NoteController
 {
 
+    /**
+     * The unique constraint on the collection and title of notes
+     */
+    private static final String TITLE_CONSTRAINT = "uk_note_collection_title";
+
     private final NoteService noteService;
+    private final NoteTransferService transferService;
 
     /**
      * Constructor for dependency injection.
      *
      * @param noteService The note service.
+     * @param transferService Moves notes from other servers.
      */
-    public NoteController(NoteService noteService)
+    public NoteController(NoteService noteService, NoteTransferService transferService)
     {
         this.noteService = noteService;
+        this.transferService = transferService;
     }
 
     /**
-     * Return all notes
-     * @return the list of notes
+     * Return one page of all notes, ordered by ID.
+     * The next page is requested with the ID of the last note as after.
+     * The page is tagged with the current revision, so it is not sent again
+     * to a client that has it while no note changes.
+     * @param after only notes with a greater ID are returned
+     * @param size the max number of notes in the page
+     * @return the page of notes or bad request for an invalid page size
      */
     @GetMapping("/")
-    public List<Note> getAll()
+    public ResponseEntity<List<Note>> getAll(@RequestParam(value = "after",
+                                                     defaultValue = "0") long after,
+                                             @RequestParam(value = "size",
+                                                     defaultValue = "100") int size)
     {
-        return noteService.getAllNotes();
+        String eTag = ETags.ofRevision(noteService.getCurrentRevision());
+        return noteService.getNotesPage(after, size)
+                .map(x -> ResponseEntity.ok().eTag(eTag).body(x))
+                .orElse(ResponseEntity.badRequest().build());
     }
 
     /**
-     * Return note by ID
+     * Return note by ID, tagged with its revision.
+     * A client sending the tag with If-None-Match gets 304 while the note is unchanged.
      * @param id the note ID to look for
      * @return either the note with corresponding ID or bad request
      */
@@ -42,15 +72,117 @@ public class NoteController
     public ResponseEntity<Note> getById(@PathVariable("id") long id)
     {
         return noteService.getNoteById(id)
+                .map(x -> ResponseEntity.ok().eTag(ETags.of(x)).body(x))
+                .orElse(ResponseEntity.badRequest().build());
+    }
+
+    /**
+     * Return the body of a note as its editors share it.
+     * Edits sent over the websocket afterwards apply to the returned revision.
+     * @param id the note ID
+     * @return the shared body, or bad request if the note does not exist
+     * or live editing is turned off, then the body is saved with patches
+     */
+    @GetMapping("/{id}/document")
+    public ResponseEntity<NoteDocument> getDocument(@PathVariable("id") long id)
+    {
+        return noteService.getDocument(id)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.badRequest().build());
     }
 
+    /**
+     * Return one page of the notes in a collection, ordered by ID.
+     * The next page is requested with the ID of the last note as after.
+     * The page is tagged with the current revision.
+     * @param collectionId the collection ID
+     * @param after only notes with a greater ID are returned
+     * @param size the max number of notes in the page
+     * @return the page of notes or bad request
+     */
     @GetMapping("/byCollectionId/{collectionId}")
     public ResponseEntity<List<Note>> getByCollectionId(@PathVariable("collectionId")
-                                                            long collectionId)
+                                                            long collectionId,
+                                                        @RequestParam(value = "after",
+                                                                defaultValue = "0") long after,
+                                                        @RequestParam(value = "size",
+                                                                defaultValue = "100") int size)
     {
-        return noteService.getNotesByCollectionId(collectionId)
+        String eTag = ETags.ofRevision(noteService.getCurrentRevision());
+        return noteService.getNotesByCollectionId(collectionId, after, size)
+                .map(x -> ResponseEntity.ok().eTag(eTag).body(x))
+                .orElse(ResponseEntity.badRequest().build());
+    }
+
+    /**
+     * Return one page of the note summaries in a collection, ordered by ID.
+     * Summaries only contain what is needed to list the notes, not the bodies.
+     * The page is tagged with the current revision.
+     * @param collectionId the collection ID
+     * @param after only notes with a greater ID are returned
+     * @param size the max number of summaries in the page
+     * @return the page of summaries or bad request
+     */
+    @GetMapping("/byCollectionId/{collectionId}/summaries")
+    public ResponseEntity<List<NoteSummary>> getSummariesByCollectionId(
+            @PathVariable("collectionId") long collectionId,
+            @RequestParam(value = "after", defaultValue = "0") long after,
+            @RequestParam(value = "size", defaultValue = "100") int size)
+    {
+        String eTag = ETags.ofRevision(noteService.getCurrentRevision());
+        return noteService.getNoteSummariesByCollectionId(collectionId, after, size)
+                .map(x -> ResponseEntity.ok().eTag(eTag).body(x))
+                .orElse(ResponseEntity.badRequest().build());
+    }
+
+    /**
+     * Return the notes that changed after a revision, oldest change first.
+     * Deleted notes are returned as changes without a note.
+     * The next page is requested with the revision of the last change as since.
+     * @param since only changes with a greater revision are returned
+     * @param size the max number of changes in the page
+     * @return the page of changes or bad request for an invalid page size
+     */
+    @GetMapping("/changes")
+    public ResponseEntity<List<NoteChange>> getChanges(@RequestParam("since") long since,
+                                                       @RequestParam(value = "size",
+                                                               defaultValue = "100") int size)
+    {
+        return noteService.getChangesSince(since, size)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.badRequest().build());
+    }
+
+    /**
+     * Return the revision of the last change on this server.
+     * A client that loads all notes first asks for the revision,
+     * so it can ask for the changes since then later.
+     * @return the current revision
+     */
+    @GetMapping("/revision")
+    public ResponseEntity<Long> getRevision()
+    {
+        return ResponseEntity.ok(noteService.getCurrentRevision());
+    }
+
+    /**
+     * Full-text search over note titles and bodies, ranked by relevance
+     * @param query the words to search for
+     * @param collectionId optional collection to search in
+     * @param page the zero-based page number
+     * @param size the number of results per page
+     * @return the matching notes or bad request for invalid paging parameters
+     */
+    @GetMapping("/search")
+    public ResponseEntity<List<Note>> search(@RequestParam("q") String query,
+                                             @RequestParam(value = "collectionId",
+                                                     required = false) Long collectionId,
+                                             @RequestParam(value = "page",
+                                                     defaultValue = "0") int page,
+                                             @RequestParam(value = "size",
+                                                     defaultValue = "20") int size)
+    {
+        return noteService.searchNotes(query, collectionId, page, size)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.badRequest().build());
     }
@@ -81,7 +213,8 @@ public class NoteController
      * foreign -> note is from another server
      * local -> note from a collection on this server
      * @param collectionId The collection ID to move the note to
-     * @return the note if move worked, otherwise bad request
+     * @return the note if move worked,
+     * INVALID_NOTE_TITLE if the title is taken in the collection, otherwise bad request
      */
     @PostMapping("/move/{source}/{collectionId}")
     public ResponseEntity<Note> move(@RequestBody Note note,
@@ -91,27 +224,159 @@ public class NoteController
         return noteService.moveNoteToCollection(note, source, collectionId);
     }
 
+    /**
+     * Move a note from another server into a collection of this server.
+     * This server copies the note from the source server and deletes it there.
+     * A transfer that failed is sent again with the same key,
+     * a transfer that completed before is not done twice.
+     * @param collectionId The collection ID to move the note to
+     * @param transfer The source of the note and the key of the transfer
+     * @return the note on this server if the move worked,
+     * INVALID_NOTE_TITLE if the title is taken in the collection,
+     * SERVER_UNREACHABLE if the source server failed, otherwise bad request
+     */
+    @PostMapping("/transfer/{collectionId}")
+    public ResponseEntity<Note> transfer(@PathVariable long collectionId,
+                                         @RequestBody NoteTransfer transfer)
+    {
+        return transferService.transfer(collectionId, transfer);
+    }
+
     /**
      * Delete note by ID
+     * Deleting a note that does not exist is not an error,
+     * it may already have been deleted by another client.
+     * With a revision, the note is only deleted if it did not change since,
+     * as when another server moves it away after copying it.
      * @param id the note ID
-     * @return the current list of notes
+     * @param revision the revision of the note the caller knows, or null to delete it anyway
+     * @return an empty ok response, or NOTE_OUT_OF_DATE if the note changed since the revision
      */
     @PostMapping("/delete")
-    public List<Note> delete(@RequestBody long id)
+    public ResponseEntity<Void> delete(@RequestBody long id,
+                                       @RequestParam(value = "revision", required = false)
+                                       Long revision)
     {
-        noteService.deleteNoteById(id);
-        return noteService.getAllNotes();
+        if (revision == null)
+        {
+            noteService.deleteNoteById(id);
+        }
+        else if (!noteService.deleteNoteAtRevision(id, revision))
+        {
+            return ResponseEntity.status(ErrorCodes.NOTE_OUT_OF_DATE.getCode()).build();
+        }
+        return ResponseEntity.ok().build();
     }
 
     /**
      * Update the given note in DB if it exists there
-     * @param note the already updated note
-     * @return the note if update worked, otherwise bad request
+     * @param note the already updated note, with the revision it was loaded at
+     * @return the note if update worked,
+     * NOTE_OUT_OF_DATE if the note changed in the meantime, otherwise bad request
      */
     @PostMapping("/update")
     public ResponseEntity<Note> update(@RequestBody Note note)
     {
         return noteService.updateNote(note);
     }
-}
 
+    /**
+     * Apply changes to the body of a note
+     * @param id the note ID
+     * @param patch the edits and the revision of the note they were made on
+     * @return the new revision of the note if the patch worked,
+     * NOTE_OUT_OF_DATE if the note changed in the meantime, otherwise bad request
+     */
+    @PostMapping("/{id}/patch")
+    public ResponseEntity<Long> patch(@PathVariable("id") long id, @RequestBody NotePatch patch)
+    {
+        return noteService.patchNote(id, patch);
+    }
+
+    /**
+     * Create many notes at once, e.g. for an import
+     * @param notes the notes to create, a note without a title gets the next default title
+     * @return the created notes in the same order,
+     * INVALID_NOTE_TITLE if a title is taken, otherwise bad request
+     */
+    @PostMapping("/bulk/create")
+    public ResponseEntity<List<Note>> createAll(@RequestBody List<Note> notes)
+    {
+        return noteService.createNotes(notes);
+    }
+
+    /**
+     * Update many notes at once, nothing is saved if one of them fails
+     * @param notes the already updated notes, with the revisions they were loaded at
+     * @return the notes with their new revisions if the update worked,
+     * NOTE_OUT_OF_DATE if a note changed in the meantime, otherwise bad request
+     */
+    @PostMapping("/bulk/update")
+    public ResponseEntity<List<Note>> updateAll(@RequestBody List<Note> notes)
+    {
+        return noteService.updateNotes(notes);
+    }
+
+    /**
+     * Move many notes of this server to another collection at once
+     * @param ids the IDs of the notes to move
+     * @param collectionId the collection ID to move the notes to
+     * @return the moved notes if the move worked,
+     * INVALID_NOTE_TITLE if a title is taken in the collection, otherwise bad request
+     */
+    @PostMapping("/bulk/move/{collectionId}")
+    public ResponseEntity<List<Note>> moveAll(@RequestBody List<Long> ids,
+                                              @PathVariable long collectionId)
+    {
+        return noteService.moveNotes(ids, collectionId);
+    }
+
+    /**
+     * Delete many notes at once, notes that do not exist are skipped
+     * @param ids the note IDs
+     * @return the IDs of the deleted notes or bad request
+     */
+    @PostMapping("/bulk/delete")
+    public ResponseEntity<List<Long>> deleteAll(@RequestBody List<Long> ids)
+    {
+        return noteService.deleteNotes(ids);
+    }
+
+    /**
+     * The database rejects a note with a title that is taken in its collection,
+     * which is answered like any other taken title.
+     * Any other rejected change, e.g. a title that is too long, is a bad request.
+     * @param e the rejection of the database
+     * @return INVALID_NOTE_TITLE if the title is taken, otherwise bad request
+     */
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<Note> constraintViolated(DataIntegrityViolationException e)
+    {
+        if (isTitleTaken(e))
+        {
+            return ResponseEntity.status(ErrorCodes.INVALID_NOTE_TITLE.getCode()).build();
+        }
+        return ResponseEntity.badRequest().build();
+    }
+
+    /**
+     * Check if the database rejected a change because of the unique title of notes
+     * in a collection. The name of the constraint is taken from Hibernate if it could
+     * read it, otherwise from the message of the database.
+     * @param e the rejection of the database
+     * @return true if the title is taken in the collection
+     */
+    static boolean isTitleTaken(DataIntegrityViolationException e)
+    {
+        String name = null;
+        if (e.getCause() instanceof ConstraintViolationException violation)
+        {
+            name = violation.getConstraintName();
+        }
+        if (name == null)
+        {
+            name = e.getMostSpecificCause().getMessage();
+        }
+        return name != null && name.toLowerCase(Locale.ROOT).contains(TITLE_CONSTRAINT);
+    }
+}
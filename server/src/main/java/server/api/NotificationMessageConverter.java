@@ -0,0 +1,43 @@
+package server.api;
+
+import commons.NotificationBatch;
+import commons.NotificationCodec;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.util.MimeType;
+
+/**
+ * Sends notification batches in the compact form of NotificationCodec instead of JSON.
+ * Everything else is left to the JSON converter.
+ */
+public class NotificationMessageConverter extends AbstractMessageConverter
+{
+    /**
+     * Create the converter for the notification content type
+     */
+    public NotificationMessageConverter()
+    {
+        super(MimeType.valueOf(NotificationCodec.CONTENT_TYPE));
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz)
+    {
+        return NotificationBatch.class.equals(clazz);
+    }
+
+    @Override
+    protected Object convertFromInternal(Message<?> message, Class<?> targetClass,
+                                         Object conversionHint)
+    {
+        return NotificationCodec.decode((byte[]) message.getPayload());
+    }
+
+    @Override
+    protected Object convertToInternal(Object payload, MessageHeaders headers,
+                                       Object conversionHint)
+    {
+        return NotificationCodec.encode((NotificationBatch) payload);
+    }
+}
@@ -0,0 +1,129 @@
+package server.api;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.config.TaskExecutorRegistration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+/**
+ * Threads that handle the STOMP messages of the clients, and how long a client
+ * may fall behind on the messages sent to it.
+ * In virtual thread mode, which also moves Tomcat onto virtual threads,
+ * a message that waits for the database does not hold up a platform thread,
+ * so many editors saving at once do not queue behind a few blocked threads.
+ * A client that does not read its messages is disconnected once its send takes too long
+ * or its unsent messages fill the buffer, instead of holding up an outbound thread.
+ * Dropping its messages instead would lose edits, the client reconnects and reloads.
+ */
+@Configuration
+public class WebSocketChannelConfig implements WebSocketMessageBrokerConfigurer
+{
+    /**
+     * Threads per channel in virtual thread mode. Virtual threads are cheap, the limit
+     * only keeps a flood of messages from opening more database connections than exist.
+     */
+    public static final int VIRTUAL_POOL_SIZE = 256;
+
+    private final boolean virtualThreads;
+    private final int inboundThreads;
+    private final int outboundThreads;
+    private final int sendTimeLimit;
+    private final int sendBufferSizeLimit;
+
+    /**
+     * Constructor for dependency injection.
+     *
+     * @param virtualThreads      true to run the channels on virtual threads,
+     *                            set with spring.threads.virtual.enabled like Tomcat.
+     * @param inboundThreads      The platform threads for the messages of the clients.
+     * @param outboundThreads     The platform threads for the messages to the clients.
+     * @param sendTimeLimit       The milliseconds a send to one client may take.
+     * @param sendBufferSizeLimit The bytes that may wait to be sent to one client.
+     */
+    public WebSocketChannelConfig(
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            @Value("${notes.websocket.inbound-threads:16}") int inboundThreads,
+            @Value("${notes.websocket.outbound-threads:16}") int outboundThreads,
+            @Value("${notes.websocket.send-time-limit:5000}") int sendTimeLimit,
+            @Value("${notes.websocket.send-buffer-size-limit:262144}") int sendBufferSizeLimit)
+    {
+        if (inboundThreads < 1 || outboundThreads < 1)
+        {
+            throw new IllegalArgumentException("A channel needs at least one thread");
+        }
+        this.virtualThreads = virtualThreads;
+        this.inboundThreads = inboundThreads;
+        this.outboundThreads = outboundThreads;
+        this.sendTimeLimit = sendTimeLimit;
+        this.sendBufferSizeLimit = sendBufferSizeLimit;
+    }
+
+    /**
+     * Handle the messages sent by the clients, like edits of a note
+     * @param registration Used for configuration
+     */
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration)
+    {
+        configureExecutor(registration, "ws-inbound-", inboundThreads);
+    }
+
+    /**
+     * Send the messages to the clients, like the notifications
+     * @param registration Used for configuration
+     */
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration)
+    {
+        configureExecutor(registration, "ws-outbound-", outboundThreads);
+    }
+
+    /**
+     * Limit what may pile up for a client that reads its messages slowly
+     * @param registration Used for configuration
+     */
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration)
+    {
+        registration.setSendTimeLimit(sendTimeLimit)
+                .setSendBufferSizeLimit(sendBufferSizeLimit);
+    }
+
+    /**
+     * Give a channel a fixed number of platform threads, or the virtual thread pool.
+     * The queue in front of the threads stays unbounded, its depth is reported
+     * by WebSocketStatistics.
+     * @param registration the registration of the channel
+     * @param prefix the name prefix of virtual threads
+     * @param platformThreads the number of platform threads
+     */
+    private void configureExecutor(ChannelRegistration registration, String prefix,
+                                   int platformThreads)
+    {
+        if (virtualThreads)
+        {
+            registration.taskExecutor(virtualExecutor(prefix));
+            return;
+        }
+        TaskExecutorRegistration executor = registration.taskExecutor();
+        executor.corePoolSize(platformThreads).maxPoolSize(platformThreads);
+    }
+
+    /**
+     * A pool of virtual threads, the channel registration only takes a ThreadPoolTaskExecutor
+     * @param prefix the name prefix of the threads
+     * @return the executor, initialized by Spring as the channel's executor bean
+     */
+    static ThreadPoolTaskExecutor virtualExecutor(String prefix)
+    {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadFactory(Thread.ofVirtual().name(prefix, 0).factory());
+        executor.setCorePoolSize(VIRTUAL_POOL_SIZE);
+        executor.setMaxPoolSize(VIRTUAL_POOL_SIZE);
+        executor.setAllowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -1,15 +1,62 @@
 package server.api;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.converter.MessageConverter;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
+import java.util.List;
+
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer
 {
+    /**
+     * Broker mode that keeps the subscriptions in this server
+     */
+    public static final String SIMPLE_BROKER = "simple";
+
+    /**
+     * Broker mode that relays the topics to an external STOMP broker,
+     * so several servers behind a load balancer push each other's changes
+     */
+    public static final String BROKER_RELAY = "relay";
+
+    private final String brokerMode;
+    private final String relayHost;
+    private final int relayPort;
+    private final String relayLogin;
+    private final String relayPasscode;
+
+    /**
+     * Constructor for dependency injection.
+     *
+     * @param brokerMode    SIMPLE_BROKER or BROKER_RELAY.
+     * @param relayHost     The host of the external broker in relay mode.
+     * @param relayPort     The STOMP port of the external broker in relay mode.
+     * @param relayLogin    The login for the external broker in relay mode.
+     * @param relayPasscode The passcode for the external broker in relay mode.
+     */
+    public WebSocketConfig(@Value("${notes.broker.mode:simple}") String brokerMode,
+                           @Value("${notes.broker.relay.host:localhost}") String relayHost,
+                           @Value("${notes.broker.relay.port:61613}") int relayPort,
+                           @Value("${notes.broker.relay.login:guest}") String relayLogin,
+                           @Value("${notes.broker.relay.passcode:guest}") String relayPasscode)
+    {
+        if (!SIMPLE_BROKER.equals(brokerMode) && !BROKER_RELAY.equals(brokerMode))
+        {
+            throw new IllegalArgumentException("Unknown broker mode " + brokerMode);
+        }
+        this.brokerMode = brokerMode;
+        this.relayHost = relayHost;
+        this.relayPort = relayPort;
+        this.relayLogin = relayLogin;
+        this.relayPasscode = relayPasscode;
+    }
+
     /**
      * Set up the subscription destination /topic
      * @param registry Used for configuration
@@ -17,9 +64,38 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry)
     {
-        // Enable a simple message broker for the topic and queue prefixes
-        registry.enableSimpleBroker("/topic");
+        if (BROKER_RELAY.equals(brokerMode))
+        {
+            // The external broker must accept destinations like /topic/collections/1
+            // as they are, e.g. ActiveMQ
+            registry.enableStompBrokerRelay("/topic")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode);
+        }
+        else
+        {
+            // Enable a simple message broker for the topic and queue prefixes
+            registry.enableSimpleBroker("/topic");
+        }
         registry.setApplicationDestinationPrefixes("/app");
+        // Edits of a note must reach every editor in the order they were applied
+        registry.setPreservePublishOrder(true);
+    }
+
+    /**
+     * Send notifications in their compact binary form, everything else as JSON
+     * @param messageConverters The converters to add to
+     * @return true, so the default converters are added after the added ones
+     */
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters)
+    {
+        messageConverters.add(new NotificationMessageConverter());
+        return true;
     }
 
     /**
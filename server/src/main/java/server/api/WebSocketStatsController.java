@@ -0,0 +1,36 @@
+package server.api;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import server.services.WebSocketStatistics;
+
+@RestController
+@RequestMapping("/api/websocket")
+public class WebSocketStatsController
+{
+
+    private final WebSocketStatistics webSocketStatistics;
+
+    /**
+     * Constructor for dependency injection.
+     *
+     * @param webSocketStatistics The load of the STOMP channels.
+     */
+    public WebSocketStatsController(WebSocketStatistics webSocketStatistics)
+    {
+        this.webSocketStatistics = webSocketStatistics;
+    }
+
+    /**
+     * Return the queued messages and busy threads of the STOMP channels,
+     * and how many slow clients were disconnected
+     * @return the statistics of the channels
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<WebSocketStatistics.Snapshot> getStats()
+    {
+        return ResponseEntity.ok(webSocketStatistics.getSnapshot());
+    }
+}
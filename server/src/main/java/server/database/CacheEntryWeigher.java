@@ -0,0 +1,46 @@
+package server.database;
+
+import com.github.benmanes.caffeine.cache.Weigher;
+import org.hibernate.cache.spi.entry.CacheEntry;
+import org.hibernate.cache.spi.support.AbstractReadWriteAccess;
+
+import java.io.Serializable;
+
+/**
+ * Estimates the memory taken by an entity in the second-level cache in bytes,
+ * so the note cache is bounded by size rather than by the number of notes.
+ * Strings take two bytes per character, other fields are counted as a reference and a number.
+ */
+public class CacheEntryWeigher implements Weigher<Object, Object>
+{
+    private static final int ENTRY_OVERHEAD = 64;
+    private static final int STRING_OVERHEAD = 40;
+    private static final int FIELD_SIZE = 24;
+
+    /**
+     * Estimate the size of a cached entity
+     * @param key the ID of the entity in the cache
+     * @param value the cache entry, wrapped by the read-write access strategy
+     * @return the estimated size in bytes, 0 is never returned
+     */
+    @Override
+    public int weigh(Object key, Object value)
+    {
+        Object entry = value instanceof AbstractReadWriteAccess.Item item
+                ? item.getValue()
+                : value;
+        if (!(entry instanceof CacheEntry cacheEntry))
+        {
+            return ENTRY_OVERHEAD;
+        }
+
+        long size = ENTRY_OVERHEAD;
+        for (Serializable field : cacheEntry.getDisassembledState())
+        {
+            size += field instanceof String text
+                    ? STRING_OVERHEAD + 2L * text.length()
+                    : FIELD_SIZE;
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,83 @@
+package server.database;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+/**
+ * The last change to a note. There is one entry per note, which is
+ * overwritten on every change, so the log never grows beyond the number
+ * of notes that ever existed. Deleted notes keep their entry as a tombstone.
+ */
+@Entity
+public class ChangeLogEntry
+{
+    @Id
+    private long noteId;
+
+    @Column(nullable = false)
+    private long collectionId;
+
+    @Column(nullable = false)
+    private long revision;
+
+    @Column(nullable = false)
+    private boolean deleted;
+
+    /**
+     * Constructor for ChangeLogEntry
+     * @param noteId the ID of the changed note
+     * @param collectionId the collection the note is in after the change
+     * @param revision the revision of the change
+     * @param deleted true if the note was deleted
+     */
+    public ChangeLogEntry(long noteId, long collectionId, long revision, boolean deleted)
+    {
+        this.noteId = noteId;
+        this.collectionId = collectionId;
+        this.revision = revision;
+        this.deleted = deleted;
+    }
+
+    /**
+     * Empty constructor for JPA
+     */
+    public ChangeLogEntry()
+    {
+
+    }
+
+    public long getNoteId()
+    {
+        return noteId;
+    }
+
+    public long getCollectionId()
+    {
+        return collectionId;
+    }
+
+    public long getRevision()
+    {
+        return revision;
+    }
+
+    /**
+     * Check if the note was deleted
+     * @return true if this entry is a tombstone
+     */
+    public boolean isDeleted()
+    {
+        return deleted;
+    }
+
+    public void setRevision(long revision)
+    {
+        this.revision = revision;
+    }
+
+    public void setDeleted(boolean deleted)
+    {
+        this.deleted = deleted;
+    }
+}
@@ -0,0 +1,33 @@
+package server.database;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface ChangeLogRepository extends JpaRepository<ChangeLogEntry, Long>
+{
+    /**
+     * Keyset pagination over the change log, ordered by revision
+     * @param revision only changes with a greater revision are returned
+     * @param limit the max number of changes to return
+     * @return the next page of changes
+     */
+    List<ChangeLogEntry> findByRevisionGreaterThanOrderByRevisionAsc(long revision, Limit limit);
+
+    /**
+     * Turn the entries of all notes in a collection into tombstones
+     * Used when deleting a collection
+     * @param collectionId the collection ID
+     * @param revision the revision of the deletion
+     * @return the number of notes marked as deleted
+     */
+    @Modifying
+    @Query("UPDATE ChangeLogEntry e SET e.deleted = true, e.revision = :revision " +
+            "WHERE e.collectionId = :collectionId AND e.deleted = false")
+    int markCollectionDeleted(@Param("collectionId") long collectionId,
+                              @Param("revision") long revision);
+}
@@ -1,26 +1,61 @@
 package server.database;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import commons.Collection;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Optional;
 
 public interface CollectionRepository extends JpaRepository<Collection, Long>
 {
-    /**
-     * Check if a collection with the given title
-     * and a different ID from the given one exists.
-     * @param title The title to check.
-     * @param id The ID to exclude.
-     * @return True if a collection with the given title exists, otherwise false.
-     */
-    boolean existsByTitleAndIdNot(String title, long id);
-
     /**
      * Find collection by title if exists
      * @param title the title to search by
      * @return Optional which contains nothing or found collection
      */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Collection> findByTitle(String title);
+
+    /**
+     * Find a collection and lock it until the end of the transaction.
+     * Holding the lock while choosing a note title keeps the titles unique
+     * when several servers share the database.
+     * @param id The ID of the collection.
+     * @return Optional which contains nothing or the locked collection
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<Collection> findLockedById(long id);
+
+    /**
+     * Read the number of the last "My note N" title given out in a collection
+     * and lock the collection until the end of the transaction.
+     * The number is kept in a column the Collection entity does not map,
+     * so clients never see or overwrite it.
+     * @param id The ID of the collection.
+     * @return Optional which contains nothing if the collection does not exist
+     */
+    @Query(value = "SELECT last_note_number FROM collection WHERE id = :id FOR UPDATE",
+            nativeQuery = true)
+    Optional<Long> findLastNoteNumberLocked(@Param("id") long id);
+
+    /**
+     * Store the number of the last "My note N" title given out in a collection.
+     * Naming the table limits what Hibernate drops from the second-level cache after
+     * the update to the cached collections, instead of every cached entity.
+     * @param id The ID of the collection.
+     * @param number The number.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "collection"))
+    @Query(value = "UPDATE collection SET last_note_number = :number WHERE id = :id",
+            nativeQuery = true)
+    void updateLastNoteNumber(@Param("id") long id, @Param("number") long number);
 }
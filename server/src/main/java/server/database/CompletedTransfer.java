@@ -0,0 +1,61 @@
+package server.database;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+/**
+ * A note copied from another server, saved in the transaction that copies it.
+ * The key is chosen by the client, so a retried transfer does not copy the note again.
+ */
+@Entity
+public class CompletedTransfer
+{
+    @Id
+    private String transferKey;
+
+    @Column(nullable = false)
+    private long noteId;
+
+    /**
+     * The revision of the note on the source server when it was copied,
+     * null for transfers completed before it was kept
+     */
+    private Long sourceRevision;
+
+    /**
+     * Constructor for CompletedTransfer
+     * @param transferKey the key the client chose for the move
+     * @param noteId the ID of the copy on this server
+     * @param sourceRevision the revision of the note on the source server that was copied
+     */
+    public CompletedTransfer(String transferKey, long noteId, Long sourceRevision)
+    {
+        this.transferKey = transferKey;
+        this.noteId = noteId;
+        this.sourceRevision = sourceRevision;
+    }
+
+    /**
+     * Empty constructor for JPA
+     */
+    public CompletedTransfer()
+    {
+
+    }
+
+    public String getTransferKey()
+    {
+        return transferKey;
+    }
+
+    public long getNoteId()
+    {
+        return noteId;
+    }
+
+    public Long getSourceRevision()
+    {
+        return sourceRevision;
+    }
+}
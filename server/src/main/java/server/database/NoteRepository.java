@@ -1,19 +1,81 @@
 package server.database;
 
+import org.springframework.data.domain.Limit;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import commons.Note;
+import commons.NoteSummary;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface NoteRepository extends JpaRepository<Note, Long>
 {
     /**
-     * Custom SQL query to retrieve all notes in a collection
+     * Keyset pagination over all notes, ordered by ID
+     * @param id only notes with a greater ID are returned
+     * @param limit the max number of notes to return
+     * @return the next page of notes
+     */
+    List<Note> findByIdGreaterThanOrderByIdAsc(long id, Limit limit);
+
+    /**
+     * Keyset pagination over the notes of a collection, ordered by ID.
+     * The result is cached until any note is written, so when many clients refetch
+     * the same page after a notification, only the first one reads the database.
+     * Notes are only written as entities, a bulk statement would also drop every cached note.
      * @param collectionId the ID of collection to search for
-     * @return list of all notes in requested collection
+     * @param id only notes with a greater ID are returned
+     * @param limit the max number of notes to return
+     * @return the next page of notes in requested collection
      */
-    List<Note> findAllByCollectionId(long collectionId);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Note> findByCollectionIdAndIdGreaterThanOrderByIdAsc(long collectionId, long id,
+                                                              Limit limit);
+
+    /**
+     * Keyset pagination over the summaries of the notes in a collection, ordered by ID.
+     * Only the ID, collection ID and title columns are read, never the body.
+     * Cached like the pages of notes, until any note is written.
+     * @param collectionId the ID of collection to search for
+     * @param after only notes with a greater ID are returned
+     * @param limit the max number of summaries to return
+     * @return the next page of summaries in requested collection
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query("SELECT new commons.NoteSummary(n.id, n.collectionId, n.title) FROM Note n " +
+            "WHERE n.collectionId = :collectionId AND n.id > :after ORDER BY n.id")
+    List<NoteSummary> findSummariesByCollectionId(@Param("collectionId") long collectionId,
+                                                  @Param("after") long after,
+                                                  Limit limit);
+
+    /**
+     * Find a note and lock it until the end of the transaction,
+     * so no other writer can change it between checking its revision and saving it.
+     * Always read from the database, never from the second-level cache.
+     * @param id the ID of the note
+     * @return Optional which contains nothing or the locked note
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<Note> findLockedById(long id);
+
+    /**
+     * Find notes by their IDs and lock them until the end of the transaction.
+     * The rows are locked in the order of their IDs, so two requests
+     * changing overlapping notes cannot wait for each other.
+     * @param ids the IDs of the notes
+     * @return the notes that exist, ordered by ID
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<Note> findLockedByIdInOrderByIdAsc(Collection<Long> ids);
 
     /**
      * Delete all notes by given collection ID
@@ -23,16 +85,8 @@ public interface NoteRepository extends JpaRepository<Note, Long>
     void deleteNotesByCollectionId(long collectionId);
 
     /**
-     * Checks if a note exists with given title and collection id, but not with given id
-     * @param title the title of the note
-     * @param collectionId the collection id of the note
-     * @param id the id of the note
-     * @return true if statement is satisfied, false otherwise
-     */
-    boolean existsByTitleAndCollectionIdAndIdNot(String title, long collectionId, long id);
-
-    /**
-     * Checks if a note exists with given title and collection id
+     * Checks if a note exists with given title and collection id,
+     * a lookup in the unique index on both
      * @param title The title of the note
      * @param collectionId The collection id of the note
      * @return true if statement is satisfied, false otherwise
@@ -0,0 +1,47 @@
+package server.database;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+/**
+ * Single row holding the last revision handed out by the server,
+ * created by the schema migrations.
+ * Incrementing it locks the row until the transaction commits, so
+ * revisions become visible to readers in the order they were assigned.
+ */
+@Entity
+public class RevisionCounter
+{
+    /**
+     * The ID of the only row
+     */
+    public static final int ID = 1;
+
+    @Id
+    private int id;
+
+    /**
+     * VALUE is a keyword in H2, so the column is named after what it holds
+     */
+    @Column(name = "last_revision", nullable = false)
+    private long value;
+
+    /**
+     * Empty constructor for JPA
+     */
+    public RevisionCounter()
+    {
+
+    }
+
+    public int getId()
+    {
+        return id;
+    }
+
+    public long getValue()
+    {
+        return value;
+    }
+}
@@ -0,0 +1,38 @@
+package server.database;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface RevisionCounterRepository extends JpaRepository<RevisionCounter, Integer>
+{
+    /**
+     * Increment the revision counter
+     * The row stays locked until the surrounding transaction ends.
+     * @return the number of updated rows, 0 if the counter row does not exist
+     */
+    @Modifying
+    @Query("UPDATE RevisionCounter c SET c.value = c.value + 1 " +
+            "WHERE c.id = " + RevisionCounter.ID)
+    int increment();
+
+    /**
+     * Hand out several revisions at once
+     * The row stays locked until the surrounding transaction ends.
+     * @param count the number of revisions
+     * @return the number of updated rows, 0 if the counter row does not exist
+     */
+    @Modifying
+    @Query("UPDATE RevisionCounter c SET c.value = c.value + :count " +
+            "WHERE c.id = " + RevisionCounter.ID)
+    int incrementBy(@Param("count") long count);
+
+    /**
+     * Read the counter straight from the database,
+     * bypassing any cached entity in the persistence context
+     * @return the current revision
+     */
+    @Query("SELECT c.value FROM RevisionCounter c WHERE c.id = " + RevisionCounter.ID)
+    long currentValue();
+}
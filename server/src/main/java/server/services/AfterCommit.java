@@ -0,0 +1,39 @@
+package server.services;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Defers changes to state kept in memory until the database changes they
+ * belong to are committed, so a rolled back transaction leaves no trace in it.
+ */
+final class AfterCommit
+{
+    private AfterCommit()
+    {
+    }
+
+    /**
+     * Run an action once the current transaction committed,
+     * or right away outside a transaction.
+     * Nothing is run if the transaction is rolled back.
+     *
+     * @param action The action.
+     */
+    static void run(Runnable action)
+    {
+        if (!TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+        {
+            @Override
+            public void afterCommit()
+            {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,62 @@
+package server.services;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Hit and miss counts of the regions of the second-level cache,
+ * to check how many reads are served from memory.
+ */
+@Service
+public class CacheStatistics
+{
+    private final Statistics statistics;
+
+    /**
+     * Hits, misses and puts of one cache region since the server started
+     *
+     * @param hits   reads served from the cache
+     * @param misses reads that went to the database
+     * @param puts   entries added to the cache
+     */
+    public record RegionStatistics(long hits, long misses, long puts)
+    {
+    }
+
+    /**
+     * Constructor for dependency injection.
+     *
+     * @param entityManagerFactory The entity manager factory, which keeps the statistics.
+     */
+    public CacheStatistics(EntityManagerFactory entityManagerFactory)
+    {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    /**
+     * The statistics of every cache region, by region name.
+     * Empty if the cache is turned off.
+     *
+     * @return The statistics, ordered by region name.
+     */
+    public Map<String, RegionStatistics> getRegions()
+    {
+        Map<String, RegionStatistics> regions = new TreeMap<>();
+        for (String name : statistics.getSecondLevelCacheRegionNames())
+        {
+            CacheRegionStatistics region = statistics.getCacheRegionStatistics(name);
+            if (region != null)
+            {
+                regions.put(name, new RegionStatistics(region.getHitCount(),
+                        region.getMissCount(), region.getPutCount()));
+            }
+        }
+        return regions;
+    }
+}
@@ -0,0 +1,163 @@
+package server.services;
+
+import commons.Note;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import server.database.ChangeLogEntry;
+import server.database.ChangeLogRepository;
+import server.database.RevisionCounter;
+import server.database.RevisionCounterRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the last change to every note with a server wide revision,
+ * so clients can ask for everything that changed since the revision they last saw.
+ * Must be called inside the transaction that makes the change, as its last step:
+ * the revision counter stays locked from the first revision handed out until the commit,
+ * for every server sharing the database. Writing transactions pass the counter one at a time,
+ * so adding servers does not raise the write throughput beyond one transaction per
+ * "write the changed rows and commit" round trip to the database.
+ * Bulk requests take all their revisions at once and pass it once.
+ */
+@Service
+public class ChangeLog
+{
+    private final ChangeLogRepository entries;
+    private final RevisionCounterRepository counter;
+
+    /**
+     * Constructor for dependency injection.
+     *
+     * @param entries The repository holding the last change of every note.
+     * @param counter The repository holding the revision counter.
+     */
+    public ChangeLog(ChangeLogRepository entries, RevisionCounterRepository counter)
+    {
+        this.entries = entries;
+        this.counter = counter;
+    }
+
+    /**
+     * Hand out the next revision.
+     * Writers are serialized on the counter row until they commit,
+     * so a reader never sees a revision before all smaller ones are visible.
+     * Call it after everything that can wait, only the writes using the revision should follow.
+     *
+     * @return The new revision.
+     */
+    public long nextRevision()
+    {
+        counter.increment();
+        return counter.currentValue();
+    }
+
+    /**
+     * Hand out several consecutive revisions, for changes to many notes at once.
+     *
+     * @param count The number of revisions.
+     * @return The first of the new revisions.
+     */
+    public long nextRevisions(int count)
+    {
+        counter.incrementBy(count);
+        return counter.currentValue() - count + 1;
+    }
+
+    /**
+     * The last revision handed out.
+     *
+     * @return The current revision, 0 if nothing changed yet.
+     */
+    public long currentRevision()
+    {
+        return counter.findById(RevisionCounter.ID)
+                .map(RevisionCounter::getValue)
+                .orElse(0L);
+    }
+
+    /**
+     * Record that a note was created or changed.
+     * The revision of the note must already be set by nextRevision.
+     *
+     * @param note The saved note.
+     */
+    public void recordUpdate(Note note)
+    {
+        if (note == null)
+        {
+            return;
+        }
+        entries.save(new ChangeLogEntry(note.getId(), note.getCollectionId(),
+                note.getRevision(), false));
+    }
+
+    /**
+     * Record that many notes were created or changed, written in batches.
+     * The revisions of the notes must already be set by nextRevisions.
+     *
+     * @param notes The saved notes.
+     */
+    public void recordUpdates(List<Note> notes)
+    {
+        entries.saveAll(notes.stream()
+                .map(x -> new ChangeLogEntry(x.getId(), x.getCollectionId(),
+                        x.getRevision(), false))
+                .toList());
+    }
+
+    /**
+     * Record that many notes were deleted, written in batches.
+     *
+     * @param notes         The deleted notes.
+     * @param firstRevision The first of the revisions handed out by nextRevisions,
+     *                      one for each note.
+     */
+    public void recordDeletes(List<Note> notes, long firstRevision)
+    {
+        List<ChangeLogEntry> tombstones = new ArrayList<>();
+        for (int i = 0; i < notes.size(); i++)
+        {
+            tombstones.add(new ChangeLogEntry(notes.get(i).getId(),
+                    notes.get(i).getCollectionId(), firstRevision + i, true));
+        }
+        entries.saveAll(tombstones);
+    }
+
+    /**
+     * Record that a note was deleted.
+     *
+     * @param noteId The ID of the deleted note.
+     */
+    public void recordDelete(long noteId)
+    {
+        ChangeLogEntry entry = entries.findById(noteId)
+                .orElseGet(() -> new ChangeLogEntry(noteId, -1, 0, true));
+        entry.setRevision(nextRevision());
+        entry.setDeleted(true);
+        entries.save(entry);
+    }
+
+    /**
+     * Record that all notes of a collection were deleted, using a single revision.
+     *
+     * @param collectionId The ID of the deleted collection.
+     */
+    public void recordCollectionDelete(long collectionId)
+    {
+        entries.markCollectionDeleted(collectionId, nextRevision());
+    }
+
+    /**
+     * Retrieve the changes after a revision, oldest first.
+     *
+     * @param since Only changes with a greater revision are returned.
+     * @param size  The max number of changes.
+     * @return The changes ordered by revision.
+     */
+    public List<ChangeLogEntry> changesSince(long since, int size)
+    {
+        return entries.findByRevisionGreaterThanOrderByRevisionAsc(since, Limit.of(size));
+    }
+}
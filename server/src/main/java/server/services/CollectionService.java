@@ -1,7 +1,9 @@
 package server.services;
 
 import commons.Collection;
+import commons.Notification;
 import jakarta.transaction.Transactional;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import server.database.CollectionRepository;
 import server.database.NoteRepository;
@@ -15,18 +17,30 @@ public class CollectionService
 
     private final CollectionRepository collectionRepository;
     private final NoteRepository noteRepository;
+    private final SearchIndex searchIndex;
+    private final ChangeLog changeLog;
+    private final NotificationPublisher notifications;
 
     /**
      * Constructor for dependency injection.
      *
      * @param collectionRepository The repository for managing collections.
      * @param noteRepository The repository for managing notes.
+     * @param searchIndex The full-text index, cleared of deleted notes.
+     * @param changeLog The log of note changes, gets tombstones for deleted notes.
+     * @param notifications Pushes the changes to the clients once they are saved.
      */
     public CollectionService(CollectionRepository collectionRepository,
-                             NoteRepository noteRepository)
+                             NoteRepository noteRepository,
+                             SearchIndex searchIndex,
+                             ChangeLog changeLog,
+                             NotificationPublisher notifications)
     {
         this.collectionRepository = collectionRepository;
         this.noteRepository = noteRepository;
+        this.searchIndex = searchIndex;
+        this.changeLog = changeLog;
+        this.notifications = notifications;
     }
 
     /**
@@ -63,19 +77,26 @@ public class CollectionService
 
     /**
      * Create a new collection with the given title.
+     * The database rejects a title that is taken already.
      *
      * @param title The title of the new collection.
-     * @return The newly created collection.
+     * @return An optional containing the new collection, empty if the title is taken.
      */
-    public Collection createCollection(String title)
+    public Optional<Collection> createCollection(String title)
     {
-        Collection newCollection = new Collection();
-        newCollection.setTitle(title);
-        return collectionRepository.save(newCollection);
+        try
+        {
+            return Optional.of(collectionRepository.save(new Collection(title)));
+        }
+        catch (DataIntegrityViolationException _)
+        {
+            return Optional.empty();
+        }
     }
 
     /**
      * Update an existing collection.
+     * The database rejects a title that another collection has already.
      *
      * @param collection The collection with updated data.
      * @return An optional containing the updated collection if the update was successful.
@@ -86,11 +107,18 @@ public class CollectionService
         {
             return Optional.empty();
         }
-        if (collectionRepository.existsByTitleAndIdNot(collection.getTitle(), collection.getId()))
+        Collection saved;
+        try
+        {
+            saved = collectionRepository.save(collection);
+        }
+        catch (DataIntegrityViolationException _)
         {
             return Optional.empty();
         }
-        return Optional.of(collectionRepository.save(collection));
+        notifications.publish(Notification.of(Notification.Type.UPDATE_COLLECTION, saved.getId())
+                .withCollection(saved));
+        return Optional.of(saved);
     }
 
     /**
@@ -105,6 +133,11 @@ public class CollectionService
         {
             collectionRepository.deleteById(id);
             noteRepository.deleteNotesByCollectionId(id);
+            // Written before the revision counter is taken, which stays locked until the commit
+            noteRepository.flush();
+            changeLog.recordCollectionDelete(id);
+            AfterCommit.run(() -> searchIndex.removeCollection(id));
+            notifications.publish(Notification.of(Notification.Type.DELETE_COLLECTION, id));
         }
     }
 }
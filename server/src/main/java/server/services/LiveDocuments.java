@@ -0,0 +1,289 @@
+package server.services;
+
+import commons.NoteDocument;
+import commons.NoteEdit;
+import commons.TextOperation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * The bodies of the notes that are being edited over the websocket.
+ * Edits are applied in memory, transformed against the edits made
+ * concurrently by other clients, and written to the database
+ * in batches by the NoteService.
+ * The bodies are only kept in the memory of this server, so live editing
+ * is turned off when several servers share the database.
+ */
+@Service
+public class LiveDocuments
+{
+    /**
+     * Number of applied edits kept per note. Clients that are further behind
+     * cannot be transformed and have to load the body again.
+     */
+    public static final int HISTORY_SIZE = 1000;
+
+    private final Map<Long, Document> documents = new ConcurrentHashMap<>();
+    private final boolean enabled;
+
+    /**
+     * Constructor for dependency injection.
+     *
+     * @param enabled false if notes cannot be opened for editing over the websocket,
+     *                then they are only changed with updates and patches.
+     */
+    public LiveDocuments(@Value("${notes.live.enabled:true}") boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Check if notes can be opened for editing over the websocket
+     *
+     * @return false if live editing is turned off.
+     */
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Start editing a note, or return the body being edited already
+     *
+     * @param noteId The ID of the note.
+     * @param body   The body of the note in the database.
+     * @return The current body and its revision.
+     */
+    public NoteDocument open(long noteId, String body)
+    {
+        Document document = documents.computeIfAbsent(noteId, x -> new Document());
+        synchronized (document)
+        {
+            if (document.text == null)
+            {
+                // Revisions continue after the last session ended,
+                // so old edits of clients are never mistaken for new ones
+                document.text = body;
+                document.firstRevision = document.revision;
+            }
+            document.lastUsed = System.currentTimeMillis();
+            return new NoteDocument(noteId, document.revision, document.text);
+        }
+    }
+
+    /**
+     * Check if a note is being edited
+     *
+     * @param noteId The ID of the note.
+     * @return true if the note is open, then its body in the database may be outdated.
+     */
+    public boolean isOpen(long noteId)
+    {
+        return body(noteId).isPresent();
+    }
+
+    /**
+     * The body of a note that is being edited
+     *
+     * @param noteId The ID of the note.
+     * @return The current body, or empty if the note is not open.
+     */
+    public Optional<String> body(long noteId)
+    {
+        Document document = documents.get(noteId);
+        if (document == null)
+        {
+            return Optional.empty();
+        }
+        synchronized (document)
+        {
+            return Optional.ofNullable(document.text);
+        }
+    }
+
+    /**
+     * Apply an edit of a client to an open note.
+     * The edit is transformed against all edits applied since its revision.
+     * The result is published before the next edit of the note is applied,
+     * so editors receive the edits in the order they were applied.
+     *
+     * @param edit    The edit of the client.
+     * @param publish Receives the edit as it was applied, with the revision it was applied to,
+     *                or a rejected edit if the note is not open or the edit does not fit.
+     */
+    public void apply(NoteEdit edit, Consumer<NoteEdit> publish)
+    {
+        Document document = documents.get(edit.noteId());
+        if (document == null || edit.operation() == null)
+        {
+            publish.accept(reject(edit));
+            return;
+        }
+        synchronized (document)
+        {
+            publish.accept(document.accepts(edit) ? document.apply(edit) : reject(edit));
+        }
+    }
+
+    /**
+     * Collect the bodies that changed since they were last saved.
+     * A body stays changed until it is marked as saved,
+     * so it is collected again if saving it failed.
+     *
+     * @return note ID -> current body of every changed note
+     */
+    public Map<Long, Change> changed()
+    {
+        Map<Long, Change> changed = new HashMap<>();
+        documents.forEach((id, document) ->
+        {
+            synchronized (document)
+            {
+                if (document.changed)
+                {
+                    changed.put(id, new Change(document.text, document.revision));
+                }
+            }
+        });
+        return changed;
+    }
+
+    /**
+     * Mark a collected body as saved, once the transaction that saved it committed.
+     * A note edited since its body was collected stays changed.
+     *
+     * @param noteId   The ID of the note.
+     * @param revision The revision of the saved body.
+     */
+    public void saved(long noteId, long revision)
+    {
+        Document document = documents.get(noteId);
+        if (document == null)
+        {
+            return;
+        }
+        synchronized (document)
+        {
+            if (document.revision == revision)
+            {
+                document.changed = false;
+            }
+        }
+    }
+
+    /**
+     * Stop keeping the bodies of notes that were not edited for a while.
+     * Only the revision is kept, so a note opened again continues after it.
+     * Bodies that were not saved yet are kept.
+     *
+     * @param idleMillis The time without edits after which a note is closed.
+     */
+    public void closeIdle(long idleMillis)
+    {
+        long now = System.currentTimeMillis();
+        documents.values().forEach(document ->
+        {
+            synchronized (document)
+            {
+                if (!document.changed && now - document.lastUsed > idleMillis)
+                {
+                    // The body may be updated over REST while the note is closed, so edits
+                    // made on the closed body are rejected and their clients load it again
+                    document.text = null;
+                    document.history.clear();
+                    document.revision++;
+                    document.firstRevision = document.revision;
+                }
+            }
+        });
+    }
+
+    /**
+     * Forget a deleted note
+     *
+     * @param noteId The ID of the note.
+     */
+    public void remove(long noteId)
+    {
+        documents.remove(noteId);
+    }
+
+    private static NoteEdit reject(NoteEdit edit)
+    {
+        return new NoteEdit(edit.noteId(), edit.revision(), null, edit.clientId());
+    }
+
+    /**
+     * A changed body waiting to be saved
+     *
+     * @param body     The body.
+     * @param revision The revision of the body, to mark it as saved.
+     */
+    public record Change(String body, long revision)
+    {
+    }
+
+    /**
+     * A note being edited, guarded by its own monitor so
+     * edits of different notes do not wait for each other
+     */
+    private static final class Document
+    {
+        private String text;
+        private long revision;
+        private long firstRevision;
+        private boolean changed;
+        private long lastUsed;
+
+        /**
+         * The edits applied since firstRevision, oldest first
+         */
+        private final List<TextOperation> history = new ArrayList<>();
+
+        private boolean accepts(NoteEdit edit)
+        {
+            return text != null && edit.revision() >= firstRevision && edit.revision() <= revision;
+        }
+
+        /**
+         * Transform and apply an accepted edit. Nothing changes if the edit
+         * was made on a text of another length than the one at its revision.
+         */
+        private NoteEdit apply(NoteEdit edit)
+        {
+            TextOperation operation = edit.operation();
+            try
+            {
+                int start = (int) (edit.revision() - firstRevision);
+                for (TextOperation concurrent : history.subList(start, history.size()))
+                {
+                    operation = TextOperation.transform(operation, concurrent).first();
+                }
+                text = operation.applyTo(text);
+            }
+            catch (IllegalArgumentException e)
+            {
+                return reject(edit);
+            }
+
+            history.add(operation);
+            if (history.size() > HISTORY_SIZE)
+            {
+                history.removeFirst();
+                firstRevision++;
+            }
+            long applied = revision++;
+            changed = true;
+            lastUsed = System.currentTimeMillis();
+            return new NoteEdit(edit.noteId(), applied, operation, edit.clientId());
+        }
+    }
+}
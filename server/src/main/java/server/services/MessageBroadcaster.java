@@ -1,8 +1,11 @@
 package server.services;
 
+import commons.Notification;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Service
 public class MessageBroadcaster
 {
@@ -22,10 +25,39 @@ public class MessageBroadcaster
      * Broadcast a message to the specified topic.
      *
      * @param topic   The topic to broadcast to.
-     * @param message The message to broadcast.
+     * @param message The message to broadcast, objects are sent as JSON.
      */
-    public void broadcast(String topic, String message)
+    public void broadcast(String topic, Object message)
     {
         simpMessagingTemplate.convertAndSend(topic, message);
     }
+
+    /**
+     * The topics of the collections a change concerns.
+     * A note moved between collections concerns both,
+     * the subscribers of the old collection remove it, the others add it.
+     *
+     * @param notification The change.
+     * @return The topics to push the change to.
+     */
+    public static List<String> destinations(Notification notification)
+    {
+        long from = notification.fromCollectionId();
+        if (from == 0 || from == notification.collectionId())
+        {
+            return List.of(collectionTopic(notification.collectionId()));
+        }
+        return List.of(collectionTopic(notification.collectionId()), collectionTopic(from));
+    }
+
+    /**
+     * The topic the changes to a collection are pushed to.
+     *
+     * @param collectionId The collection ID.
+     * @return The topic.
+     */
+    public static String collectionTopic(long collectionId)
+    {
+        return "/topic/collections/" + collectionId;
+    }
 }
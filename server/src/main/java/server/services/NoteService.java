@@ -2,15 +2,33 @@ package server.services;
 
 import commons.ErrorCodes;
 import commons.Note;
+import commons.NoteChange;
+import commons.NoteDocument;
+import commons.NoteEdit;
+import commons.NotePatch;
+import commons.NoteSummary;
+import commons.Notification;
 import jakarta.transaction.Transactional;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import server.database.ChangeLogEntry;
 import server.database.CollectionRepository;
 import server.database.NoteRepository;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.OptionalInt;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
 
 @Service
 public class NoteService
@@ -18,27 +36,72 @@ public class NoteService
 
     private final NoteRepository notes;
     private final CollectionRepository collections;
+    private final SearchIndex searchIndex;
+    private final ChangeLog changeLog;
+    private final LiveDocuments liveDocuments;
+    private final NotificationPublisher notifications;
+
+    /**
+     * Max number of search results returned in one page
+     */
+    public static final int MAX_SEARCH_PAGE_SIZE = 100;
+
+    /**
+     * Max number of notes returned in one page of a listing
+     */
+    public static final int MAX_PAGE_SIZE = 500;
+
+    /**
+     * Title of a new note, followed by its number in the collection
+     */
+    public static final String NEW_NOTE_TITLE = "My note ";
+
+    /**
+     * Max number of notes changed in one bulk request
+     */
+    public static final int MAX_BULK_SIZE = 500;
+
+    /**
+     * Time without edits after which a note edited over the websocket is closed
+     */
+    public static final long LIVE_DOCUMENT_IDLE_MILLIS = 5 * 60 * 1000;
 
     /**
      * Constructor for dependency injection.
      *
      * @param notes       The note repository.
      * @param collections The collection repository.
+     * @param searchIndex The full-text index over note titles and bodies.
+     * @param changeLog   The log of note changes used for delta synchronization.
+     * @param liveDocuments The bodies of the notes being edited over the websocket.
+     * @param notifications Pushes the changes to the clients once they are saved.
      */
-    public NoteService(NoteRepository notes, CollectionRepository collections)
+    public NoteService(NoteRepository notes, CollectionRepository collections,
+                       SearchIndex searchIndex, ChangeLog changeLog,
+                       LiveDocuments liveDocuments, NotificationPublisher notifications)
     {
         this.notes = notes;
         this.collections = collections;
+        this.searchIndex = searchIndex;
+        this.changeLog = changeLog;
+        this.liveDocuments = liveDocuments;
+        this.notifications = notifications;
     }
 
     /**
-     * Retrieve all notes.
+     * Retrieve one page of all notes, ordered by ID.
      *
-     * @return The list of all notes.
+     * @param after Only notes with an ID greater than this are returned.
+     * @param size  The page size, at most MAX_PAGE_SIZE.
+     * @return The page of notes, or empty if the page size is invalid.
      */
-    public List<Note> getAllNotes()
+    public Optional<List<Note>> getNotesPage(long after, int size)
     {
-        return notes.findAll();
+        if (size <= 0 || size > MAX_PAGE_SIZE)
+        {
+            return Optional.empty();
+        }
+        return Optional.of(notes.findByIdGreaterThanOrderByIdAsc(after, Limit.of(size)));
     }
 
     /**
@@ -57,18 +120,112 @@ public class NoteService
     }
 
     /**
-     * Retrieve all notes for a specific collection.
+     * Retrieve one page of notes for a specific collection, ordered by ID.
      *
      * @param collectionId The collection ID.
-     * @return The list of notes for the collection.
+     * @param after        Only notes with an ID greater than this are returned.
+     * @param size         The page size, at most MAX_PAGE_SIZE.
+     * @return The page of notes for the collection,
+     * or empty if the collection does not exist or the page size is invalid.
      */
-    public Optional<List<Note>> getNotesByCollectionId(long collectionId)
+    public Optional<List<Note>> getNotesByCollectionId(long collectionId, long after, int size)
     {
-        if (!collections.existsById(collectionId))
+        if (size <= 0 || size > MAX_PAGE_SIZE || !collections.existsById(collectionId))
         {
             return Optional.empty();
         }
-        return Optional.of(notes.findAllByCollectionId(collectionId));
+        return Optional.of(notes.findByCollectionIdAndIdGreaterThanOrderByIdAsc(
+                collectionId, after, Limit.of(size)));
+    }
+
+    /**
+     * Retrieve one page of note summaries for a specific collection, ordered by ID.
+     * Summaries do not contain the note body.
+     *
+     * @param collectionId The collection ID.
+     * @param after        Only notes with an ID greater than this are returned.
+     * @param size         The page size, at most MAX_PAGE_SIZE.
+     * @return The page of summaries for the collection,
+     * or empty if the collection does not exist or the page size is invalid.
+     */
+    public Optional<List<NoteSummary>> getNoteSummariesByCollectionId(long collectionId,
+                                                                      long after, int size)
+    {
+        if (size <= 0 || size > MAX_PAGE_SIZE || !collections.existsById(collectionId))
+        {
+            return Optional.empty();
+        }
+        return Optional.of(notes.findSummariesByCollectionId(collectionId, after, Limit.of(size)));
+    }
+
+    /**
+     * Full-text search over note titles and bodies.
+     *
+     * @param query        The search query.
+     * @param collectionId The collection to search in, or null for all collections.
+     * @param page         The zero-based page number.
+     * @param size         The page size, at most MAX_SEARCH_PAGE_SIZE.
+     * @return The matching notes ordered by relevance,
+     * or empty if the paging parameters are invalid.
+     */
+    public Optional<List<Note>> searchNotes(String query, Long collectionId, int page, int size)
+    {
+        if (page < 0 || size <= 0 || size > MAX_SEARCH_PAGE_SIZE)
+        {
+            return Optional.empty();
+        }
+
+        List<Long> ids = searchIndex.search(query, collectionId, page, size);
+        Map<Long, Note> found = new HashMap<>();
+        notes.findAllById(ids).forEach(x -> found.put(x.getId(), x));
+
+        // Keep the ranking of the index
+        return Optional.of(ids.stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .toList());
+    }
+
+    /**
+     * Retrieve the notes that changed after a revision, oldest change first.
+     * Each note appears at most once, with its latest state,
+     * deleted notes are returned as tombstones without a note.
+     *
+     * @param since Only changes with a greater revision are returned.
+     * @param size  The page size, at most MAX_PAGE_SIZE.
+     * @return The page of changes, or empty if the page size is invalid.
+     */
+    public Optional<List<NoteChange>> getChangesSince(long since, int size)
+    {
+        if (size <= 0 || size > MAX_PAGE_SIZE)
+        {
+            return Optional.empty();
+        }
+
+        List<ChangeLogEntry> entries = changeLog.changesSince(since, size);
+        Map<Long, Note> found = new HashMap<>();
+        notes.findAllById(entries.stream()
+                        .filter(x -> !x.isDeleted())
+                        .map(ChangeLogEntry::getNoteId)
+                        .toList())
+                .forEach(x -> found.put(x.getId(), x));
+
+        // A note deleted after reading the log is missing, so it becomes a tombstone
+        // right away. This keeps full pages full, which the client relies on for paging.
+        return Optional.of(entries.stream()
+                .map(x -> new NoteChange(x.getNoteId(), x.getRevision(),
+                        found.get(x.getNoteId())))
+                .toList());
+    }
+
+    /**
+     * The revision of the last change on this server.
+     *
+     * @return The current revision.
+     */
+    public long getCurrentRevision()
+    {
+        return changeLog.currentRevision();
     }
 
     /**
@@ -77,16 +234,22 @@ public class NoteService
      * @param collectionId The collection ID for the new note.
      * @return The newly created note.
      */
+    @Transactional
     public Note createNote(long collectionId)
     {
-        if (collectionId < 0 || !collections.existsById(collectionId))
+        Optional<Long> lastNumber = collectionId < 0
+                ? Optional.empty()
+                : collections.findLastNoteNumberLocked(collectionId);
+        if (lastNumber.isEmpty())
         {
             throw new IllegalArgumentException("Invalid collection ID");
         }
 
-        Note newNote = buildNewNote(collectionId);
-        return notes.save(newNote);
+        Note created = saveAndRecord(buildNewNote(collectionId, lastNumber.get()));
+        notifications.publish(Notification.ofNote(Notification.Type.ADD_NOTE, created));
+        return created;
     }
+
     /**
      * Move note to another collection
      * @param note The note to move
@@ -94,45 +257,71 @@ public class NoteService
      * foreign -> note is from another server
      * local -> note from a collection on this server
      * @param collectionId The collection ID to move the note to
-     * @return the note if move worked, otherwise bad request
+     * @return the note if move worked, NOTE_OUT_OF_DATE if a local note changed
+     * since the revision it carries, otherwise bad request
+     * @throws DataIntegrityViolationException if the title is taken in the collection
      */
+    @Transactional
     public ResponseEntity<Note> moveNoteToCollection(Note note, String source, long collectionId)
     {
         // Check for bare validity
         if (note == null || note.getId() < 0 ||
-                !collections.existsById(collectionId))
+                collections.findLockedById(collectionId).isEmpty())
         {
             return ResponseEntity.badRequest().build();
         }
 
-        // Check if title is taken in this collection
-        // If it is no matter what we cannot save it
-        if (notes.existsByTitleAndCollectionId(note.getTitle(), collectionId))
-        {
-            return ResponseEntity.status(ErrorCodes.INVALID_NOTE_TITLE.getCode()).build();
-        }
-
         // If the source is local then the note already is on the server
-        // we can simply save the note and return it
+        // and only its collection changes
         if (source.equals("local"))
         {
-            note.setCollectionId(collectionId);
-            notes.save(note);
-            return ResponseEntity.ok(note);
+            return moveLocalNote(note, collectionId);
         }
         // If the source is foreign then the note is coming from another server
         // we need to check for ID overlap
         else if (source.equals("foreign"))
         {
             // Create new empty note and fill in the fields
-            Note newNote = new Note(collectionId, note.getTitle(), note.getBody());
-            notes.save(newNote);
+            Note newNote = saveAndRecord(new Note(collectionId, note.getTitle(), note.getBody()));
+            notifications.publish(Notification.moved(Notification.Type.MOVE_NOTE_FOREIGN,
+                    newNote, 0));
             return ResponseEntity.ok(newNote);
         }
 
         return ResponseEntity.badRequest().build();
     }
 
+    /**
+     * Move a note of this server to another collection.
+     * Only the collection of the stored note changes, the title and body the client
+     * sent are ignored, so a stale copy cannot overwrite them.
+     * @param note the note to move, with the revision the client knows
+     * @param collectionId the collection ID to move the note to, locked already
+     * @return the moved note, NOTE_OUT_OF_DATE if the note changed since its revision,
+     * or bad request if it does not exist
+     */
+    private ResponseEntity<Note> moveLocalNote(Note note, long collectionId)
+    {
+        // Locked until the commit, so no other writer changes it after the revision check
+        Optional<Note> found = notes.findLockedById(note.getId());
+        if (found.isEmpty())
+        {
+            return ResponseEntity.badRequest().build();
+        }
+        Note stored = found.get();
+        if (stored.getRevision() != note.getRevision())
+        {
+            return ResponseEntity.status(ErrorCodes.NOTE_OUT_OF_DATE.getCode()).build();
+        }
+
+        long fromCollectionId = stored.getCollectionId();
+        stored.setCollectionId(collectionId);
+        Note moved = saveAndRecord(stored);
+        notifications.publish(Notification.moved(Notification.Type.MOVE_NOTE_LOCAL,
+                moved, fromCollectionId));
+        return ResponseEntity.ok(moved);
+    }
+
     /**
      * Delete a note by its ID.
      *
@@ -141,19 +330,304 @@ public class NoteService
     @Transactional
     public void deleteNoteById(long id)
     {
-        if(notes.existsById(id))
-            notes.deleteById(id);
+        notes.findById(id).ifPresent(this::delete);
     }
 
     /**
-     * Update the note saved in the Repository
-     * @param note the updated note
-     * @return ResponseEntity containing note if successful
+     * Delete a note, unless it changed since the revision the caller knows.
+     * A note that does not exist anymore counts as deleted.
+     *
+     * @param id       The ID of the note to delete.
+     * @param revision The revision of the note the caller knows.
+     * @return false if the note changed since the revision and was kept
      */
-    public ResponseEntity<Note> updateNote(Note note)
+    @Transactional
+    public boolean deleteNoteAtRevision(long id, long revision)
     {
+        // Locked until the commit, so no other writer changes it after the revision check
+        Optional<Note> found = notes.findLockedById(id);
+        if (found.isPresent() && found.get().getRevision() != revision)
+        {
+            return false;
+        }
+        found.ifPresent(this::delete);
+        return true;
+    }
+
+    private void delete(Note note)
+    {
+        long id = note.getId();
+        notes.deleteById(id);
+        notes.flush();
+        changeLog.recordDelete(id);
+        AfterCommit.run(() ->
+        {
+            searchIndex.remove(id);
+            liveDocuments.remove(id);
+        });
+        notifications.publish(Notification.deleted(id, note.getCollectionId()));
+    }
 
-        if (note == null || note.getId() < 0 || !notes.existsById(note.getId()))
+    /**
+     * Create many notes in one transaction, written to the database in batches.
+     * A note without a title gets the next "My note N" title of its collection.
+     * The clients are notified of all notes at once.
+     *
+     * @param requested The notes to create, with their collection, title and body.
+     * @return ResponseEntity containing the created notes,
+     * bad request if a collection does not exist or there are too many notes
+     * @throws DataIntegrityViolationException if a title is taken in its collection
+     */
+    @Transactional
+    public ResponseEntity<List<Note>> createNotes(List<Note> requested)
+    {
+        if (!isValidBulk(requested))
+        {
+            return ResponseEntity.badRequest().build();
+        }
+        Optional<Map<Long, Long>> lastNumbers = lockCollections(requested.stream()
+                .map(Note::getCollectionId)
+                .toList());
+        if (lastNumbers.isEmpty())
+        {
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<Note> created = new ArrayList<>();
+        for (Note note : requested)
+        {
+            created.add(new Note(note.getCollectionId(),
+                    titleOrNext(note, lastNumbers.get()),
+                    Objects.requireNonNullElse(note.getBody(), "")));
+        }
+        lastNumbers.get().forEach(collections::updateLastNoteNumber);
+
+        List<Note> saved = saveAllAndRecord(created);
+        notifications.publishAll(saved.stream()
+                .map(x -> Notification.ofNote(Notification.Type.ADD_NOTE, x))
+                .toList());
+        return ResponseEntity.ok(saved);
+    }
+
+    /**
+     * Update the titles and bodies of many notes in one transaction.
+     * Nothing is saved unless every note is still at the revision it carries.
+     *
+     * @param changes The updated notes, with the revisions the changes were made on.
+     * @return ResponseEntity containing the notes with their new revisions if successful,
+     * NOTE_OUT_OF_DATE if any note changed since its revision
+     * @throws DataIntegrityViolationException if a title is taken in its collection
+     */
+    @Transactional
+    public ResponseEntity<List<Note>> updateNotes(List<Note> changes)
+    {
+        if (!isValidBulk(changes))
+        {
+            return ResponseEntity.badRequest().build();
+        }
+        if (changes.stream().anyMatch(x -> x.getTitle() == null || x.getTitle().isBlank()))
+        {
+            return ResponseEntity.status(ErrorCodes.EMPTY_NOTE_TITLE.getCode()).build();
+        }
+        Optional<List<Note>> locked = lockNotes(changes.stream().map(Note::getId).toList());
+        if (locked.isEmpty())
+        {
+            return ResponseEntity.badRequest().build();
+        }
+
+        if (!applyChanges(changes, locked.get()))
+        {
+            return ResponseEntity.status(ErrorCodes.NOTE_OUT_OF_DATE.getCode()).build();
+        }
+
+        List<Note> saved = saveAllAndRecord(locked.get());
+        notifications.publishAll(saved.stream()
+                .map(x -> Notification.ofNote(Notification.Type.UPDATE_NOTE, x))
+                .toList());
+        return ResponseEntity.ok(saved);
+    }
+
+    /**
+     * Move many notes of this server to another collection in one transaction.
+     *
+     * @param ids          The IDs of the notes to move.
+     * @param collectionId The collection ID to move the notes to.
+     * @return ResponseEntity containing the moved notes,
+     * bad request if a note or the collection does not exist
+     * @throws DataIntegrityViolationException if a title is taken in the collection
+     */
+    @Transactional
+    public ResponseEntity<List<Note>> moveNotes(List<Long> ids, long collectionId)
+    {
+        if (!isValidBulk(ids) || collections.findLockedById(collectionId).isEmpty())
+        {
+            return ResponseEntity.badRequest().build();
+        }
+        Optional<List<Note>> locked = lockNotes(ids);
+        if (locked.isEmpty())
+        {
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<Long> fromCollectionIds = locked.get().stream()
+                .map(Note::getCollectionId)
+                .toList();
+        locked.get().forEach(x -> x.setCollectionId(collectionId));
+        List<Note> saved = saveAllAndRecord(locked.get());
+
+        List<Notification> moved = new ArrayList<>();
+        for (int i = 0; i < saved.size(); i++)
+        {
+            moved.add(Notification.moved(Notification.Type.MOVE_NOTE_LOCAL,
+                    saved.get(i), fromCollectionIds.get(i)));
+        }
+        notifications.publishAll(moved);
+        return ResponseEntity.ok(saved);
+    }
+
+    /**
+     * Delete many notes in one transaction.
+     * Notes that do not exist are skipped, they may already have been deleted.
+     *
+     * @param ids The IDs of the notes to delete.
+     * @return ResponseEntity containing the IDs of the deleted notes,
+     * bad request if there are too many notes
+     */
+    @Transactional
+    public ResponseEntity<List<Long>> deleteNotes(List<Long> ids)
+    {
+        if (!isValidBulk(ids))
+        {
+            return ResponseEntity.badRequest().build();
+        }
+        List<Note> found = notes.findAllById(ids);
+        List<Long> deleted = found.stream().map(Note::getId).toList();
+        if (deleted.isEmpty())
+        {
+            return ResponseEntity.ok(deleted);
+        }
+
+        // Deleted as entities, in JDBC batches, so only these notes leave the second-level cache
+        notes.deleteAll(found);
+        notes.flush();
+        changeLog.recordDeletes(found, changeLog.nextRevisions(found.size()));
+        AfterCommit.run(() -> deleted.forEach(id ->
+        {
+            searchIndex.remove(id);
+            liveDocuments.remove(id);
+        }));
+        notifications.publishAll(found.stream()
+                .map(x -> Notification.deleted(x.getId(), x.getCollectionId()))
+                .toList());
+        return ResponseEntity.ok(deleted);
+    }
+
+    /**
+     * Check the size of a bulk request
+     * @param items the items of the request
+     * @return true if there is at least one and at most MAX_BULK_SIZE items, none null
+     */
+    private static boolean isValidBulk(List<?> items)
+    {
+        return items != null && !items.isEmpty() && items.size() <= MAX_BULK_SIZE
+                && !items.contains(null);
+    }
+
+    /**
+     * Lock the collections notes are created in, in the order of their IDs,
+     * so two requests creating notes in the same collections cannot wait for each other.
+     * @param collectionIds the collection IDs, may contain duplicates
+     * @return the number of the last title given out in each collection,
+     * or empty if a collection does not exist
+     */
+    private Optional<Map<Long, Long>> lockCollections(List<Long> collectionIds)
+    {
+        Map<Long, Long> lastNumbers = new TreeMap<>();
+        for (long collectionId : new TreeSet<>(collectionIds))
+        {
+            Optional<Long> lastNumber = collections.findLastNoteNumberLocked(collectionId);
+            if (lastNumber.isEmpty())
+            {
+                return Optional.empty();
+            }
+            lastNumbers.put(collectionId, lastNumber.get());
+        }
+        return Optional.of(lastNumbers);
+    }
+
+    /**
+     * Lock the notes changed by a bulk request
+     * @param ids the IDs of the notes
+     * @return the notes ordered by ID, or empty if an ID is repeated or does not exist
+     */
+    private Optional<List<Note>> lockNotes(List<Long> ids)
+    {
+        if (new HashSet<>(ids).size() != ids.size())
+        {
+            return Optional.empty();
+        }
+        List<Note> locked = notes.findLockedByIdInOrderByIdAsc(ids);
+        return locked.size() == ids.size() ? Optional.of(locked) : Optional.empty();
+    }
+
+    /**
+     * Apply the changes of a bulk update to the locked notes.
+     * The body of a note that is being edited over the websocket is not replaced.
+     * @param changes the updated notes, with the revisions the changes were made on
+     * @param locked the stored notes, one for each change
+     * @return false if a note changed since the revision of its change
+     */
+    private boolean applyChanges(List<Note> changes, List<Note> locked)
+    {
+        Map<Long, Note> stored = new HashMap<>();
+        locked.forEach(x -> stored.put(x.getId(), x));
+        for (Note change : changes)
+        {
+            Note note = stored.get(change.getId());
+            if (note.getRevision() != change.getRevision())
+            {
+                return false;
+            }
+            note.setTitle(change.getTitle());
+            note.setBody(liveDocuments.body(note.getId()).orElse(change.getBody()));
+        }
+        return true;
+    }
+
+    /**
+     * The title a note created in bulk gets
+     * @param note the requested note
+     * @param lastNumbers the number of the last title given out in each collection,
+     *                    moved on when a new title is given out
+     * @return the requested title, or the next "My note N" title if there is none
+     */
+    private String titleOrNext(Note note, Map<Long, Long> lastNumbers)
+    {
+        if (note.getTitle() != null && !note.getTitle().isBlank())
+        {
+            return note.getTitle();
+        }
+        long number = nextFreeNumber(note.getCollectionId(),
+                lastNumbers.get(note.getCollectionId()));
+        lastNumbers.put(note.getCollectionId(), number);
+        return NEW_NOTE_TITLE + number;
+    }
+
+    /**
+     * Update the note saved in the Repository.
+     * The note is only saved if it was not changed since the revision it carries,
+     * so a client cannot overwrite changes it has not seen.
+     * The body of a note that is being edited over the websocket is not replaced,
+     * the editors own it until their edits are saved.
+     * @param note the updated note, with the revision the changes were made on
+     * @return ResponseEntity containing note with its new revision if successful,
+     * NOTE_OUT_OF_DATE if the note changed since its revision
+     * @throws DataIntegrityViolationException if the title is taken in the collection
+     */
+    @Transactional
+    public ResponseEntity<Note> updateNote(Note note)
+    {
+        if (note == null || note.getId() < 0)
         {
             return ResponseEntity.badRequest().build();
         }
@@ -163,39 +637,217 @@ public class NoteService
             return ResponseEntity.status(ErrorCodes.EMPTY_NOTE_TITLE.getCode()).build();
         }
 
-        if (notes.existsByTitleAndCollectionIdAndIdNot(note.getTitle(),
-                note.getCollectionId(), note.getId()))
+        // Locked, so the collection is not deleted before the note is saved in it
+        if (collections.findLockedById(note.getCollectionId()).isEmpty())
+        {
+            return ResponseEntity.badRequest().build();
+        }
+        // Locked until the commit, so no other writer changes it after the revision check
+        Optional<Note> found = notes.findLockedById(note.getId());
+        if (found.isEmpty())
         {
-            return ResponseEntity.status(ErrorCodes.INVALID_NOTE_TITLE.getCode()).build();
+            return ResponseEntity.badRequest().build();
+        }
+        Note stored = found.get();
+        if (stored.getRevision() != note.getRevision())
+        {
+            return ResponseEntity.status(ErrorCodes.NOTE_OUT_OF_DATE.getCode()).build();
         }
 
-        notes.save(note);
-        return ResponseEntity.ok(note);
+        stored.setCollectionId(note.getCollectionId());
+        stored.setTitle(note.getTitle());
+        stored.setBody(liveDocuments.body(note.getId()).orElse(note.getBody()));
+        saveAndUpdate(stored);
+        return ResponseEntity.ok(stored);
     }
 
     /**
-     * The method should create a new note with a new title
+     * Apply changes to the body of a note, so clients do not need
+     * to send the whole body for a small edit.
+     * @param id the ID of the note
+     * @param patch the edits and the revision they were made on
+     * @return ResponseEntity containing the new revision if successful,
+     * NOTE_OUT_OF_DATE if the note changed since the base revision
+     * or is being edited over the websocket
+     */
+    @Transactional
+    public ResponseEntity<Long> patchNote(long id, NotePatch patch)
+    {
+        // Locked until the commit, so two patches on the same revision cannot both apply
+        Optional<Note> found = notes.findLockedById(id);
+        if (patch == null || patch.edits() == null || found.isEmpty())
+        {
+            return ResponseEntity.badRequest().build();
+        }
+
+        Note note = found.get();
+        if (note.getRevision() != patch.baseRevision() || liveDocuments.isOpen(id))
+        {
+            return ResponseEntity.status(ErrorCodes.NOTE_OUT_OF_DATE.getCode()).build();
+        }
+
+        try
+        {
+            note.setBody(patch.applyTo(note.getBody()));
+        }
+        catch (IllegalArgumentException e)
+        {
+            return ResponseEntity.badRequest().build();
+        }
+        saveAndUpdate(note);
+        return ResponseEntity.ok(note.getRevision());
+    }
+
+    /**
+     * Start editing the body of a note over the websocket.
+     *
+     * @param id The ID of the note.
+     * @return The body shared by the editors of the note,
+     * or empty if the note does not exist or live editing is turned off.
+     */
+    public Optional<NoteDocument> getDocument(long id)
+    {
+        if (!liveDocuments.isEnabled())
+        {
+            return Optional.empty();
+        }
+        return notes.findById(id).map(x -> liveDocuments.open(id, x.getBody()));
+    }
+
+    /**
+     * Apply an edit made by a client to the body of a note.
+     * The note is opened for editing if no one was editing it yet.
+     *
+     * @param edit    The edit of the client.
+     * @param publish Receives the edit as it was applied, to send to all editors of the note,
+     *                or a rejected edit that only concerns the client that made it.
+     */
+    public void editNote(NoteEdit edit, Consumer<NoteEdit> publish)
+    {
+        if (!liveDocuments.isOpen(edit.noteId()))
+        {
+            getDocument(edit.noteId());
+        }
+        liveDocuments.apply(edit, publish);
+    }
+
+    /**
+     * Write the bodies edited over the websocket to the database.
+     * Saving in batches keeps the database out of the way of typing,
+     * each saved body gets a new revision like any other update.
+     * The notes are locked and only their bodies are changed, so a rename or move
+     * committed after the bodies were collected is not written back.
+     * The revisions of all bodies are taken at once, after the notes are locked,
+     * so the revision counter is only held while the batch is written.
+     * A body only counts as saved once the batch committed.
+     * Notes without edits for a while are closed afterwards.
+     */
+    @Scheduled(fixedDelayString = "${notes.live.save-delay:1000}")
+    @Transactional
+    public void saveLiveDocuments()
+    {
+        Map<Long, LiveDocuments.Change> bodies = liveDocuments.changed();
+        List<Note> changed = bodies.isEmpty()
+                ? List.of()
+                : notes.findLockedByIdInOrderByIdAsc(Set.copyOf(bodies.keySet()));
+        for (Note note : changed)
+        {
+            LiveDocuments.Change change = bodies.remove(note.getId());
+            note.setBody(change.body());
+            AfterCommit.run(() -> liveDocuments.saved(note.getId(), change.revision()));
+        }
+        // Whatever is left was deleted
+        bodies.keySet().forEach(liveDocuments::remove);
+        if (!changed.isEmpty())
+        {
+            notifications.publishAll(saveAllAndRecord(changed).stream()
+                    .map(x -> Notification.ofNote(Notification.Type.UPDATE_NOTE, x))
+                    .toList());
+        }
+        liveDocuments.closeIdle(LIVE_DOCUMENT_IDLE_MILLIS);
+    }
+
+    /**
+     * Save a note with a new revision and record the change.
+     *
+     * @param note The note to save.
+     * @return The saved note.
+     */
+    private Note saveAndRecord(Note note)
+    {
+        Note saved = notes.save(note);
+        // Last, the counter stays locked until the commit. The note is written with its
+        // revision, and a taken title is rejected, before anything else knows about the change
+        saved.setRevision(changeLog.nextRevision());
+        notes.flush();
+        changeLog.recordUpdate(saved);
+        // The index is shared by all requests, so it only sees the note once it is committed
+        AfterCommit.run(() -> searchIndex.index(saved));
+        return saved;
+    }
+
+    /**
+     * Save many notes with consecutive new revisions and record the changes.
+     * The inserts and updates are sent to the database in JDBC batches.
+     *
+     * @param changed The notes to save.
+     * @return The saved notes, in the same order.
+     */
+    private List<Note> saveAllAndRecord(List<Note> changed)
+    {
+        List<Note> saved = notes.saveAll(changed);
+        // Last, the counter stays locked until the commit
+        long revision = changeLog.nextRevisions(saved.size());
+        for (Note note : saved)
+        {
+            note.setRevision(revision++);
+        }
+        notes.flush();
+        changeLog.recordUpdates(saved);
+        AfterCommit.run(() -> saved.forEach(searchIndex::index));
+        return saved;
+    }
+
+    /**
+     * Save a changed note and push it to the clients.
+     *
+     * @param note The changed note.
+     */
+    private void saveAndUpdate(Note note)
+    {
+        Note saved = saveAndRecord(note);
+        notifications.publish(Notification.ofNote(Notification.Type.UPDATE_NOTE, saved));
+    }
+
+    /**
+     * Create a new note titled with the next number of the collection.
+     * Numbers are given out once and counted per collection, so no other note is read.
+     * A title the user gave to another note already is skipped.
+     * Must be called while holding the lock on the collection.
      * @param collectionId The collection ID for the new note.
+     * @param lastNumber The number of the last title given out in the collection.
      * @return a new instance of a note
      */
-    public Note buildNewNote(long collectionId)
+    public Note buildNewNote(long collectionId, long lastNumber)
     {
-        List<Note> currentNotes = notes.findAllByCollectionId(collectionId);
-        OptionalInt maxNr = currentNotes.stream()
-                .filter(x -> x.getCollectionId() == collectionId)
-                .map(Note::getTitle)
-                .filter(x -> x.matches("My note .*"))
-                .map(x -> x.split(" ")[x.split(" ").length - 1])
-                .filter(x -> x.matches("\\d+"))
-                .mapToInt(Integer::parseInt)
-                .max();
+        long number = nextFreeNumber(collectionId, lastNumber);
+        collections.updateLastNoteNumber(collectionId, number);
+        return new Note(collectionId, NEW_NOTE_TITLE + number, "A new note :)");
+    }
 
-        if (maxNr.isEmpty())
-        {
-            return new Note(collectionId, "My note 1", "A new note :)");
-        } else
+    /**
+     * The next "My note N" number of a collection that no note has as its title
+     * @param collectionId the collection ID
+     * @param lastNumber the number of the last title given out in the collection
+     * @return the number for the next new note
+     */
+    private long nextFreeNumber(long collectionId, long lastNumber)
+    {
+        long number = lastNumber + 1;
+        while (notes.existsByTitleAndCollectionId(NEW_NOTE_TITLE + number, collectionId))
         {
-            return new Note(collectionId, "My note " + (maxNr.getAsInt() + 1), "A new note :)");
+            number++;
         }
+        return number;
     }
 }
@@ -0,0 +1,202 @@
+package server.services;
+
+import commons.ErrorCodes;
+import commons.Note;
+import commons.NoteTransfer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import server.database.CompletedTransfer;
+import server.database.CompletedTransferRepository;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Moves notes from other servers to this one.
+ * The note is copied from the source server and the copy is saved with the key
+ * of the transfer. Only after that is committed the note is deleted on the source,
+ * so a transfer that fails halfway is finished by sending it again with the same key,
+ * without losing or doubling the note.
+ * The source only deletes the note at the revision that was copied; if it was edited
+ * in between, the copy is dropped again and the transfer is answered with NOTE_OUT_OF_DATE.
+ * Notes are only taken from the servers configured as peers.
+ */
+@Service
+public class NoteTransferService
+{
+    /**
+     * Max length of a transfer key
+     */
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private final NoteService noteService;
+    private final CompletedTransferRepository completedTransfers;
+    private final RemoteNotes remoteNotes;
+    private final TransactionTemplate transactions;
+    private final Set<String> peers;
+
+    /**
+     * Constructor for dependency injection.
+     *
+     * @param noteService        The note service saving the copies.
+     * @param completedTransfers The repository holding the keys of the copied notes.
+     * @param remoteNotes        Calls the other servers.
+     * @param transactionManager The transaction manager.
+     * @param peers              The addresses of the servers notes may be moved from.
+     */
+    public NoteTransferService(NoteService noteService,
+                               CompletedTransferRepository completedTransfers,
+                               RemoteNotes remoteNotes,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${notes.transfer.peers:}") List<String> peers)
+    {
+        this.noteService = noteService;
+        this.completedTransfers = completedTransfers;
+        this.remoteNotes = remoteNotes;
+        this.transactions = new TransactionTemplate(transactionManager);
+        this.peers = peers.stream()
+                .map(NoteTransferService::address)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * Move a note from another server into a collection of this server.
+     *
+     * @param collectionId The collection ID to move the note to.
+     * @param transfer     The source of the note and the key of the transfer.
+     * @return ResponseEntity containing the note on this server if successful,
+     * SERVER_UNREACHABLE if the source server could not be reached,
+     * NOTE_OUT_OF_DATE if the note changed on the source while it was copied,
+     * otherwise bad request
+     * @throws DataIntegrityViolationException if the title is taken in the collection
+     */
+    public ResponseEntity<Note> transfer(long collectionId, NoteTransfer transfer)
+    {
+        if (!isValid(transfer))
+        {
+            return ResponseEntity.badRequest().build();
+        }
+
+        try
+        {
+            Optional<CompletedTransfer> done = completedTransfers.findById(transfer.key());
+            if (done.isPresent())
+            {
+                // Deleting is idempotent, a retried transfer just deletes again
+                return deleteSource(transfer, done.get().getSourceRevision(),
+                        completed(done.get()));
+            }
+            Note note = remoteNotes.fetch(transfer.sourceUrl(), transfer.noteId());
+            ResponseEntity<Note> copied = copy(collectionId, transfer, note);
+            if (!copied.getStatusCode().is2xxSuccessful())
+            {
+                return copied;
+            }
+            return deleteSource(transfer, note.getRevision(), copied);
+        }
+        catch (HttpClientErrorException e)
+        {
+            // The source answered, but does not have the note or refused the request
+            return ResponseEntity.badRequest().build();
+        }
+        catch (RestClientException e)
+        {
+            return ResponseEntity.status(ErrorCodes.SERVER_UNREACHABLE.getCode()).build();
+        }
+    }
+
+    /**
+     * Check the fields of a transfer
+     * @param transfer the transfer
+     * @return true if it has a key and the source is one of the peers
+     */
+    private boolean isValid(NoteTransfer transfer)
+    {
+        return transfer != null && transfer.sourceUrl() != null
+                && peers.contains(address(transfer.sourceUrl()))
+                && transfer.key() != null && !transfer.key().isBlank()
+                && transfer.key().length() <= MAX_KEY_LENGTH;
+    }
+
+    /**
+     * A server address in the form the peers are compared in
+     * @param url the address
+     * @return the address in lower case, without trailing slashes
+     */
+    private static String address(String url)
+    {
+        return url.trim().toLowerCase(Locale.ROOT).replaceAll("/+$", "");
+    }
+
+    /**
+     * The answer to a transfer sent again after the note was copied
+     * @param done the copy made the first time
+     * @return the copy, or no content if it was deleted since
+     */
+    private ResponseEntity<Note> completed(CompletedTransfer done)
+    {
+        return noteService.getNoteById(done.getNoteId())
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.noContent().build());
+    }
+
+    /**
+     * Copy the note from the source server and save it with the key of the transfer.
+     * The source is read before the transaction starts, so no lock is held
+     * while waiting for the other server.
+     * @param collectionId the collection ID to copy the note to
+     * @param transfer the transfer
+     * @param note the note read from the source server
+     * @return the copy or bad request if the collection does not exist
+     */
+    private ResponseEntity<Note> copy(long collectionId, NoteTransfer transfer, Note note)
+    {
+        return transactions.execute(status ->
+        {
+            ResponseEntity<Note> moved = noteService.moveNoteToCollection(note, "foreign",
+                    collectionId);
+            if (moved.getStatusCode().is2xxSuccessful() && moved.getBody() != null)
+            {
+                completedTransfers.save(new CompletedTransfer(transfer.key(),
+                        moved.getBody().getId(), note.getRevision()));
+            }
+            return moved;
+        });
+    }
+
+    /**
+     * Delete the note on the source server at the revision that was copied.
+     * If it changed since, the copy and the key are dropped again,
+     * so the note is only on the source and the transfer can be sent anew.
+     * @param transfer the transfer
+     * @param revision the revision that was copied, null for transfers from before it was kept
+     * @param copied the answer with the copy
+     * @return the answer with the copy, or NOTE_OUT_OF_DATE if it was dropped
+     */
+    private ResponseEntity<Note> deleteSource(NoteTransfer transfer, Long revision,
+                                              ResponseEntity<Note> copied)
+    {
+        if (remoteNotes.delete(transfer.sourceUrl(), transfer.noteId(), revision))
+        {
+            return copied;
+        }
+        transactions.executeWithoutResult(status ->
+        {
+            if (copied.getBody() != null)
+            {
+                noteService.deleteNoteById(copied.getBody().getId());
+            }
+            completedTransfers.deleteById(transfer.key());
+        });
+        return ResponseEntity.status(ErrorCodes.NOTE_OUT_OF_DATE.getCode()).build();
+    }
+}
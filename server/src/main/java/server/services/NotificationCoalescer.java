@@ -0,0 +1,167 @@
+package server.services;
+
+import commons.Notification;
+import commons.NotificationBatch;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Collects the notifications published by the services for a short window
+ * and pushes them per collection topic in batches.
+ * Updates to a note replace an earlier update or add of the same note in the window,
+ * so a note saved many times while typing is pushed once per window.
+ * Notifications keep their order, an update is only merged into an earlier one
+ * if nothing else happened to the note in between.
+ */
+@Service
+public class NotificationCoalescer
+{
+    private final MessageBroadcaster messageBroadcaster;
+    private final int maxBatchSize;
+
+    /**
+     * The notifications waiting to be pushed, per topic
+     */
+    private final Map<String, Pending> pending = new LinkedHashMap<>();
+
+    /**
+     * Constructor for dependency injection.
+     *
+     * @param messageBroadcaster Pushes the batches to the clients.
+     * @param maxBatchSize       The max number of notifications pushed in one message,
+     *                           a topic is pushed right away once it has this many.
+     */
+    public NotificationCoalescer(MessageBroadcaster messageBroadcaster,
+                                 @Value("${notes.notifications.max-batch:50}") int maxBatchSize)
+    {
+        if (maxBatchSize <= 0)
+        {
+            throw new IllegalArgumentException("The max batch size must be positive");
+        }
+        this.messageBroadcaster = messageBroadcaster;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Queue a change published by a service.
+     * Called after the transaction that made the change committed,
+     * or right away for changes made outside a transaction.
+     *
+     * @param notification The change.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void add(Notification notification)
+    {
+        queue(notification);
+    }
+
+    /**
+     * Queue the changes published together by a service, e.g. for a bulk request.
+     * Called after the transaction that made the changes committed,
+     * or right away for changes made outside a transaction.
+     *
+     * @param batch The changes, in the order they were made.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void addAll(NotificationBatch batch)
+    {
+        batch.notifications().forEach(this::queue);
+    }
+
+    private void queue(Notification notification)
+    {
+        for (String topic : MessageBroadcaster.destinations(notification))
+        {
+            Pending queue = pending.computeIfAbsent(topic, x -> new Pending());
+            queue.add(notification);
+            if (queue.size() >= maxBatchSize)
+            {
+                push(topic, pending.remove(topic));
+            }
+        }
+    }
+
+    /**
+     * Push everything collected during the window.
+     */
+    @Scheduled(fixedDelayString = "${notes.notifications.window:100}")
+    public synchronized void flush()
+    {
+        pending.forEach(this::push);
+        pending.clear();
+    }
+
+    private void push(String topic, Pending queue)
+    {
+        List<Notification> all = queue.notifications;
+        for (int i = 0; i < all.size(); i += maxBatchSize)
+        {
+            messageBroadcaster.broadcast(topic, new NotificationBatch(
+                    List.copyOf(all.subList(i, Math.min(all.size(), i + maxBatchSize)))));
+        }
+    }
+
+    /**
+     * The notifications waiting for one topic
+     */
+    private static final class Pending
+    {
+        private final List<Notification> notifications = new ArrayList<>();
+
+        /**
+         * Position of the last notification about each note
+         */
+        private final Map<Long, Integer> lastOfNote = new HashMap<>();
+
+        private void add(Notification notification)
+        {
+            if (isAboutNote(notification))
+            {
+                Integer last = lastOfNote.get(notification.id());
+                if (last != null && canMerge(notifications.get(last), notification))
+                {
+                    Notification earlier = notifications.get(last);
+                    notifications.set(last, new Notification(earlier.type(), earlier.id(),
+                            earlier.collectionId(), earlier.fromCollectionId(),
+                            notification.note(), null, earlier.origin()));
+                    return;
+                }
+                lastOfNote.put(notification.id(), notifications.size());
+            }
+            notifications.add(notification);
+        }
+
+        private static boolean isAboutNote(Notification notification)
+        {
+            return notification.type() != Notification.Type.UPDATE_COLLECTION
+                    && notification.type() != Notification.Type.DELETE_COLLECTION;
+        }
+
+        /**
+         * An update can replace the note of an earlier add or update
+         * made by the same client, the result is the same for everyone
+         */
+        private static boolean canMerge(Notification earlier, Notification update)
+        {
+            return update.type() == Notification.Type.UPDATE_NOTE
+                    && (earlier.type() == Notification.Type.UPDATE_NOTE
+                    || earlier.type() == Notification.Type.ADD_NOTE)
+                    && earlier.collectionId() == update.collectionId()
+                    && Objects.equals(earlier.origin(), update.origin());
+        }
+
+        private int size()
+        {
+            return notifications.size();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package server.services;
+
+import commons.Notification;
+import commons.NotificationBatch;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Publishes the changes made by the services as application events.
+ * NotificationCoalescer pushes them to the clients once the transaction
+ * that made the change committed, so every change is pushed exactly once
+ * and nothing is pushed for changes that were rolled back.
+ */
+@Service
+public class NotificationPublisher
+{
+    private final ApplicationEventPublisher events;
+
+    /**
+     * Constructor for dependency injection.
+     *
+     * @param events The publisher of application events.
+     */
+    public NotificationPublisher(ApplicationEventPublisher events)
+    {
+        this.events = events;
+    }
+
+    /**
+     * Publish a change, made by the client of the current request if there is one.
+     * Must be called inside the transaction that makes the change, if any.
+     *
+     * @param notification The change, carrying the changed note or collection.
+     */
+    public void publish(Notification notification)
+    {
+        events.publishEvent(notification.withOrigin(currentClient()));
+    }
+
+    /**
+     * Publish many changes made at once as a single event,
+     * so they are queued for the clients together.
+     * Must be called inside the transaction that makes the changes, if any.
+     *
+     * @param notifications The changes, in the order they were made.
+     */
+    public void publishAll(List<Notification> notifications)
+    {
+        String origin = currentClient();
+        events.publishEvent(new NotificationBatch(notifications.stream()
+                .map(x -> x.withOrigin(origin))
+                .toList()));
+    }
+
+    /**
+     * The ID of the client that sent the current request,
+     * so it can ignore the notification of its own change.
+     *
+     * @return The ID, or null outside a request or if the client did not send it.
+     */
+    private static String currentClient()
+    {
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes x)
+        {
+            return x.getRequest().getHeader(Notification.CLIENT_ID_HEADER);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,108 @@
+package server.services;
+
+import commons.ErrorCodes;
+import commons.Note;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+
+/**
+ * Calls the note API of other servers, for moving notes between servers
+ * without going through the client.
+ */
+@Service
+public class RemoteNotes
+{
+    private final RestClient http;
+
+    /**
+     * Constructor for dependency injection.
+     *
+     * @param builder       The builder configured by Spring Boot.
+     * @param timeoutMillis Time after which a server that does not answer is given up on.
+     */
+    public RemoteNotes(RestClient.Builder builder,
+                       @Value("${notes.transfer.timeout:5000}") int timeoutMillis)
+    {
+        SimpleClientHttpRequestFactory requests = new SimpleClientHttpRequestFactory();
+        requests.setConnectTimeout(timeoutMillis);
+        requests.setReadTimeout(timeoutMillis);
+        this.http = builder.requestFactory(requests).build();
+    }
+
+    /**
+     * Read a note from another server.
+     *
+     * @param server The address of the server.
+     * @param id     The ID of the note on that server.
+     * @return The note.
+     * @throws HttpClientErrorException if the server does not have the note
+     * @throws RestClientException if the server cannot be reached
+     */
+    public Note fetch(String server, long id)
+    {
+        Note note = http.get()
+                .uri(uri(server, "/api/notes/" + id))
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .body(Note.class);
+        if (note == null)
+        {
+            throw new RestClientException("No note " + id + " on " + server);
+        }
+        return note;
+    }
+
+    /**
+     * Delete a note on another server, unless it changed since the given revision.
+     * Deleting a note that is already gone is not an error.
+     *
+     * @param server   The address of the server.
+     * @param id       The ID of the note on that server.
+     * @param revision The revision that was copied, or null to delete the note anyway.
+     * @return false if the note changed since the revision and was kept
+     * @throws RestClientException if the server cannot be reached or refuses the delete
+     */
+    public boolean delete(String server, long id, Long revision)
+    {
+        UriComponentsBuilder path = UriComponentsBuilder.fromHttpUrl(server)
+                .path("/api/notes/delete");
+        if (revision != null)
+        {
+            path.queryParam("revision", revision);
+        }
+        try
+        {
+            http.post()
+                    .uri(path.build().toUri())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(id)
+                    .retrieve()
+                    .toBodilessEntity();
+            return true;
+        }
+        catch (HttpClientErrorException e)
+        {
+            if (e.getStatusCode().value() == ErrorCodes.NOTE_OUT_OF_DATE.getCode())
+            {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * The address of a path on a server, whether or not the address ends with a slash
+     */
+    private static URI uri(String server, String path)
+    {
+        return UriComponentsBuilder.fromHttpUrl(server).path(path).build().toUri();
+    }
+}
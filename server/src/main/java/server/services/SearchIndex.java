@@ -0,0 +1,284 @@
+package server.services;
+
+import commons.Note;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import server.database.NoteRepository;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+@Service
+public class SearchIndex
+{
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int TITLE_WEIGHT = 3;
+
+    private final NoteRepository notes;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * token -> (note id -> weighted term frequency)
+     * Sorted so the last word of a query can be matched as a prefix
+     */
+    private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+
+    /**
+     * note id -> tokens indexed for that note, needed to drop stale postings
+     */
+    private final Map<Long, Set<String>> noteTokens = new HashMap<>();
+    private final Map<Long, Long> noteCollections = new HashMap<>();
+
+    /**
+     * note id -> revision of the note that is indexed
+     */
+    private final Map<Long, Long> noteRevisions = new HashMap<>();
+
+    /**
+     * Constructor for dependency injection.
+     *
+     * @param notes The note repository used to build the initial index.
+     */
+    public SearchIndex(NoteRepository notes)
+    {
+        this.notes = notes;
+    }
+
+    /**
+     * Build the index from all notes in the database.
+     * Called once the application is ready, afterwards the index is kept
+     * in sync by the NoteService and CollectionService.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild()
+    {
+        List<Note> all = notes.findAll();
+        lock.writeLock().lock();
+        try
+        {
+            postings.clear();
+            noteTokens.clear();
+            noteCollections.clear();
+            noteRevisions.clear();
+            all.forEach(this::addNote);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add or replace a note in the index.
+     *
+     * @param note The note to index.
+     */
+    public void index(Note note)
+    {
+        if (note == null)
+        {
+            return;
+        }
+        lock.writeLock().lock();
+        try
+        {
+            // Commits of the same note may be indexed out of order, the newest revision wins
+            if (noteRevisions.getOrDefault(note.getId(), -1L) > note.getRevision())
+            {
+                return;
+            }
+            removeNote(note.getId());
+            addNote(note);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Check if a change to a note is in the index already,
+     * e.g. because this server saved it.
+     *
+     * @param noteId The ID of the changed note.
+     * @param revision The revision of the change.
+     * @return true if the note is indexed at this revision or a later one.
+     */
+    public boolean isIndexed(long noteId, long revision)
+    {
+        lock.readLock().lock();
+        try
+        {
+            return noteRevisions.getOrDefault(noteId, -1L) >= revision;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a note from the index.
+     *
+     * @param noteId The ID of the note to remove.
+     */
+    public void remove(long noteId)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            removeNote(noteId);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove all notes of a collection from the index.
+     *
+     * @param collectionId The ID of the deleted collection.
+     */
+    public void removeCollection(long collectionId)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            List<Long> ids = noteCollections.entrySet().stream()
+                    .filter(e -> e.getValue() == collectionId)
+                    .map(Map.Entry::getKey)
+                    .toList();
+            ids.forEach(this::removeNote);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Search for notes containing every word of the query.
+     * The last word is matched as a prefix, so results are available while typing.
+     * Results are ranked by tf-idf, with title words weighing more than body words.
+     *
+     * @param query The search query.
+     * @param collectionId The collection to search in, or null to search in all collections.
+     * @param page The zero-based page number.
+     * @param size The maximum number of results per page.
+     * @return The IDs of the matching notes on the requested page, best match first.
+     */
+    public List<Long> search(String query, Long collectionId, int page, int size)
+    {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty())
+        {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try
+        {
+            Map<Long, Double> scores = score(terms);
+            return scores.entrySet().stream()
+                    .filter(e -> collectionId == null ||
+                            collectionId.equals(noteCollections.get(e.getKey())))
+                    .sorted(Map.Entry.<Long, Double>comparingByValue().reversed()
+                            .thenComparing(Map.Entry.comparingByKey()))
+                    .skip((long) page * size)
+                    .limit(size)
+                    .map(Map.Entry::getKey)
+                    .toList();
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Split text into lowercase words.
+     *
+     * @param text The text to split.
+     * @return The words in the text, in order.
+     */
+    public static List<String> tokenize(String text)
+    {
+        if (text == null)
+        {
+            return List.of();
+        }
+        return Arrays.stream(TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT)))
+                .filter(x -> !x.isEmpty())
+                .toList();
+    }
+
+    private Map<Long, Double> score(List<String> terms)
+    {
+        Map<Long, Double> scores = null;
+        for (int i = 0; i < terms.size(); i++)
+        {
+            Map<Long, Integer> matches = i == terms.size() - 1
+                    ? prefixMatches(terms.get(i))
+                    : postings.getOrDefault(terms.get(i), Map.of());
+            double idf = Math.log(1.0 + (double) noteTokens.size() / Math.max(1, matches.size()));
+
+            Map<Long, Double> next = new HashMap<>();
+            for (Map.Entry<Long, Integer> match : matches.entrySet())
+            {
+                if (scores == null || scores.containsKey(match.getKey()))
+                {
+                    double previous = scores == null ? 0 : scores.get(match.getKey());
+                    next.put(match.getKey(), previous + match.getValue() * idf);
+                }
+            }
+            scores = next;
+        }
+        return scores;
+    }
+
+    private Map<Long, Integer> prefixMatches(String prefix)
+    {
+        Map<Long, Integer> result = new HashMap<>();
+        postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false)
+                .values()
+                .forEach(docs -> docs.forEach((id, tf) -> result.merge(id, tf, Math::max)));
+        return result;
+    }
+
+    private void addNote(Note note)
+    {
+        Map<String, Integer> frequencies = new HashMap<>();
+        tokenize(note.getTitle()).forEach(x -> frequencies.merge(x, TITLE_WEIGHT, Integer::sum));
+        tokenize(note.getBody()).forEach(x -> frequencies.merge(x, 1, Integer::sum));
+
+        frequencies.forEach((token, tf) ->
+                postings.computeIfAbsent(token, x -> new HashMap<>()).put(note.getId(), tf));
+        noteTokens.put(note.getId(), frequencies.keySet());
+        noteCollections.put(note.getId(), note.getCollectionId());
+        noteRevisions.put(note.getId(), note.getRevision());
+    }
+
+    private void removeNote(long noteId)
+    {
+        Set<String> tokens = noteTokens.remove(noteId);
+        noteCollections.remove(noteId);
+        noteRevisions.remove(noteId);
+        if (tokens == null)
+        {
+            return;
+        }
+        for (String token : tokens)
+        {
+            Map<Long, Integer> docs = postings.get(token);
+            docs.remove(noteId);
+            if (docs.isEmpty())
+            {
+                postings.remove(token);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package server.services;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import server.database.ChangeLogEntry;
+import server.database.NoteRepository;
+
+import java.util.List;
+
+/**
+ * Puts the changes saved by other servers sharing the database into the search index.
+ * Only runs when notes.index.sync-delay is set, as the shared profile does,
+ * a server of its own indexes every change as it commits it.
+ */
+@Service
+@ConditionalOnProperty("notes.index.sync-delay")
+public class SearchIndexSync
+{
+    private final ChangeLog changeLog;
+    private final NoteRepository notes;
+    private final SearchIndex searchIndex;
+
+    /**
+     * The revision up to which the changes are in the search index,
+     * negative until the index is built
+     */
+    private volatile long indexedRevision = -1;
+
+    /**
+     * Constructor for dependency injection.
+     *
+     * @param changeLog   The log of the changes saved by all servers.
+     * @param notes       The note repository.
+     * @param searchIndex The full-text index over note titles and bodies.
+     */
+    public SearchIndexSync(ChangeLog changeLog, NoteRepository notes, SearchIndex searchIndex)
+    {
+        this.changeLog = changeLog;
+        this.notes = notes;
+        this.searchIndex = searchIndex;
+    }
+
+    /**
+     * Start after the changes the index is built from.
+     * Runs before SearchIndex reads all notes, a change saved in between
+     * is indexed once more, which does no harm.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void start()
+    {
+        indexedRevision = changeLog.currentRevision();
+    }
+
+    /**
+     * Index the changes since the last sync.
+     * Changes this server indexed when it saved them are not read again.
+     */
+    @Scheduled(fixedDelayString = "${notes.index.sync-delay}")
+    public void sync()
+    {
+        if (indexedRevision < 0)
+        {
+            return;
+        }
+        List<ChangeLogEntry> entries;
+        do
+        {
+            entries = changeLog.changesSince(indexedRevision, NoteService.MAX_PAGE_SIZE);
+            entries.stream()
+                    .filter(ChangeLogEntry::isDeleted)
+                    .map(ChangeLogEntry::getNoteId)
+                    .forEach(searchIndex::remove);
+            List<Long> changed = entries.stream()
+                    .filter(x -> !x.isDeleted())
+                    .filter(x -> !searchIndex.isIndexed(x.getNoteId(), x.getRevision()))
+                    .map(ChangeLogEntry::getNoteId)
+                    .toList();
+            if (!changed.isEmpty())
+            {
+                notes.findAllById(changed).forEach(searchIndex::index);
+            }
+            if (!entries.isEmpty())
+            {
+                indexedRevision = entries.getLast().getRevision();
+            }
+        }
+        while (entries.size() == NoteService.MAX_PAGE_SIZE);
+    }
+}
@@ -0,0 +1,89 @@
+package server.services;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How far the STOMP channels are behind and how many clients were disconnected
+ * for reading their messages too slowly, to check that notifications go out on time.
+ */
+@Service
+public class WebSocketStatistics
+{
+    private final ThreadPoolTaskExecutor inbound;
+    private final ThreadPoolTaskExecutor outbound;
+    private final AtomicLong slowClients = new AtomicLong();
+
+    /**
+     * The load of the threads of one channel
+     *
+     * @param threads       the threads of the channel
+     * @param activeThreads the threads handling a message right now
+     * @param queued        the messages waiting for a thread
+     */
+    public record ChannelStatistics(int threads, int activeThreads, int queued)
+    {
+    }
+
+    /**
+     * The load of both channels
+     *
+     * @param inbound     the channel of the messages from the clients
+     * @param outbound    the channel of the messages to the clients
+     * @param slowClients the clients disconnected since the server started because
+     *                    their messages piled up
+     */
+    public record Snapshot(ChannelStatistics inbound, ChannelStatistics outbound,
+                           long slowClients)
+    {
+    }
+
+    /**
+     * Constructor for dependency injection.
+     *
+     * @param inbound  The executor of the channel of the messages from the clients.
+     * @param outbound The executor of the channel of the messages to the clients.
+     */
+    public WebSocketStatistics(
+            @Qualifier("clientInboundChannelExecutor") ThreadPoolTaskExecutor inbound,
+            @Qualifier("clientOutboundChannelExecutor") ThreadPoolTaskExecutor outbound)
+    {
+        this.inbound = inbound;
+        this.outbound = outbound;
+    }
+
+    /**
+     * Count the clients that were closed because a send took too long
+     * or their unsent messages went over the buffer limit
+     * @param event the end of a STOMP session
+     */
+    @EventListener
+    public void sessionClosed(SessionDisconnectEvent event)
+    {
+        if (CloseStatus.SESSION_NOT_RELIABLE.equals(event.getCloseStatus()))
+        {
+            slowClients.incrementAndGet();
+        }
+    }
+
+    /**
+     * The current load of the channels
+     * @return the statistics of both channels
+     */
+    public Snapshot getSnapshot()
+    {
+        return new Snapshot(of(inbound), of(outbound), slowClients.get());
+    }
+
+    private static ChannelStatistics of(ThreadPoolTaskExecutor executor)
+    {
+        return new ChannelStatistics(executor.getPoolSize(), executor.getActiveCount(),
+                executor.getQueueSize());
+    }
+}
@@ -0,0 +1,39 @@
+-- The schema Hibernate generated before the migrations were added.
+-- IF NOT EXISTS lets databases created back then go through this migration unchanged.
+CREATE SEQUENCE IF NOT EXISTS collection_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS note_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS collection
+(
+    id    BIGINT       NOT NULL PRIMARY KEY,
+    title VARCHAR(255) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS note
+(
+    id            BIGINT       NOT NULL PRIMARY KEY,
+    collection_id BIGINT       NOT NULL,
+    title         VARCHAR(255) NOT NULL,
+    body          TEXT         NOT NULL,
+    revision      BIGINT       NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS change_log_entry
+(
+    note_id       BIGINT  NOT NULL PRIMARY KEY,
+    collection_id BIGINT  NOT NULL,
+    revision      BIGINT  NOT NULL,
+    deleted       BOOLEAN NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS revision_counter
+(
+    id            INTEGER NOT NULL PRIMARY KEY,
+    last_revision BIGINT  NOT NULL
+);
+
+-- The only counter row, continuing after the revisions handed out already
+INSERT INTO revision_counter (id, last_revision)
+SELECT 1, handed_out.revision
+FROM (SELECT COALESCE(MAX(revision), 0) AS revision FROM change_log_entry) handed_out
+WHERE NOT EXISTS (SELECT 1 FROM revision_counter);
@@ -0,0 +1,8 @@
+-- Note listings and title checks filter on the collection. The unique index serves both,
+-- so no separate index on collection_id is needed, and the database rejects taken titles.
+ALTER TABLE note ADD CONSTRAINT uk_note_collection_title UNIQUE (collection_id, title);
+
+ALTER TABLE collection ADD CONSTRAINT uk_collection_title UNIQUE (title);
+
+-- Clients and the search index of every server read the changes after a revision
+CREATE INDEX idx_change_log_entry_revision ON change_log_entry (revision);
@@ -0,0 +1,8 @@
+-- The number of the last "My note N" title given out in the collection, so the next
+-- one is found without reading the notes. The Collection entity does not map it,
+-- only CollectionRepository reads and writes it.
+ALTER TABLE collection ADD COLUMN last_note_number BIGINT DEFAULT 0 NOT NULL;
+
+UPDATE collection c SET last_note_number = COALESCE(
+    (SELECT MAX(CAST(SUBSTRING(n.title, 9) AS BIGINT)) FROM note n
+     WHERE n.collection_id = c.id AND REGEXP_LIKE(n.title, '^My note [0-9]{1,18}$')), 0);
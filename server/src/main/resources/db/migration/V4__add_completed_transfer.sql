@@ -0,0 +1,7 @@
+-- Notes copied from other servers, by the key the client chose for the move,
+-- so a retried transfer finds the copy made the first time.
+CREATE TABLE completed_transfer
+(
+    transfer_key VARCHAR(255) NOT NULL PRIMARY KEY,
+    note_id      BIGINT       NOT NULL
+);
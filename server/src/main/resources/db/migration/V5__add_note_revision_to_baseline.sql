@@ -0,0 +1,3 @@
+-- Databases created before the migrations were added have a note table without revisions,
+-- which V1 leaves as it is. Their notes start at revision 0, before any logged change.
+ALTER TABLE note ADD COLUMN IF NOT EXISTS revision BIGINT DEFAULT 0 NOT NULL;
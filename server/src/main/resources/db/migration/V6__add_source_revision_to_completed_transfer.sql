@@ -0,0 +1,3 @@
+-- The revision of the note a transfer copied, so the note is only deleted on the source server
+-- if it did not change since. Transfers completed before are deleted without a check.
+ALTER TABLE completed_transfer ADD COLUMN source_revision BIGINT;
@@ -0,0 +1,89 @@
+package server;
+
+import commons.Note;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import server.database.NoteRepository;
+import server.services.NoteService;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Starts the server on a database that Hibernate created before the migrations were added
+ */
+class BaselineMigrationTest
+{
+    private static final String DATABASE = "jdbc:h2:mem:baseline;DB_CLOSE_DELAY=-1";
+
+    /**
+     * The schema generated from the entities of the first release
+     */
+    private static final String[] BASELINE = {
+        // Past the IDs below, as Hibernate left them
+        "CREATE SEQUENCE collection_seq START WITH 101 INCREMENT BY 50",
+        "CREATE SEQUENCE note_seq START WITH 101 INCREMENT BY 50",
+        "CREATE TABLE collection (id BIGINT NOT NULL, title VARCHAR(255) NOT NULL, "
+            + "PRIMARY KEY (id))",
+        "CREATE TABLE note (body TEXT NOT NULL, collection_id BIGINT NOT NULL, "
+            + "id BIGINT NOT NULL, title VARCHAR(255) NOT NULL, PRIMARY KEY (id))",
+        "INSERT INTO collection (id, title) VALUES (1, 'Old')",
+        "INSERT INTO note (id, collection_id, title, body) VALUES (1, 1, 'My note 1', 'a')",
+        "INSERT INTO note (id, collection_id, title, body) VALUES (2, 1, 'My note 3', 'b')"
+    };
+
+    private ConfigurableApplicationContext context;
+
+    @BeforeEach
+    void setUp() throws SQLException
+    {
+        try (Connection connection = DriverManager.getConnection(DATABASE, "sa", "");
+             Statement statement = connection.createStatement())
+        {
+            for (String sql : BASELINE)
+            {
+                statement.execute(sql);
+            }
+        }
+        context = new SpringApplicationBuilder(Main.class)
+                .properties("server.port=0",
+                        "spring.datasource.url=" + DATABASE,
+                        "spring.h2.console.enabled=false")
+                .run();
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException
+    {
+        context.close();
+        try (Connection connection = DriverManager.getConnection(DATABASE, "sa", "");
+             Statement statement = connection.createStatement())
+        {
+            statement.execute("DROP ALL OBJECTS");
+        }
+    }
+
+    @Test
+    void notesOfTheBaselineAreKept()
+    {
+        Note note = context.getBean(NoteRepository.class).findById(2L).orElseThrow();
+
+        assertEquals("b", note.getBody());
+        assertEquals(0L, note.getRevision());
+    }
+
+    @Test
+    void newNotesContinueTheNumbering()
+    {
+        Note created = context.getBean(NoteService.class).createNote(1L);
+
+        assertEquals(NoteService.NEW_NOTE_TITLE + 4, created.getTitle());
+    }
+}
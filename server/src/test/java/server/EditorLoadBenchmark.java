@@ -0,0 +1,193 @@
+package server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import commons.Collection;
+import commons.Note;
+import commons.NotePatch;
+import commons.NotificationBatch;
+import commons.TextEdit;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import server.api.NotificationMessageConverter;
+import server.services.CollectionService;
+import server.services.NoteService;
+
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency of saving notes while many editors are connected, with the server on platform
+ * threads and on virtual threads (spring.threads.virtual.enabled).
+ * Every editor keeps a STOMP session on the collection open, like the client does,
+ * and saves its own note over REST as fast as the server answers.
+ * Not part of the regular test run (surefire only picks up *Test classes), run with
+ * mvn -pl server test -Dtest=EditorLoadBenchmark
+ */
+class EditorLoadBenchmark
+{
+    private static final int EDITORS = 400;
+    private static final int SAVES_PER_EDITOR = 25;
+    private static final int CONNECT_TIMEOUT_SECONDS = 10;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final AtomicLong notifications = new AtomicLong();
+
+    @Test
+    void latency() throws Exception
+    {
+        for (boolean virtual : new boolean[] { false, true })
+        {
+            try (ConfigurableApplicationContext server = start(virtual))
+            {
+                run(server, virtual ? "virtual" : "platform");
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext start(boolean virtual)
+    {
+        return new SpringApplicationBuilder(Main.class)
+                .properties("server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:load-" + virtual + ";DB_CLOSE_DELAY=-1",
+                        "spring.h2.console.enabled=false",
+                        "spring.threads.virtual.enabled=" + virtual)
+                .run();
+    }
+
+    /**
+     * Let all editors save their notes and print the latency of the saves
+     * @param server the running server
+     * @param mode the name of the thread mode
+     * @throws Exception if an editor could not connect or save
+     */
+    private void run(ConfigurableApplicationContext server, String mode) throws Exception
+    {
+        String port = server.getEnvironment().getProperty("local.server.port");
+        Collection collection = server.getBean(CollectionService.class)
+                .createCollection("Load").orElseThrow();
+        NoteService noteService = server.getBean(NoteService.class);
+        List<Note> notes = new ArrayList<>();
+        for (int i = 0; i < EDITORS; i++)
+        {
+            notes.add(noteService.createNote(collection.getId()));
+        }
+
+        notifications.set(0);
+        WebSocketStompClient stomp = new WebSocketStompClient(new StandardWebSocketClient());
+        stomp.setMessageConverter(new NotificationMessageConverter());
+        List<StompSession> sessions = new ArrayList<>();
+        for (int i = 0; i < EDITORS; i++)
+        {
+            sessions.add(subscribe(stomp, "ws://localhost:" + port + "/ws-connect",
+                    collection.getId()));
+        }
+
+        long[] latencies = new long[EDITORS * SAVES_PER_EDITOR];
+        List<Future<Void>> saves = new ArrayList<>();
+        long start = System.nanoTime();
+        try (HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1).build();
+             ExecutorService editors = Executors.newVirtualThreadPerTaskExecutor())
+        {
+            for (int i = 0; i < EDITORS; i++)
+            {
+                int editor = i;
+                Note note = notes.get(i);
+                saves.add(editors.submit(() -> edit(http, "http://localhost:" + port + "/api/notes/"
+                        + note.getId() + "/patch", note.getRevision(), latencies, editor)));
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        for (Future<Void> save : saves)
+        {
+            save.get();
+        }
+        sessions.forEach(StompSession::disconnect);
+
+        Arrays.sort(latencies);
+        System.out.printf("%-8s %d editors: p50 %.1f ms, p99 %.1f ms, %.0f saves/s, "
+                        + "%,d notification messages%n", mode, EDITORS,
+                percentile(latencies, 0.5), percentile(latencies, 0.99),
+                latencies.length / seconds, notifications.get());
+    }
+
+    private StompSession subscribe(WebSocketStompClient stomp, String url, long collectionId)
+            throws Exception
+    {
+        StompSession session = stomp.connectAsync(url, new StompSessionHandlerAdapter() { })
+                .get(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        session.subscribe("/topic/collections/" + collectionId, new StompFrameHandler()
+        {
+            @Override
+            public Type getPayloadType(StompHeaders headers)
+            {
+                return NotificationBatch.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload)
+            {
+                notifications.incrementAndGet();
+            }
+        });
+        return session;
+    }
+
+    /**
+     * Save one note again and again, each time on the revision of the last save
+     * @param http the client of the editor
+     * @param url the patch endpoint of the note
+     * @param revision the revision of the note before the first save
+     * @param latencies where the latency of every save goes
+     * @param editor the number of the editor
+     * @return nothing, to run as a Callable
+     * @throws Exception if a save failed
+     */
+    private Void edit(HttpClient http, String url, long revision, long[] latencies,
+                      int editor) throws Exception
+    {
+        for (int i = 0; i < SAVES_PER_EDITOR; i++)
+        {
+            String patch = mapper.writeValueAsString(
+                    new NotePatch(revision, List.of(new TextEdit(0, 0, "x"))));
+            HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(patch))
+                    .build();
+            long start = System.nanoTime();
+            HttpResponse<String> response = http.send(request,
+                    HttpResponse.BodyHandlers.ofString());
+            latencies[editor * SAVES_PER_EDITOR + i] = System.nanoTime() - start;
+            if (response.statusCode() != 200)
+            {
+                throw new IllegalStateException("Save failed with " + response.statusCode());
+            }
+            revision = Long.parseLong(response.body());
+        }
+        return null;
+    }
+
+    private static double percentile(long[] sorted, double fraction)
+    {
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+}
@@ -0,0 +1,169 @@
+package server;
+
+import commons.Collection;
+import commons.ErrorCodes;
+import commons.Note;
+import commons.NotePatch;
+import commons.TextEdit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs two servers against one database, like several servers behind a load balancer
+ */
+class SharedDatabaseTest
+{
+    private static final String DATABASE =
+            "jdbc:h2:mem:shared;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000";
+    private static final int CLIENTS = 8;
+    private static final int NOTES_PER_CLIENT = 5;
+
+    private final RestTemplate rest = new RestTemplate();
+    private ConfigurableApplicationContext first;
+    private ConfigurableApplicationContext second;
+
+    @BeforeEach
+    void setUp()
+    {
+        first = start();
+        second = start();
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        second.close();
+        first.close();
+    }
+
+    private static ConfigurableApplicationContext start()
+    {
+        return new SpringApplicationBuilder(Main.class)
+                .properties("server.port=0",
+                        "spring.datasource.url=" + DATABASE,
+                        "spring.h2.console.enabled=false",
+                        // Like the shared profile, which also relays the broker
+                        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+                        "spring.jpa.properties.hibernate.cache.use_query_cache=false",
+                        "notes.index.sync-delay=1000",
+                        "notes.live.enabled=false")
+                .run();
+    }
+
+    private static String url(ConfigurableApplicationContext server, String path)
+    {
+        return "http://localhost:" + server.getEnvironment().getProperty("local.server.port")
+                + path;
+    }
+
+    @Test
+    void concurrentClientsGetUniqueTitles() throws Exception
+    {
+        Collection collection = rest.postForObject(url(first, "/api/collections/create"),
+                "Shared", Collection.class);
+        assertNotNull(collection);
+
+        List<Callable<List<Note>>> clients = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++)
+        {
+            ConfigurableApplicationContext server = i % 2 == 0 ? first : second;
+            clients.add(() ->
+            {
+                List<Note> created = new ArrayList<>();
+                for (int j = 0; j < NOTES_PER_CLIENT; j++)
+                {
+                    created.add(rest.postForObject(url(server, "/api/notes/create"),
+                            collection.getId(), Note.class));
+                }
+                return created;
+            });
+        }
+        List<Note> created = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(CLIENTS))
+        {
+            for (Future<List<Note>> client : executor.invokeAll(clients))
+            {
+                created.addAll(client.get());
+            }
+        }
+
+        int total = CLIENTS * NOTES_PER_CLIENT;
+        assertEquals(total, new HashSet<>(created.stream().map(Note::getTitle).toList()).size());
+        assertEquals(total, new HashSet<>(created.stream().map(Note::getRevision).toList()).size());
+
+        // Both servers see every note, whichever server created it
+        List<Note> listed = rest.exchange(url(second, "/api/notes/byCollectionId/"
+                        + collection.getId() + "?size=" + total), HttpMethod.GET, null,
+                new ParameterizedTypeReference<List<Note>>() { }).getBody();
+        assertNotNull(listed);
+        assertEquals(total, listed.size());
+    }
+
+    @Test
+    void onlyOnePatchOnARevisionApplies() throws Exception
+    {
+        Collection collection = rest.postForObject(url(first, "/api/collections/create"),
+                "Patched", Collection.class);
+        assertNotNull(collection);
+        Note note = rest.postForObject(url(first, "/api/notes/create"),
+                collection.getId(), Note.class);
+        assertNotNull(note);
+
+        List<Callable<Integer>> clients = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++)
+        {
+            ConfigurableApplicationContext server = i % 2 == 0 ? first : second;
+            NotePatch patch = new NotePatch(note.getRevision(),
+                    List.of(new TextEdit(0, 0, String.valueOf(i))));
+            clients.add(() -> status(() -> rest.postForEntity(url(server,
+                    "/api/notes/" + note.getId() + "/patch"), patch, Long.class)));
+        }
+        List<Integer> statuses = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(CLIENTS))
+        {
+            for (Future<Integer> client : executor.invokeAll(clients))
+            {
+                statuses.add(client.get());
+            }
+        }
+
+        assertEquals(1, statuses.stream().filter(x -> x == HttpStatus.OK.value()).count());
+        assertEquals(CLIENTS - 1, statuses.stream()
+                .filter(x -> x == ErrorCodes.NOTE_OUT_OF_DATE.getCode()).count());
+        Note patched = rest.getForObject(url(second, "/api/notes/" + note.getId()), Note.class);
+        assertNotNull(patched);
+        // The body holds the one edit that was applied, none was lost or applied twice
+        assertEquals(note.getBody().length() + 1, patched.getBody().length());
+    }
+
+    private static int status(Callable<ResponseEntity<Long>> request) throws Exception
+    {
+        try
+        {
+            return request.call().getStatusCode().value();
+        }
+        catch (HttpStatusCodeException e)
+        {
+            return e.getStatusCode().value();
+        }
+    }
+}
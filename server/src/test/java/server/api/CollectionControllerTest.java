@@ -2,19 +2,24 @@ package server.api;
 
 import commons.Collection;
 import commons.ErrorCodes;
+import commons.Notification;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.ResponseEntity;
 import server.database.CollectionRepository;
 import server.database.NoteRepository;
+import server.services.ChangeLog;
 import server.services.CollectionService;
+import server.services.NotificationPublisher;
+import server.services.SearchIndex;
 
 import java.util.List;
 import java.util.Optional;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 class CollectionControllerTest {
@@ -23,6 +28,10 @@ class CollectionControllerTest {
     private CollectionRepository collectionRepository;
     @Mock
     private NoteRepository noteRepository;
+    @Mock
+    private ChangeLog changeLog;
+    @Mock
+    private NotificationPublisher notifications;
     private CollectionService collectionService;
     private CollectionController test;
 
@@ -30,7 +39,8 @@ class CollectionControllerTest {
     void setUp() {
         MockitoAnnotations.openMocks(this);
 
-        collectionService = new CollectionService(collectionRepository, noteRepository);
+        collectionService = new CollectionService(collectionRepository, noteRepository,
+                new SearchIndex(noteRepository), changeLog, notifications);
 
         test = new CollectionController(collectionService);
     }
@@ -58,7 +68,7 @@ class CollectionControllerTest {
         Collection collection = new Collection("title");
         when(collectionRepository.findById(collection.getId())).thenReturn(Optional.of(collection));
         ResponseEntity<Collection> result = test.getById(collection.getId());
-        assertEquals(ResponseEntity.ok(collection), result);
+        assertEquals(ResponseEntity.ok().eTag(ETags.of(collection)).body(collection), result);
         assertEquals(collection.getId(), result.getBody().getId());
         verify(collectionRepository, times(1)).findById(collection.getId());
     }
@@ -77,7 +87,7 @@ class CollectionControllerTest {
         Collection collection = new Collection("title");
         when(collectionRepository.findByTitle("title")).thenReturn(Optional.of(collection));
         ResponseEntity<Collection> result = test.getByTitle("title");
-        assertEquals(ResponseEntity.ok(collection), result);
+        assertEquals(ResponseEntity.ok().eTag(ETags.of(collection)).body(collection), result);
         assertEquals(collection.getTitle(), result.getBody().getTitle());
         verify(collectionRepository, times(1)).findByTitle("title");
     }
@@ -109,12 +119,12 @@ class CollectionControllerTest {
     @Test
     void createCollectionInvalid()
     {
-        Collection collection = new Collection("title");
-        when(collectionRepository.findByTitle("title")).thenReturn(Optional.of(collection));
+        // The database rejects the taken title
+        when(collectionRepository.save(any(Collection.class)))
+                .thenThrow(new DataIntegrityViolationException("uk_collection_title"));
         ResponseEntity<Collection> result = test.create("title");
         assertEquals(ResponseEntity.badRequest().build(), result);
-        verify(collectionRepository, times(1)).findByTitle("title");
-        verify(collectionRepository, never()).save(any(Collection.class));
+        verify(collectionRepository, never()).findByTitle("title");
     }
 
     @Test
@@ -126,6 +136,8 @@ class CollectionControllerTest {
         assertEquals(ResponseEntity.ok(existing), result);
         verify(collectionRepository, times(1)).existsById(anyLong());
         verify(collectionRepository, times(1)).save(any(Collection.class));
+        verify(notifications).publish(Notification.of(Notification.Type.UPDATE_COLLECTION,
+                existing.getId()).withCollection(existing));
     }
 
     @Test
@@ -133,11 +145,11 @@ class CollectionControllerTest {
     {
         Collection existing = new Collection("existing");
         when(collectionRepository.existsById(anyLong())).thenReturn(true);
-        when(collectionRepository.existsByTitleAndIdNot(anyString(), anyLong())).thenReturn(true);
+        when(collectionRepository.save(any(Collection.class)))
+                .thenThrow(new DataIntegrityViolationException("uk_collection_title"));
         ResponseEntity<Collection> result = test.update(existing);
         assertEquals(ResponseEntity.badRequest().build(), result);
-        verify(collectionRepository, times(1)).existsByTitleAndIdNot(anyString(), anyLong());
-        verify(collectionRepository, never()).save(any(Collection.class));
+        verifyNoInteractions(notifications);
     }
 
     @Test
@@ -157,6 +169,8 @@ class CollectionControllerTest {
         verify(collectionRepository, times(1)).existsById(1L);
         verify(collectionRepository, times(1)).deleteById(1L);
         verify(noteRepository, times(1)).deleteNotesByCollectionId(1L);
+        verify(changeLog, times(1)).recordCollectionDelete(1L);
+        verify(notifications).publish(Notification.of(Notification.Type.DELETE_COLLECTION, 1L));
     }
     @Test
     void deleteNotFound() {
@@ -167,5 +181,18 @@ class CollectionControllerTest {
         verify(collectionRepository, times(1)).existsById(1L);
         verify(collectionRepository, times(1)).findAll();
         verify(noteRepository, never()).deleteNotesByCollectionId(anyLong());
+        verify(changeLog, never()).recordCollectionDelete(anyLong());
+        verifyNoInteractions(notifications);
+    }
+
+    @Test
+    void eTagFollowsTitle()
+    {
+        Collection collection = new Collection("title");
+        String before = ETags.of(collection);
+        collection.setTitle("other");
+
+        assertNotEquals(before, ETags.of(collection));
+        assertTrue(before.startsWith("W/\"") && before.endsWith("\""));
     }
 }
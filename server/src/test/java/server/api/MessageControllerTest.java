@@ -0,0 +1,46 @@
+package server.api;
+
+import commons.NoteEdit;
+import commons.TextOperation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import server.services.MessageBroadcaster;
+import server.services.NoteService;
+
+import java.util.function.Consumer;
+
+import static org.mockito.Mockito.*;
+
+class MessageControllerTest {
+
+    @Mock
+    private MessageBroadcaster messageBroadcaster;
+    @Mock
+    private NoteService noteService;
+    private MessageController test;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        test = new MessageController(messageBroadcaster, noteService);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void editIsPushedToEditors() {
+        TextOperation operation = TextOperation.builder().insert("x").build();
+        ArgumentCaptor<Consumer<NoteEdit>> publish = ArgumentCaptor.forClass(Consumer.class);
+
+        // The ID in the destination wins over the one in the payload
+        test.editNote(3L, new NoteEdit(5L, 2L, operation, "a"));
+
+        verify(noteService).editNote(eq(new NoteEdit(3L, 2L, operation, "a")),
+                publish.capture());
+        NoteEdit applied = new NoteEdit(3L, 2L, operation, "a");
+        publish.getValue().accept(applied);
+        verify(messageBroadcaster).broadcast("/topic/notes/3/edits", applied);
+    }
+}
@@ -1,18 +1,42 @@
 package server.api;
 
+import commons.Collection;
 import commons.ErrorCodes;
 import commons.Note;
+import commons.NoteChange;
+import commons.NoteDocument;
+import commons.NoteEdit;
+import commons.NotePatch;
+import commons.TextEdit;
+import commons.TextOperation;
+import commons.NoteSummary;
+import commons.Notification;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import server.database.ChangeLogEntry;
 import server.database.CollectionRepository;
 import server.database.NoteRepository;
+import server.services.ChangeLog;
+import server.services.LiveDocuments;
 import server.services.NoteService;
+import server.services.NoteTransferService;
+import server.services.NotificationPublisher;
+import server.services.SearchIndex;
 
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -24,7 +48,18 @@ class NoteControllerTest {
 
     @Mock
     private CollectionRepository collectionRepository;
+
+    @Mock
+    private ChangeLog changeLog;
+
+    @Mock
+    private NotificationPublisher notifications;
+
+    @Mock
+    private NoteTransferService transferService;
     private NoteService noteService;
+    private SearchIndex searchIndex;
+    private LiveDocuments liveDocuments;
 
     private NoteController noteController;
 
@@ -32,31 +67,89 @@ class NoteControllerTest {
     void setUp()
     {
         MockitoAnnotations.openMocks(this);
-        noteService = new NoteService(noteRepository, collectionRepository);
-        noteController = new NoteController(noteService);
+        searchIndex = new SearchIndex(noteRepository);
+        liveDocuments = new LiveDocuments(true);
+        noteService = new NoteService(noteRepository, collectionRepository, searchIndex,
+                changeLog, liveDocuments, notifications);
+        noteController = new NoteController(noteService, transferService);
     }
 
     @Test
     void getAll()
     {
         List<Note> mockNotes = List.of(new Note(1L, "Test Note", "This is a test note."));
-        when(noteRepository.findAll()).thenReturn(mockNotes);
+        when(noteRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(100)))
+                .thenReturn(mockNotes);
+
+        when(changeLog.currentRevision()).thenReturn(12L);
+
+        ResponseEntity<List<Note>> result = noteController.getAll(0, 100);
+
+        assertEquals(ResponseEntity.ok().eTag("W/\"r12\"").body(mockNotes), result);
+        verify(noteRepository, times(1)).findByIdGreaterThanOrderByIdAsc(0L, Limit.of(100));
+    }
+
+    @Test
+    void getAllPageTooLarge()
+    {
+        ResponseEntity<List<Note>> result = noteController.getAll(0, NoteService.MAX_PAGE_SIZE + 1);
+
+        assertEquals(ResponseEntity.badRequest().build(), result);
+        verifyNoInteractions(noteRepository);
+    }
+
+    @Test
+    void getByCollectionIdNextPage()
+    {
+        List<Note> mockNotes = List.of(new Note(1L, "Test Note", "This is a test note."));
+        when(collectionRepository.existsById(1L)).thenReturn(true);
+        when(noteRepository.findByCollectionIdAndIdGreaterThanOrderByIdAsc(1L, 42L, Limit.of(10)))
+                .thenReturn(mockNotes);
 
-        List<Note> result = noteController.getAll();
+        ResponseEntity<List<Note>> result = noteController.getByCollectionId(1L, 42L, 10);
 
-        assertEquals(mockNotes, result);
-        verify(noteRepository, times(1)).findAll();
+        assertEquals(mockNotes, result.getBody());
+        assertEquals("W/\"r0\"", result.getHeaders().getETag());
+    }
+
+    @Test
+    void getSummariesByCollectionId()
+    {
+        List<NoteSummary> summaries = List.of(new NoteSummary(3L, 1L, "Test Note"));
+        when(collectionRepository.existsById(1L)).thenReturn(true);
+        when(noteRepository.findSummariesByCollectionId(1L, 0L, Limit.of(100)))
+                .thenReturn(summaries);
+
+        ResponseEntity<List<NoteSummary>> result =
+                noteController.getSummariesByCollectionId(1L, 0, 100);
+
+        assertEquals(summaries, result.getBody());
+        assertEquals("W/\"r0\"", result.getHeaders().getETag());
+        verify(noteRepository, never()).findByCollectionIdAndIdGreaterThanOrderByIdAsc(
+                anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void getByCollectionIdMissingCollection()
+    {
+        when(collectionRepository.existsById(1L)).thenReturn(false);
+
+        ResponseEntity<List<Note>> result = noteController.getByCollectionId(1L, 0, 10);
+
+        assertEquals(ResponseEntity.badRequest().build(), result);
+        verifyNoInteractions(noteRepository);
     }
 
     @Test
     void getByIdValid()
     {
-        Note mockNote = new Note(1L, "Test Note", "This is a test note.");
+        Note mockNote = new Note(1L, 1L, "Test Note", "This is a test note.");
+        mockNote.setRevision(5L);
         when(noteRepository.findById(1L)).thenReturn(Optional.of(mockNote));
 
         ResponseEntity<Note> result = noteController.getById(1L);
 
-        assertEquals(ResponseEntity.ok(mockNote), result);
+        assertEquals(ResponseEntity.ok().eTag("W/\"1-5\"").body(mockNote), result);
         verify(noteRepository, times(1)).findById(1L);
     }
 
@@ -76,14 +169,43 @@ class NoteControllerTest {
     {
         long collectionId = 1L;
         Note mockNote = new Note(collectionId, "My note 1", "A new note :)");
-        when(collectionRepository.existsById(collectionId)).thenReturn(true);
+        when(collectionRepository.findLastNoteNumberLocked(collectionId))
+                .thenReturn(Optional.of(0L));
         when(noteRepository.save(mockNote)).thenReturn(mockNote);
 
         ResponseEntity<Note> result = noteController.create(collectionId);
 
         assertEquals(ResponseEntity.ok(mockNote), result);
-        verify(collectionRepository, times(1)).existsById(collectionId);
+        verify(collectionRepository, times(1)).findLastNoteNumberLocked(collectionId);
+        verify(collectionRepository, times(1)).updateLastNoteNumber(collectionId, 1L);
         verify(noteRepository, times(1)).save(mockNote);
+        verify(notifications).publish(Notification.ofNote(Notification.Type.ADD_NOTE, mockNote));
+    }
+
+    @Test
+    void createSkipsTakenNumber()
+    {
+        // A note was renamed to the title the next note would get
+        when(collectionRepository.findLastNoteNumberLocked(1L)).thenReturn(Optional.of(4L));
+        when(noteRepository.existsByTitleAndCollectionId("My note 5", 1L)).thenReturn(true);
+        when(noteRepository.save(any())).thenAnswer(x -> x.getArgument(0));
+
+        ResponseEntity<Note> result = noteController.create(1L);
+
+        assertEquals("My note 6", result.getBody().getTitle());
+        verify(collectionRepository, times(1)).updateLastNoteNumber(1L, 6L);
+        verify(noteRepository, never()).findAll();
+    }
+
+    @Test
+    void createMissingCollection()
+    {
+        when(collectionRepository.findLastNoteNumberLocked(1L)).thenReturn(Optional.empty());
+
+        ResponseEntity<Note> result = noteController.create(1L);
+
+        assertEquals(ResponseEntity.badRequest().build(), result);
+        verifyNoInteractions(noteRepository);
     }
 
     @Test
@@ -94,6 +216,7 @@ class NoteControllerTest {
         assertEquals(ResponseEntity.badRequest().build(), result);
         verifyNoInteractions(noteRepository);
         verifyNoInteractions(collectionRepository);
+        verifyNoInteractions(notifications);
     }
 
     @Test
@@ -107,53 +230,82 @@ class NoteControllerTest {
     void moveNoteTitleTaken()
     {
         Note note = new Note(1L, "Test Note", "This is a test note.");
-        when(collectionRepository.existsById(2L)).thenReturn(true);
-        when(noteRepository.existsByTitleAndCollectionId(note.getTitle(), 2L)).thenReturn(true);
-        ResponseEntity<Note> response = noteController.move(note, "local", 2L);
-        assertEquals(ResponseEntity.status(ErrorCodes.INVALID_NOTE_TITLE.getCode()).build(), response);
-        verify(noteRepository, times(1)).existsByTitleAndCollectionId(note.getTitle(), 2L);
-        verify(collectionRepository, times(1)).existsById(2L);
-        verify(noteRepository, never()).save(note);
+        when(collectionRepository.findLockedById(2L))
+                .thenReturn(Optional.of(new Collection(2L, "Collection")));
+        store(note);
+        // The database rejects the taken title
+        doThrow(violation("PUBLIC.UK_NOTE_COLLECTION_TITLE_INDEX_2"))
+                .when(noteRepository).flush();
+        DataIntegrityViolationException e = assertThrows(DataIntegrityViolationException.class,
+                () -> noteController.move(note, "local", 2L));
+        assertEquals(ResponseEntity.status(ErrorCodes.INVALID_NOTE_TITLE.getCode()).build(),
+                noteController.constraintViolated(e));
+        verify(collectionRepository, times(1)).findLockedById(2L);
+        verifyNoInteractions(notifications);
     }
     @Test
     void moveNoteLocal()
     {
-        Note note = new Note(1L, "Test Note", "This is a test note.");
-        when(collectionRepository.existsById(2L)).thenReturn(true);
-        when(noteRepository.existsByTitleAndCollectionId(note.getTitle(), 2L)).thenReturn(false);
-        when(noteRepository.save(note)).thenReturn(note);
+        Note stored = new Note(4L, 1L, "Test Note", "This is a test note.");
+        stored.setRevision(3L);
+        store(stored);
+        when(collectionRepository.findLockedById(2L))
+                .thenReturn(Optional.of(new Collection(2L, "Collection")));
+        // The copy of the client has changes that are not saved
+        Note note = new Note(4L, 1L, "Unsaved title", null);
+        note.setRevision(3L);
         ResponseEntity<Note> response = noteController.move(note, "local", 2L);
         assertEquals(2L, response.getBody().getCollectionId());
-        assertSame(note, response.getBody());
-        verify(noteRepository, times(1)).existsByTitleAndCollectionId(note.getTitle(), 2L);
-        verify(collectionRepository, times(1)).existsById(2L);
-        verify(noteRepository, times(1)).save(note);
+        assertSame(stored, response.getBody());
+        assertEquals("Test Note", stored.getTitle());
+        assertEquals("This is a test note.", stored.getBody());
+        verify(collectionRepository, times(1)).findLockedById(2L);
+        verify(noteRepository, times(1)).save(stored);
+        verify(notifications).publish(Notification.moved(Notification.Type.MOVE_NOTE_LOCAL,
+                stored, 1L));
+    }
+    @Test
+    void moveNoteLocalChangedMeanwhile()
+    {
+        Note stored = new Note(4L, 1L, "Test Note", "This is a test note.");
+        stored.setRevision(5L);
+        store(stored);
+        when(collectionRepository.findLockedById(2L))
+                .thenReturn(Optional.of(new Collection(2L, "Collection")));
+        Note note = new Note(4L, 1L, "Test Note", "Stale body");
+        note.setRevision(3L);
+        ResponseEntity<Note> response = noteController.move(note, "local", 2L);
+        assertEquals(ResponseEntity.status(ErrorCodes.NOTE_OUT_OF_DATE.getCode()).build(),
+                response);
+        assertEquals(1L, stored.getCollectionId());
+        verify(noteRepository, never()).save(any());
+        verifyNoInteractions(notifications);
     }
     @Test
     void moveNoteForeign()
     {
         Note note = new Note(1L, "Test Note", "This is a test note.");
-        when(collectionRepository.existsById(2L)).thenReturn(true);
-        when(noteRepository.existsByTitleAndCollectionId(note.getTitle(), 2L)).thenReturn(false);
-        when(noteRepository.save(note)).thenReturn(note);
+        when(collectionRepository.findLockedById(2L))
+                .thenReturn(Optional.of(new Collection(2L, "Collection")));
+        when(noteRepository.save(any())).thenAnswer(x -> x.getArgument(0));
         ResponseEntity<Note> response = noteController.move(note, "foreign", 2L);
         assertEquals(2L, response.getBody().getCollectionId());
         assertNotSame(response.getBody(), note);
-        verify(noteRepository, times(1)).existsByTitleAndCollectionId(note.getTitle(), 2L);
-        verify(collectionRepository, times(1)).existsById(2L);
+        verify(collectionRepository, times(1)).findLockedById(2L);
         verify(noteRepository, times(1)).save(response.getBody());
+        verify(notifications).publish(Notification.moved(Notification.Type.MOVE_NOTE_FOREIGN,
+                response.getBody(), 0L));
     }
     @Test
     void moveNoteInvalidCommand()
     {
         Note note = new Note(1L, "Test Note", "This is a test note.");
-        when(collectionRepository.existsById(2L)).thenReturn(true);
-        when(noteRepository.existsByTitleAndCollectionId(note.getTitle(), 2L)).thenReturn(false);
+        when(collectionRepository.findLockedById(2L))
+                .thenReturn(Optional.of(new Collection(2L, "Collection")));
         when(noteRepository.save(note)).thenReturn(note);
         ResponseEntity<Note> response = noteController.move(note, "invalid", 2L);
         assertEquals(ResponseEntity.badRequest().build(), response);
-        verify(noteRepository, times(1)).existsByTitleAndCollectionId(note.getTitle(), 2L);
-        verify(collectionRepository, times(1)).existsById(2L);
+        verify(collectionRepository, times(1)).findLockedById(2L);
         verify(noteRepository, never()).save(note);
     }
 
@@ -161,49 +313,92 @@ class NoteControllerTest {
     void deleteValid()
     {
         long noteId = 1L;
-        when(noteRepository.existsById(noteId)).thenReturn(true);
+        when(noteRepository.findById(noteId))
+                .thenReturn(Optional.of(new Note(noteId, 4L, "Title", "Body")));
         doNothing().when(noteRepository).deleteById(noteId);
-        when(noteRepository.findAll()).thenReturn(List.of());
 
-        List<Note> result = noteController.delete(noteId);
+        ResponseEntity<Void> result = noteController.delete(noteId, null);
 
-        assertEquals(List.of(), result);
-        verify(noteRepository, times(1)).existsById(noteId);
+        assertEquals(ResponseEntity.ok().build(), result);
+        verify(noteRepository, times(1)).findById(noteId);
         verify(noteRepository, times(1)).deleteById(noteId);
-        verify(noteRepository, times(1)).findAll();
+        verify(noteRepository, never()).findAll();
+        verify(notifications).publish(Notification.deleted(noteId, 4L));
     }
 
     @Test
     void deleteInvalid()
     {
         long noteId = 1L;
-        when(noteRepository.existsById(noteId)).thenReturn(false);
+        when(noteRepository.findById(noteId)).thenReturn(Optional.empty());
         doNothing().when(noteRepository).deleteById(noteId);
-        when(noteRepository.findAll()).thenReturn(List.of());
 
-        List<Note> result = noteController.delete(noteId);
+        ResponseEntity<Void> result = noteController.delete(noteId, null);
 
-        assertEquals(List.of(), result);
-        verify(noteRepository, times(1)).existsById(noteId);
+        assertEquals(ResponseEntity.ok().build(), result);
+        verify(noteRepository, times(1)).findById(noteId);
         verify(noteRepository, times(0)).deleteById(noteId);
-        verify(noteRepository, times(1)).findAll();
+        verify(noteRepository, never()).findAll();
+        verifyNoInteractions(notifications);
     }
 
     @Test
-    void updateValid()
+    void deleteAtRevision()
+    {
+        Note note = new Note(1L, 4L, "Title", "Body");
+        note.setRevision(3L);
+        when(noteRepository.findLockedById(1L)).thenReturn(Optional.of(note));
+
+        assertEquals(ResponseEntity.ok().build(), noteController.delete(1L, 3L));
+        verify(noteRepository, times(1)).deleteById(1L);
+        verify(notifications).publish(Notification.deleted(1L, 4L));
+    }
+
+    @Test
+    void deleteChangedSinceRevision()
+    {
+        Note note = new Note(1L, 4L, "Title", "Body");
+        note.setRevision(4L);
+        when(noteRepository.findLockedById(1L)).thenReturn(Optional.of(note));
+
+        assertEquals(ResponseEntity.status(ErrorCodes.NOTE_OUT_OF_DATE.getCode()).build(),
+                noteController.delete(1L, 3L));
+        verify(noteRepository, never()).deleteById(anyLong());
+        verifyNoInteractions(notifications);
+    }
+
+    /**
+     * Let the repository hold a note and its collection, as they are before the update
+     * @param note the stored note
+     */
+    private void store(Note note)
     {
-        Note updatedNote = new Note(1L, "Updated Note", "Updated content");
-        when(noteRepository.existsById(updatedNote.getId())).thenReturn(true);
-        when(noteRepository.existsByTitleAndCollectionIdAndIdNot(updatedNote.getTitle(), updatedNote.getCollectionId(), updatedNote.getId())).thenReturn(false);
-        when(noteRepository.save(updatedNote)).thenReturn(updatedNote);
+        when(collectionRepository.findLockedById(note.getCollectionId()))
+                .thenReturn(Optional.of(new Collection(note.getCollectionId(), "Collection")));
+        when(noteRepository.findLockedById(note.getId())).thenReturn(Optional.of(note));
+        when(noteRepository.save(note)).thenReturn(note);
+    }
 
+    @Test
+    void updateValid()
+    {
+        Note stored = new Note(0L, 1L, "Note", "Content");
+        stored.setRevision(3L);
+        store(stored);
+        Note updatedNote = new Note(0L, 1L, "Updated Note", "Updated content");
+        updatedNote.setRevision(3L);
+        when(changeLog.nextRevision()).thenReturn(7L);
 
         ResponseEntity<Note> result = noteController.update(updatedNote);
 
+        updatedNote.setRevision(7L);
         assertEquals(ResponseEntity.ok(updatedNote), result);
-        verify(noteRepository, times(1)).existsById(updatedNote.getId());
-        verify(noteRepository, times(1)).save(updatedNote);
-        verify(noteRepository, times(1)).existsByTitleAndCollectionIdAndIdNot(updatedNote.getTitle(), updatedNote.getCollectionId(), updatedNote.getId());
+        // The stored note is changed, it stays in the second-level cache
+        assertEquals("Updated content", stored.getBody());
+        verify(noteRepository, times(1)).save(stored);
+        verify(collectionRepository, times(1)).findLockedById(1L);
+        verify(notifications).publish(Notification.ofNote(Notification.Type.UPDATE_NOTE,
+                updatedNote));
     }
 
     @Test
@@ -219,16 +414,557 @@ class NoteControllerTest {
     void updateInvalidNonExistent() {
 
         Note updatedNote = new Note(99L, "Updated Note", "Updated content");
-        when(noteRepository.existsById(updatedNote.getId())).thenReturn(false);
-        when(noteRepository.existsByTitleAndCollectionIdAndIdNot(updatedNote.getTitle(), updatedNote.getCollectionId(), updatedNote.getId())).thenReturn(false);
-        when(noteRepository.save(updatedNote)).thenReturn(updatedNote);
-
+        when(collectionRepository.findLockedById(99L))
+                .thenReturn(Optional.of(new Collection(99L, "Collection")));
+        when(noteRepository.findLockedById(updatedNote.getId())).thenReturn(Optional.empty());
 
         ResponseEntity<Note> result = noteController.update(updatedNote);
         assertEquals(ResponseEntity.badRequest().build(), result);
-        verify(noteRepository, times(1)).existsById(updatedNote.getId());
-        verify(noteRepository, never()).save(updatedNote);
-        verify(noteRepository, never()).existsByTitleAndCollectionIdAndIdNot(updatedNote.getTitle(), updatedNote.getCollectionId(), updatedNote.getId());
+        verify(noteRepository, times(1)).findLockedById(updatedNote.getId());
+        verifyNoInteractions(notifications);
+    }
+
+    @Test
+    void updateIntoMissingCollection()
+    {
+        Note stored = new Note(1L, 1L, "Title", "Body");
+        store(stored);
+        Note note = new Note(1L, 8L, "Title", "Body");
+
+        ResponseEntity<Note> result = noteController.update(note);
+
+        assertEquals(ResponseEntity.badRequest().build(), result);
+        assertEquals(1L, stored.getCollectionId());
+        verify(noteRepository, never()).save(any());
+        verifyNoInteractions(notifications);
+    }
+
+    /**
+     * A rejection of the database as Spring reports it
+     * @param constraintName the name of the violated constraint, as Hibernate read it
+     * @return the exception
+     */
+    private static DataIntegrityViolationException violation(String constraintName)
+    {
+        return new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("could not execute statement",
+                        new SQLException("Unique index or primary key violation"),
+                        constraintName));
+    }
+
+    @Test
+    void updateTitleTaken()
+    {
+        store(new Note(1L, 1L, "Title", "Body"));
+        Note note = new Note(1L, 1L, "Taken", "Body");
+        // The database rejects the taken title, it is not looked up before
+        doThrow(violation("PUBLIC.UK_NOTE_COLLECTION_TITLE_INDEX_2"))
+                .when(noteRepository).flush();
+
+        DataIntegrityViolationException e = assertThrows(DataIntegrityViolationException.class,
+                () -> noteController.update(note));
+
+        assertEquals(ResponseEntity.status(ErrorCodes.INVALID_NOTE_TITLE.getCode()).build(),
+                noteController.constraintViolated(e));
+        verifyNoInteractions(notifications);
+    }
+
+    @Test
+    void titleTakenFromMessage()
+    {
+        DataIntegrityViolationException e = new DataIntegrityViolationException("rejected",
+                new SQLException("duplicate key value violates unique constraint "
+                        + "\"uk_note_collection_title\""));
+
+        assertEquals(ResponseEntity.status(ErrorCodes.INVALID_NOTE_TITLE.getCode()).build(),
+                noteController.constraintViolated(e));
+    }
+
+    @Test
+    void otherViolationIsBadRequest()
+    {
+        DataIntegrityViolationException tooLong = new DataIntegrityViolationException("rejected",
+                new SQLException("Value too long for column \"TITLE CHARACTER VARYING(255)\""));
+        DataIntegrityViolationException transferKey = violation("PUBLIC.PRIMARY_KEY_4");
+
+        assertEquals(ResponseEntity.badRequest().build(),
+                noteController.constraintViolated(tooLong));
+        assertEquals(ResponseEntity.badRequest().build(),
+                noteController.constraintViolated(transferKey));
+    }
+
+    @Test
+    void updateChangedMeanwhile()
+    {
+        Note stored = new Note(1L, 1L, "Title", "New body");
+        stored.setRevision(5L);
+        store(stored);
+        Note note = new Note(1L, 1L, "Title", "Stale body");
+        note.setRevision(3L);
+
+        ResponseEntity<Note> result = noteController.update(note);
+
+        assertEquals(ResponseEntity.status(ErrorCodes.NOTE_OUT_OF_DATE.getCode()).build(),
+                result);
+        assertEquals("New body", stored.getBody());
+        verify(noteRepository, never()).save(any());
+        verify(changeLog, never()).recordUpdate(any());
+        verifyNoInteractions(notifications);
+    }
+
+    @Test
+    void searchAfterUpdate()
+    {
+        Note note = new Note(1L, "Shopping", "milk and bread");
+        store(new Note(0L, 1L, "Shopping", "milk"));
+        noteController.update(note);
+        when(noteRepository.findAllById(List.of(note.getId()))).thenReturn(List.of(note));
+
+        ResponseEntity<List<Note>> result = noteController.search("bre", null, 0, 20);
+
+        assertEquals(ResponseEntity.ok(List.of(note)), result);
+    }
+
+    @Test
+    void searchSeesUpdateOnlyOnceCommitted()
+    {
+        Note note = new Note(1L, "Shopping", "milk and bread");
+        store(new Note(0L, 1L, "Shopping", "milk"));
+        when(noteRepository.findAllById(List.of(note.getId()))).thenReturn(List.of(note));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try
+        {
+            noteController.update(note);
+            assertEquals(ResponseEntity.ok(List.of()), noteController.search("bre", null, 0, 20));
+
+            TransactionSynchronizationUtils.triggerAfterCommit();
+        }
+        finally
+        {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(ResponseEntity.ok(List.of(note)), noteController.search("bre", null, 0, 20));
+    }
+
+    @Test
+    void searchInvalidPageSize()
+    {
+        ResponseEntity<List<Note>> result = noteController.search("milk", null, 0, 1000);
+
+        assertEquals(ResponseEntity.badRequest().build(), result);
+        verifyNoInteractions(noteRepository);
+    }
+
+    @Test
+    void updateRecordsChange()
+    {
+        Note stored = new Note(0L, 1L, "Title", "Old body");
+        store(stored);
+        when(changeLog.nextRevision()).thenReturn(7L);
+
+        ResponseEntity<Note> result = noteController.update(new Note(1L, "Title", "Body"));
+
+        assertEquals(7L, result.getBody().getRevision());
+        verify(changeLog, times(1)).recordUpdate(stored);
+    }
+
+    @Test
+    void deleteRecordsTombstone()
+    {
+        when(noteRepository.findById(3L)).thenReturn(Optional.of(new Note(3L, 1L, "T", "B")));
+
+        noteController.delete(3L, null);
+
+        verify(changeLog, times(1)).recordDelete(3L);
+    }
+
+    @Test
+    void getChanges()
+    {
+        Note note = new Note(1L, "Title", "Body");
+        when(changeLog.changesSince(5L, 100)).thenReturn(List.of(
+                new ChangeLogEntry(note.getId(), 1L, 6L, false),
+                new ChangeLogEntry(4L, 1L, 7L, true)));
+        when(noteRepository.findAllById(List.of(note.getId()))).thenReturn(List.of(note));
+
+        ResponseEntity<List<NoteChange>> result = noteController.getChanges(5L, 100);
+
+        assertEquals(ResponseEntity.ok(List.of(
+                new NoteChange(note.getId(), 6L, note),
+                new NoteChange(4L, 7L, null))), result);
+    }
+
+    @Test
+    void getChangesNoteDeletedMeanwhile()
+    {
+        when(changeLog.changesSince(0L, 100)).thenReturn(List.of(
+                new ChangeLogEntry(2L, 1L, 1L, false)));
+        when(noteRepository.findAllById(List.of(2L))).thenReturn(List.of());
+
+        ResponseEntity<List<NoteChange>> result = noteController.getChanges(0L, 100);
+
+        assertEquals(ResponseEntity.ok(List.of(new NoteChange(2L, 1L, null))), result);
+    }
+
+    @Test
+    void getChangesInvalidPageSize()
+    {
+        ResponseEntity<List<NoteChange>> result = noteController.getChanges(0L, 0);
+
+        assertEquals(ResponseEntity.badRequest().build(), result);
+        verifyNoInteractions(changeLog);
+    }
+
+    @Test
+    void getRevision()
+    {
+        when(changeLog.currentRevision()).thenReturn(12L);
+
+        assertEquals(ResponseEntity.ok(12L), noteController.getRevision());
+    }
+
+    @Test
+    void patch()
+    {
+        Note note = new Note(1L, "Title", "Hello world");
+        note.setRevision(4L);
+        when(noteRepository.findLockedById(2L)).thenReturn(Optional.of(note));
+        when(noteRepository.save(note)).thenReturn(note);
+        when(changeLog.nextRevision()).thenReturn(5L);
+
+        ResponseEntity<Long> result = noteController.patch(2L,
+                new NotePatch(4L, List.of(new TextEdit(5, 0, " big"))));
+
+        assertEquals(ResponseEntity.ok(5L), result);
+        assertEquals("Hello big world", note.getBody());
+        verify(noteRepository, never()).findById(anyLong());
+        // The revision counter, locked until the commit, is taken after the note is saved
+        InOrder order = inOrder(noteRepository, changeLog);
+        order.verify(noteRepository).save(note);
+        order.verify(changeLog).nextRevision();
+        order.verify(noteRepository).flush();
+        verify(noteRepository, times(1)).save(note);
+        verify(changeLog, times(1)).recordUpdate(any());
+        verify(notifications).publish(Notification.ofNote(Notification.Type.UPDATE_NOTE, note));
+    }
+
+    @Test
+    void patchOutOfDate()
+    {
+        Note note = new Note(1L, "Title", "Hello world");
+        note.setRevision(6L);
+        when(noteRepository.findLockedById(2L)).thenReturn(Optional.of(note));
+
+        ResponseEntity<Long> result = noteController.patch(2L,
+                new NotePatch(4L, List.of(new TextEdit(5, 0, " big"))));
+
+        assertEquals(ResponseEntity.status(ErrorCodes.NOTE_OUT_OF_DATE.getCode()).build(), result);
+        assertEquals("Hello world", note.getBody());
+        verify(noteRepository, never()).save(any());
+    }
+
+    @Test
+    void patchOutOfRange()
+    {
+        Note note = new Note(1L, "Title", "Hello");
+        when(noteRepository.findLockedById(2L)).thenReturn(Optional.of(note));
+
+        ResponseEntity<Long> result = noteController.patch(2L,
+                new NotePatch(0L, List.of(new TextEdit(4, 3, ""))));
+
+        assertEquals(ResponseEntity.badRequest().build(), result);
+        verify(noteRepository, never()).save(any());
+    }
+
+    @Test
+    void patchMissingNote()
+    {
+        when(noteRepository.findLockedById(2L)).thenReturn(Optional.empty());
+
+        ResponseEntity<Long> result = noteController.patch(2L, new NotePatch(0L, List.of()));
+
+        assertEquals(ResponseEntity.badRequest().build(), result);
+    }
+
+    @Test
+    void getDocument()
+    {
+        Note note = new Note(2L, 1L, "Title", "Hello world");
+        when(noteRepository.findById(2L)).thenReturn(Optional.of(note));
+
+        ResponseEntity<NoteDocument> result = noteController.getDocument(2L);
+
+        assertEquals(ResponseEntity.ok(new NoteDocument(2L, 0L, "Hello world")), result);
+        assertTrue(liveDocuments.isOpen(2L));
+    }
+
+    @Test
+    void getDocumentMissingNote()
+    {
+        when(noteRepository.findById(2L)).thenReturn(Optional.empty());
+
+        assertEquals(ResponseEntity.badRequest().build(), noteController.getDocument(2L));
+        assertFalse(liveDocuments.isOpen(2L));
+    }
+
+    @Test
+    void liveEditingTurnedOff()
+    {
+        LiveDocuments turnedOff = new LiveDocuments(false);
+        noteService = new NoteService(noteRepository, collectionRepository, searchIndex,
+                changeLog, turnedOff, notifications);
+        noteController = new NoteController(noteService, transferService);
+        Note note = new Note(2L, 1L, "Title", "Hello world");
+        when(noteRepository.findById(2L)).thenReturn(Optional.of(note));
+        TextOperation operation = TextOperation.builder().retain(5).insert("!").retain(6).build();
+        List<NoteEdit> published = new ArrayList<>();
+
+        assertEquals(ResponseEntity.badRequest().build(), noteController.getDocument(2L));
+        noteService.editNote(new NoteEdit(2L, 0L, operation, "client"), published::add);
+
+        assertTrue(published.getFirst().rejected());
+        assertFalse(turnedOff.isOpen(2L));
+    }
+
+    @Test
+    void editOpensDocument()
+    {
+        Note note = new Note(2L, 1L, "Title", "Hello world");
+        when(noteRepository.findById(2L)).thenReturn(Optional.of(note));
+        TextOperation operation = TextOperation.builder().retain(5).insert("!").retain(6).build();
+        List<NoteEdit> published = new ArrayList<>();
+
+        noteService.editNote(new NoteEdit(2L, 0L, operation, "client"), published::add);
+
+        assertEquals(List.of(new NoteEdit(2L, 0L, operation, "client")), published);
+        assertEquals(Optional.of("Hello! world"), liveDocuments.body(2L));
+        verify(noteRepository, never()).save(any());
+    }
+
+    @Test
+    void saveLiveDocuments()
+    {
+        Note loaded = new Note(2L, 1L, "Title", "Hello world");
+        when(noteRepository.findById(2L)).thenReturn(Optional.of(loaded));
+        TextOperation operation = TextOperation.builder().retain(11).insert("!").build();
+        noteService.editNote(new NoteEdit(2L, 0L, operation, "client"), x -> { });
+        // Renamed since the body was loaded
+        Note note = new Note(2L, 1L, "Renamed", "Hello world");
+        when(noteRepository.findLockedByIdInOrderByIdAsc(Set.of(2L))).thenReturn(List.of(note));
+        when(noteRepository.saveAll(List.of(note))).thenReturn(List.of(note));
+        when(changeLog.nextRevisions(1)).thenReturn(9L);
+
+        noteService.saveLiveDocuments();
+        noteService.saveLiveDocuments();
+
+        assertEquals("Renamed", note.getTitle());
+        assertEquals("Hello world!", note.getBody());
+        assertEquals(9L, note.getRevision());
+        // All changed bodies are saved with one trip to the revision counter
+        verify(noteRepository, times(1)).saveAll(List.of(note));
+        verify(changeLog, never()).nextRevision();
+        verify(changeLog, times(1)).recordUpdates(List.of(note));
+        verify(notifications, times(1)).publishAll(List.of(
+                Notification.ofNote(Notification.Type.UPDATE_NOTE, note)));
+    }
+
+    @Test
+    void updateKeepsLiveBody()
+    {
+        Note stored = new Note(2L, 1L, "Title", "Hello world");
+        when(noteRepository.findById(2L)).thenReturn(Optional.of(stored));
+        noteController.getDocument(2L);
+        noteService.editNote(new NoteEdit(2L, 0L,
+                TextOperation.builder().retain(11).insert("!").build(), "client"), x -> { });
+
+        store(stored);
+        Note update = new Note(2L, 1L, "New title", "Hello world");
+        ResponseEntity<Note> result = noteController.update(update);
+
+        assertEquals("New title", result.getBody().getTitle());
+        assertEquals("Hello world!", result.getBody().getBody());
+    }
+
+    @Test
+    void patchLiveNote()
+    {
+        Note note = new Note(2L, 1L, "Title", "Hello world");
+        note.setRevision(4L);
+        when(noteRepository.findById(2L)).thenReturn(Optional.of(note));
+        when(noteRepository.findLockedById(2L)).thenReturn(Optional.of(note));
+        noteController.getDocument(2L);
+
+        ResponseEntity<Long> result = noteController.patch(2L,
+                new NotePatch(4L, List.of(new TextEdit(5, 0, " big"))));
+
+        assertEquals(ResponseEntity.status(ErrorCodes.NOTE_OUT_OF_DATE.getCode()).build(), result);
+        verify(noteRepository, never()).save(any());
+    }
+
+    @Test
+    void deleteClosesDocument()
+    {
+        when(noteRepository.findById(2L)).thenReturn(Optional.of(new Note(2L, 1L, "T", "B")));
+        noteController.getDocument(2L);
+
+        noteController.delete(2L, null);
+
+        assertFalse(liveDocuments.isOpen(2L));
+    }
+
+    @Test
+    void bulkCreate()
+    {
+        when(collectionRepository.findLastNoteNumberLocked(1L)).thenReturn(Optional.of(2L));
+        when(collectionRepository.findLastNoteNumberLocked(2L)).thenReturn(Optional.of(0L));
+        when(changeLog.nextRevisions(3)).thenReturn(10L);
+        when(noteRepository.saveAll(any())).thenAnswer(x -> x.getArgument(0));
+
+        ResponseEntity<List<Note>> result = noteController.createAll(List.of(
+                new Note(2L, "Imported", "Body"),
+                new Note(1L, null, null),
+                new Note(1L, "", "Second")));
+
+        List<Note> created = result.getBody();
+        assertEquals(List.of("Imported", "My note 3", "My note 4"),
+                created.stream().map(Note::getTitle).toList());
+        assertEquals(List.of(10L, 11L, 12L), created.stream().map(Note::getRevision).toList());
+        // Each counter is written once for the whole request
+        verify(collectionRepository, times(1)).updateLastNoteNumber(1L, 4L);
+        verify(noteRepository, never()).save(any());
+        verify(changeLog, never()).nextRevision();
+        verify(changeLog, times(1)).recordUpdates(created);
+        verify(notifications).publishAll(created.stream()
+                .map(x -> Notification.ofNote(Notification.Type.ADD_NOTE, x))
+                .toList());
+    }
+
+    @Test
+    void bulkCreateMissingCollection()
+    {
+        when(collectionRepository.findLastNoteNumberLocked(1L)).thenReturn(Optional.of(0L));
+        when(collectionRepository.findLastNoteNumberLocked(2L)).thenReturn(Optional.empty());
+
+        ResponseEntity<List<Note>> result = noteController.createAll(List.of(
+                new Note(1L, null, null), new Note(2L, null, null)));
+
+        assertEquals(ResponseEntity.badRequest().build(), result);
+        verifyNoInteractions(noteRepository);
+        verifyNoInteractions(notifications);
+    }
 
+    @Test
+    void bulkTooLarge()
+    {
+        List<Long> ids = new ArrayList<>();
+        for (long i = 0; i <= NoteService.MAX_BULK_SIZE; i++)
+        {
+            ids.add(i);
+        }
+
+        assertEquals(ResponseEntity.badRequest().build(), noteController.deleteAll(ids));
+        assertEquals(ResponseEntity.badRequest().build(), noteController.deleteAll(List.of()));
+        verifyNoInteractions(noteRepository);
+    }
+
+    @Test
+    void bulkUpdate()
+    {
+        Note first = new Note(1L, 1L, "First", "Old");
+        first.setRevision(3L);
+        Note second = new Note(2L, 1L, "Second", "Old");
+        second.setRevision(5L);
+        when(noteRepository.findLockedByIdInOrderByIdAsc(List.of(2L, 1L)))
+                .thenReturn(List.of(first, second));
+        when(changeLog.nextRevisions(2)).thenReturn(8L);
+        when(noteRepository.saveAll(any())).thenAnswer(x -> x.getArgument(0));
+        Note secondChange = new Note(2L, 1L, "Second", "New");
+        secondChange.setRevision(5L);
+        Note firstChange = new Note(1L, 1L, "Renamed", "Old");
+        firstChange.setRevision(3L);
+
+        ResponseEntity<List<Note>> result = noteController.updateAll(
+                List.of(secondChange, firstChange));
+
+        assertEquals(ResponseEntity.ok(List.of(first, second)), result);
+        assertEquals("Renamed", first.getTitle());
+        assertEquals("New", second.getBody());
+        assertEquals(9L, second.getRevision());
+        verify(notifications).publishAll(List.of(
+                Notification.ofNote(Notification.Type.UPDATE_NOTE, first),
+                Notification.ofNote(Notification.Type.UPDATE_NOTE, second)));
+    }
+
+    @Test
+    void bulkUpdateChangedMeanwhile()
+    {
+        Note stored = new Note(1L, 1L, "Title", "Body");
+        stored.setRevision(4L);
+        when(noteRepository.findLockedByIdInOrderByIdAsc(List.of(1L)))
+                .thenReturn(List.of(stored));
+        Note change = new Note(1L, 1L, "Title", "Stale body");
+        change.setRevision(3L);
+
+        ResponseEntity<List<Note>> result = noteController.updateAll(List.of(change));
+
+        assertEquals(ResponseEntity.status(ErrorCodes.NOTE_OUT_OF_DATE.getCode()).build(),
+                result);
+        verify(noteRepository, never()).saveAll(any());
+        verifyNoInteractions(notifications);
+    }
+
+    @Test
+    void bulkMove()
+    {
+        Note first = new Note(1L, 1L, "First", "Body");
+        Note second = new Note(2L, 3L, "Second", "Body");
+        when(collectionRepository.findLockedById(2L))
+                .thenReturn(Optional.of(new Collection(2L, "Collection")));
+        when(noteRepository.findLockedByIdInOrderByIdAsc(List.of(1L, 2L)))
+                .thenReturn(List.of(first, second));
+        when(noteRepository.saveAll(any())).thenAnswer(x -> x.getArgument(0));
+
+        ResponseEntity<List<Note>> result = noteController.moveAll(List.of(1L, 2L), 2L);
+
+        assertEquals(ResponseEntity.ok(List.of(first, second)), result);
+        assertEquals(2L, second.getCollectionId());
+        verify(notifications).publishAll(List.of(
+                Notification.moved(Notification.Type.MOVE_NOTE_LOCAL, first, 1L),
+                Notification.moved(Notification.Type.MOVE_NOTE_LOCAL, second, 3L)));
+    }
+
+    @Test
+    void bulkMoveMissingNote()
+    {
+        when(collectionRepository.findLockedById(2L))
+                .thenReturn(Optional.of(new Collection(2L, "Collection")));
+        when(noteRepository.findLockedByIdInOrderByIdAsc(List.of(1L, 9L)))
+                .thenReturn(List.of(new Note(1L, 1L, "First", "Body")));
+
+        ResponseEntity<List<Note>> result = noteController.moveAll(List.of(1L, 9L), 2L);
+
+        assertEquals(ResponseEntity.badRequest().build(), result);
+        verify(noteRepository, never()).saveAll(any());
+        verifyNoInteractions(notifications);
+    }
+
+    @Test
+    void bulkDelete()
+    {
+        List<Note> found = List.of(new Note(1L, 4L, "A", "B"), new Note(3L, 5L, "C", "D"));
+        when(noteRepository.findAllById(List.of(1L, 2L, 3L))).thenReturn(found);
+        when(changeLog.nextRevisions(2)).thenReturn(20L);
+
+        ResponseEntity<List<Long>> result = noteController.deleteAll(List.of(1L, 2L, 3L));
+
+        assertEquals(ResponseEntity.ok(List.of(1L, 3L)), result);
+        verify(noteRepository, times(1)).deleteAll(found);
+        verify(noteRepository, never()).deleteAllByIdInBatch(any());
+        verify(noteRepository, never()).deleteById(anyLong());
+        verify(changeLog, times(1)).recordDeletes(found, 20L);
+        verify(notifications).publishAll(List.of(Notification.deleted(1L, 4L),
+                Notification.deleted(3L, 5L)));
     }
 }
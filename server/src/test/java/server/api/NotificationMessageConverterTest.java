@@ -0,0 +1,35 @@
+package server.api;
+
+import commons.Note;
+import commons.Notification;
+import commons.NotificationBatch;
+import commons.NotificationCodec;
+import commons.NoteEdit;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.util.MimeType;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NotificationMessageConverterTest {
+
+    private final NotificationMessageConverter converter = new NotificationMessageConverter();
+
+    @Test
+    void roundTrip() {
+        NotificationBatch batch = NotificationBatch.of(Notification.ofNote(
+                Notification.Type.UPDATE_NOTE, new Note(3L, 1L, "Title", "Body")));
+
+        Message<?> message = converter.toMessage(batch, null);
+
+        assertEquals(MimeType.valueOf(NotificationCodec.CONTENT_TYPE),
+                message.getHeaders().get(MessageHeaders.CONTENT_TYPE));
+        assertEquals(batch, converter.fromMessage(message, NotificationBatch.class));
+    }
+
+    @Test
+    void otherPayloadsAreLeftToJson() {
+        assertNull(converter.toMessage(new NoteEdit(1L, 0L, null, "a"), null));
+    }
+}
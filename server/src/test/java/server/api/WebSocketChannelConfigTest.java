@@ -0,0 +1,87 @@
+package server.api;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.config.TaskExecutorRegistration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class WebSocketChannelConfigTest {
+
+    private static WebSocketChannelConfig config(boolean virtualThreads) {
+        return new WebSocketChannelConfig(virtualThreads, 4, 8, 1000, 2048);
+    }
+
+    @Test
+    void platformThreadsByDefault() {
+        ChannelRegistration registration = mock(ChannelRegistration.class);
+        TaskExecutorRegistration executor = mock(TaskExecutorRegistration.class, RETURNS_SELF);
+        when(registration.taskExecutor()).thenReturn(executor);
+
+        config(false).configureClientInboundChannel(registration);
+
+        verify(registration, never()).taskExecutor(any());
+        verify(executor).corePoolSize(4);
+        verify(executor).maxPoolSize(4);
+    }
+
+    @Test
+    void outboundPoolSize() {
+        ChannelRegistration registration = mock(ChannelRegistration.class);
+        TaskExecutorRegistration executor = mock(TaskExecutorRegistration.class, RETURNS_SELF);
+        when(registration.taskExecutor()).thenReturn(executor);
+
+        config(false).configureClientOutboundChannel(registration);
+
+        verify(executor).corePoolSize(8);
+        verify(executor).maxPoolSize(8);
+    }
+
+    @Test
+    void virtualThreads() {
+        ChannelRegistration registration = mock(ChannelRegistration.class);
+
+        config(true).configureClientOutboundChannel(registration);
+
+        verify(registration).taskExecutor(any(ThreadPoolTaskExecutor.class));
+        verify(registration, never()).taskExecutor();
+    }
+
+    @Test
+    void slowClientLimits() {
+        WebSocketTransportRegistration registration =
+                mock(WebSocketTransportRegistration.class, RETURNS_SELF);
+
+        config(false).configureWebSocketTransport(registration);
+
+        verify(registration).setSendTimeLimit(1000);
+        verify(registration).setSendBufferSizeLimit(2048);
+    }
+
+    @Test
+    void noThreads() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new WebSocketChannelConfig(false, 0, 8, 1000, 2048));
+    }
+
+    @Test
+    void executorRunsOnVirtualThreads() throws ExecutionException, InterruptedException {
+        ThreadPoolTaskExecutor executor = WebSocketChannelConfig.virtualExecutor("test-");
+        executor.initialize();
+        try
+        {
+            assertTrue(executor.submit(() -> Thread.currentThread().isVirtual()).get());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package server.api;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.config.StompBrokerRelayRegistration;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+class WebSocketConfigTest {
+
+    @Test
+    void simpleBroker() {
+        MessageBrokerRegistry registry = mock(MessageBrokerRegistry.class);
+
+        new WebSocketConfig("simple", "localhost", 61613, "guest", "guest")
+                .configureMessageBroker(registry);
+
+        verify(registry).enableSimpleBroker("/topic");
+        verify(registry, never()).enableStompBrokerRelay(any());
+        verify(registry).setApplicationDestinationPrefixes("/app");
+    }
+
+    @Test
+    void brokerRelay() {
+        MessageBrokerRegistry registry = mock(MessageBrokerRegistry.class);
+        StompBrokerRelayRegistration relay = mock(StompBrokerRelayRegistration.class,
+                RETURNS_SELF);
+        when(registry.enableStompBrokerRelay("/topic")).thenReturn(relay);
+
+        new WebSocketConfig("relay", "broker", 1234, "user", "secret")
+                .configureMessageBroker(registry);
+
+        verify(relay).setRelayHost("broker");
+        verify(relay).setRelayPort(1234);
+        verify(relay).setClientLogin("user");
+        verify(relay).setSystemPasscode("secret");
+        verify(registry, never()).enableSimpleBroker(any());
+        verify(registry).setApplicationDestinationPrefixes("/app");
+    }
+
+    @Test
+    void unknownMode() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new WebSocketConfig("cluster", "localhost", 61613, "guest", "guest"));
+    }
+}
@@ -0,0 +1,52 @@
+package server.services;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+class CacheStatisticsTest
+{
+    @Mock
+    private EntityManagerFactory entityManagerFactory;
+    @Mock
+    private SessionFactory sessionFactory;
+    @Mock
+    private Statistics statistics;
+    @Mock
+    private CacheRegionStatistics notes;
+
+    @BeforeEach
+    void setUp()
+    {
+        MockitoAnnotations.openMocks(this);
+        when(entityManagerFactory.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+        when(sessionFactory.getStatistics()).thenReturn(statistics);
+    }
+
+    @Test
+    void regionsAreReported()
+    {
+        when(statistics.getSecondLevelCacheRegionNames())
+                .thenReturn(new String[] { "commons.Note", "gone" });
+        when(statistics.getCacheRegionStatistics("commons.Note")).thenReturn(notes);
+        when(notes.getHitCount()).thenReturn(9L);
+        when(notes.getMissCount()).thenReturn(1L);
+        when(notes.getPutCount()).thenReturn(2L);
+
+        Map<String, CacheStatistics.RegionStatistics> regions =
+                new CacheStatistics(entityManagerFactory).getRegions();
+
+        assertEquals(Map.of("commons.Note", new CacheStatistics.RegionStatistics(9L, 1L, 2L)),
+                regions);
+    }
+}
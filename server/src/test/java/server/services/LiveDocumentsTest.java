@@ -0,0 +1,153 @@
+package server.services;
+
+import commons.NoteDocument;
+import commons.NoteEdit;
+import commons.TextOperation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiveDocumentsTest
+{
+    private LiveDocuments liveDocuments;
+    private List<NoteEdit> published;
+
+    @BeforeEach
+    void setUp()
+    {
+        liveDocuments = new LiveDocuments(true);
+        published = new ArrayList<>();
+    }
+
+    private static TextOperation insert(int position, String text, int length)
+    {
+        return TextOperation.builder().retain(position).insert(text)
+                .retain(length - position).build();
+    }
+
+    @Test
+    void openTwice()
+    {
+        assertEquals(new NoteDocument(1, 0, "abc"), liveDocuments.open(1, "abc"));
+        assertEquals(new NoteDocument(1, 0, "abc"), liveDocuments.open(1, "stale"));
+    }
+
+    @Test
+    void applyInOrder()
+    {
+        liveDocuments.open(1, "abc");
+
+        liveDocuments.apply(new NoteEdit(1, 0, insert(3, "d", 3), "a"), published::add);
+        liveDocuments.apply(new NoteEdit(1, 1, insert(4, "e", 4), "a"), published::add);
+
+        assertEquals(Optional.of("abcde"), liveDocuments.body(1));
+        assertEquals(List.of(0L, 1L), published.stream().map(NoteEdit::revision).toList());
+    }
+
+    @Test
+    void concurrentEditIsTransformed()
+    {
+        liveDocuments.open(1, "abc");
+
+        liveDocuments.apply(new NoteEdit(1, 0, insert(0, "X", 3), "a"), published::add);
+        // Made without knowing the first edit
+        liveDocuments.apply(new NoteEdit(1, 0, insert(3, "Y", 3), "b"), published::add);
+
+        assertEquals(Optional.of("XabcY"), liveDocuments.body(1));
+        assertEquals(new NoteEdit(1, 1, insert(4, "Y", 4), "b"), published.get(1));
+    }
+
+    @Test
+    void rejectUnknownRevision()
+    {
+        liveDocuments.open(1, "abc");
+
+        liveDocuments.apply(new NoteEdit(1, 5, insert(0, "X", 3), "a"), published::add);
+
+        assertTrue(published.getFirst().rejected());
+        assertEquals(Optional.of("abc"), liveDocuments.body(1));
+    }
+
+    @Test
+    void rejectWrongLength()
+    {
+        liveDocuments.open(1, "abc");
+
+        liveDocuments.apply(new NoteEdit(1, 0, insert(0, "X", 10), "a"), published::add);
+
+        assertTrue(published.getFirst().rejected());
+        assertEquals(Optional.of("abc"), liveDocuments.body(1));
+    }
+
+    @Test
+    void rejectClosedNote()
+    {
+        liveDocuments.apply(new NoteEdit(1, 0, insert(0, "X", 3), "a"), published::add);
+
+        assertTrue(published.getFirst().rejected());
+        assertFalse(liveDocuments.isOpen(1));
+    }
+
+    @Test
+    void changedUntilSaved()
+    {
+        liveDocuments.open(1, "abc");
+        liveDocuments.open(2, "def");
+        liveDocuments.apply(new NoteEdit(2, 0, insert(3, "g", 3), "a"), published::add);
+
+        assertEquals(Map.of(2L, new LiveDocuments.Change("defg", 1)), liveDocuments.changed());
+        // Collected again until the save committed
+        assertEquals(Map.of(2L, new LiveDocuments.Change("defg", 1)), liveDocuments.changed());
+
+        liveDocuments.saved(2, 1);
+        assertEquals(Map.of(), liveDocuments.changed());
+    }
+
+    @Test
+    void editedWhileSavingStaysChanged()
+    {
+        liveDocuments.open(1, "abc");
+        liveDocuments.apply(new NoteEdit(1, 0, insert(3, "d", 3), "a"), published::add);
+        liveDocuments.changed();
+        liveDocuments.apply(new NoteEdit(1, 1, insert(4, "e", 4), "a"), published::add);
+
+        liveDocuments.saved(1, 1);
+
+        assertEquals(Map.of(1L, new LiveDocuments.Change("abcde", 2)), liveDocuments.changed());
+    }
+
+    @Test
+    void reopenMovesRevisionsOn()
+    {
+        liveDocuments.open(1, "abc");
+        liveDocuments.apply(new NoteEdit(1, 0, insert(3, "d", 3), "a"), published::add);
+        liveDocuments.saved(1, 1);
+
+        liveDocuments.closeIdle(-1);
+        assertFalse(liveDocuments.isOpen(1));
+
+        // Updated over REST while the note was closed
+        assertEquals(new NoteDocument(1, 2, "xyzw"), liveDocuments.open(1, "xyzw"));
+        // An edit made on the body of the last session is not applied to the new one
+        liveDocuments.apply(new NoteEdit(1, 1, insert(0, "X", 4), "a"), published::add);
+        assertTrue(published.getLast().rejected());
+        assertEquals(Optional.of("xyzw"), liveDocuments.body(1));
+    }
+
+    @Test
+    void closeIdleKeepsUnsavedBody()
+    {
+        liveDocuments.open(1, "abc");
+        liveDocuments.apply(new NoteEdit(1, 0, insert(3, "d", 3), "a"), published::add);
+
+        liveDocuments.closeIdle(-1);
+
+        assertEquals(Optional.of("abcd"), liveDocuments.body(1));
+    }
+}
@@ -0,0 +1,73 @@
+package server.services;
+
+import commons.Note;
+import commons.Notification;
+import commons.NotificationBatch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+class MessageBroadcasterTest
+{
+    @Mock
+    private SimpMessagingTemplate template;
+    private MessageBroadcaster broadcaster;
+
+    @BeforeEach
+    void setUp()
+    {
+        MockitoAnnotations.openMocks(this);
+        broadcaster = new MessageBroadcaster(template);
+    }
+
+    @Test
+    void broadcast()
+    {
+        Notification update = Notification.ofNote(Notification.Type.UPDATE_NOTE,
+                new Note(3L, 5L, "Title", "Body"));
+
+        broadcaster.broadcast("/topic/collections/5", NotificationBatch.of(update));
+
+        verify(template).convertAndSend("/topic/collections/5", NotificationBatch.of(update));
+    }
+
+    @Test
+    void noteChangeGoesToItsCollection()
+    {
+        assertEquals(List.of("/topic/collections/5"), MessageBroadcaster.destinations(
+                Notification.deleted(3L, 5L)));
+    }
+
+    @Test
+    void collectionChangeGoesToTheCollection()
+    {
+        assertEquals(List.of("/topic/collections/4"), MessageBroadcaster.destinations(
+                Notification.of(Notification.Type.DELETE_COLLECTION, 4L)));
+    }
+
+    @Test
+    void localMoveGoesToBothCollections()
+    {
+        Notification move = Notification.moved(Notification.Type.MOVE_NOTE_LOCAL,
+                new Note(3L, 5L, "Title", "Body"), 2L);
+
+        assertEquals(List.of("/topic/collections/5", "/topic/collections/2"),
+                MessageBroadcaster.destinations(move));
+    }
+
+    @Test
+    void foreignMoveGoesToNewCollection()
+    {
+        Notification move = Notification.moved(Notification.Type.MOVE_NOTE_FOREIGN,
+                new Note(3L, 5L, "Title", "Body"), 0L);
+
+        assertEquals(List.of("/topic/collections/5"), MessageBroadcaster.destinations(move));
+    }
+}
@@ -0,0 +1,104 @@
+package server.services;
+
+import commons.Collection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import server.Main;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Latency of creating a note in collections of growing size.
+ * Before the number of the last title was counted per collection, every
+ * creation read all notes of the collection to find the next number.
+ * Not part of the regular test run (surefire only picks up *Test classes), run with
+ * mvn -pl server test -Dtest=NoteCreationBenchmark
+ */
+class NoteCreationBenchmark
+{
+    private static final int[] SIZES = { 10, 10_000, 100_000 };
+    private static final int WARMUP = 50;
+    private static final int CREATIONS = 500;
+    private static final int BATCH = 5_000;
+
+    /**
+     * Far above the IDs the sequence hands out during the benchmark
+     */
+    private static final long FILLER_ID = 1_000_000_000L;
+
+    private ConfigurableApplicationContext context;
+    private NoteService noteService;
+    private CollectionService collectionService;
+    private JdbcTemplate jdbc;
+    private long nextFillerId = FILLER_ID;
+
+    @BeforeEach
+    void setUp()
+    {
+        context = new SpringApplicationBuilder(Main.class)
+                .properties("server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                        "spring.h2.console.enabled=false")
+                .run();
+        noteService = context.getBean(NoteService.class);
+        collectionService = context.getBean(CollectionService.class);
+        jdbc = context.getBean(JdbcTemplate.class);
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        context.close();
+    }
+
+    @Test
+    void latency()
+    {
+        for (int size : SIZES)
+        {
+            long collectionId = fill(size);
+            for (int i = 0; i < WARMUP; i++)
+            {
+                noteService.createNote(collectionId);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < CREATIONS; i++)
+            {
+                noteService.createNote(collectionId);
+            }
+            double perNote = (System.nanoTime() - start) / 1000.0 / CREATIONS;
+            System.out.printf("%,7d notes: %.1f us/creation%n", size, perNote);
+        }
+    }
+
+    /**
+     * Create a collection holding "My note 1" up to "My note size"
+     * @param size the number of notes
+     * @return the ID of the collection
+     */
+    private long fill(int size)
+    {
+        Collection collection = collectionService.createCollection("Benchmark " + size)
+                .orElseThrow();
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 1; i <= size; i++)
+        {
+            rows.add(new Object[] { nextFillerId++, collection.getId(),
+                NoteService.NEW_NOTE_TITLE + i, "A new note :)" });
+            if (rows.size() == BATCH || i == size)
+            {
+                jdbc.batchUpdate("INSERT INTO note (id, collection_id, title, body, revision) "
+                        + "VALUES (?, ?, ?, ?, 0)", rows);
+                rows.clear();
+            }
+        }
+        jdbc.update("UPDATE collection SET last_note_number = ? WHERE id = ?",
+                size, collection.getId());
+        return collection.getId();
+    }
+}
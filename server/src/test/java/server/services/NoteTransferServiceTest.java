@@ -0,0 +1,157 @@
+package server.services;
+
+import commons.ErrorCodes;
+import commons.Note;
+import commons.NoteTransfer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import server.database.CompletedTransfer;
+import server.database.CompletedTransferRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class NoteTransferServiceTest
+{
+    private static final String SOURCE = "http://localhost:8081/";
+
+    @Mock
+    private NoteService noteService;
+    @Mock
+    private CompletedTransferRepository completedTransfers;
+    @Mock
+    private RemoteNotes remoteNotes;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    private NoteTransferService transfers;
+
+    @BeforeEach
+    void setUp()
+    {
+        MockitoAnnotations.openMocks(this);
+        transfers = new NoteTransferService(noteService, completedTransfers, remoteNotes,
+                transactionManager, List.of("HTTP://localhost:8081", "http://localhost:8082/"));
+        when(remoteNotes.delete(eq(SOURCE), anyLong(), any())).thenReturn(true);
+    }
+
+    @Test
+    void noteIsCopiedThenDeletedAtSource()
+    {
+        Note source = new Note(7L, 1L, "Title", "Body");
+        source.setRevision(4L);
+        Note copy = new Note(30L, 2L, "Title", "Body");
+        when(remoteNotes.fetch(SOURCE, 7L)).thenReturn(source);
+        when(noteService.moveNoteToCollection(source, "foreign", 2L))
+                .thenReturn(ResponseEntity.ok(copy));
+
+        ResponseEntity<Note> result = transfers.transfer(2L, new NoteTransfer(SOURCE, 7L, "k"));
+
+        assertEquals(ResponseEntity.ok(copy), result);
+        verify(completedTransfers).save(argThat(x ->
+                x.getTransferKey().equals("k") && x.getNoteId() == 30L
+                        && x.getSourceRevision() == 4L));
+        verify(transactionManager).commit(any());
+        verify(remoteNotes).delete(SOURCE, 7L, 4L);
+    }
+
+    @Test
+    void retryDoesNotCopyAgain()
+    {
+        Note copy = new Note(30L, 2L, "Title", "Body");
+        when(completedTransfers.findById("k"))
+                .thenReturn(Optional.of(new CompletedTransfer("k", 30L, 4L)));
+        when(noteService.getNoteById(30L)).thenReturn(Optional.of(copy));
+
+        ResponseEntity<Note> result = transfers.transfer(2L, new NoteTransfer(SOURCE, 7L, "k"));
+
+        assertEquals(ResponseEntity.ok(copy), result);
+        verify(remoteNotes, never()).fetch(any(), anyLong());
+        verify(noteService, never()).moveNoteToCollection(any(), any(), anyLong());
+        // The delete at the source may be what failed the first time
+        verify(remoteNotes).delete(SOURCE, 7L, 4L);
+    }
+
+    @Test
+    void sourceChangedWhileCopying()
+    {
+        Note source = new Note(7L, 1L, "Title", "Body");
+        source.setRevision(4L);
+        Note copy = new Note(30L, 2L, "Title", "Body");
+        when(remoteNotes.fetch(SOURCE, 7L)).thenReturn(source);
+        when(noteService.moveNoteToCollection(source, "foreign", 2L))
+                .thenReturn(ResponseEntity.ok(copy));
+        when(remoteNotes.delete(SOURCE, 7L, 4L)).thenReturn(false);
+
+        ResponseEntity<Note> result = transfers.transfer(2L, new NoteTransfer(SOURCE, 7L, "k"));
+
+        assertEquals(ResponseEntity.status(ErrorCodes.NOTE_OUT_OF_DATE.getCode()).build(),
+                result);
+        verify(noteService).deleteNoteById(30L);
+        verify(completedTransfers).deleteById("k");
+    }
+
+    @Test
+    void noteMissingAtSource()
+    {
+        when(remoteNotes.fetch(SOURCE, 7L))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.NOT_FOUND, "Not Found",
+                        HttpHeaders.EMPTY, new byte[0], null));
+
+        ResponseEntity<Note> result = transfers.transfer(2L, new NoteTransfer(SOURCE, 7L, "k"));
+
+        assertEquals(ResponseEntity.badRequest().build(), result);
+        verifyNoInteractions(noteService);
+    }
+
+    @Test
+    void sourceUnreachable()
+    {
+        when(remoteNotes.fetch(SOURCE, 7L)).thenThrow(new ResourceAccessException("down"));
+
+        ResponseEntity<Note> result = transfers.transfer(2L, new NoteTransfer(SOURCE, 7L, "k"));
+
+        assertEquals(ResponseEntity.status(ErrorCodes.SERVER_UNREACHABLE.getCode()).build(),
+                result);
+        verifyNoInteractions(noteService);
+        verify(completedTransfers, never()).save(any());
+    }
+
+    @Test
+    void missingCollectionKeepsSource()
+    {
+        Note source = new Note(7L, 1L, "Title", "Body");
+        when(remoteNotes.fetch(SOURCE, 7L)).thenReturn(source);
+        when(noteService.moveNoteToCollection(source, "foreign", 2L))
+                .thenReturn(ResponseEntity.badRequest().build());
+
+        ResponseEntity<Note> result = transfers.transfer(2L, new NoteTransfer(SOURCE, 7L, "k"));
+
+        assertEquals(ResponseEntity.badRequest().build(), result);
+        verify(completedTransfers, never()).save(any());
+        verify(remoteNotes, never()).delete(any(), anyLong(), any());
+    }
+
+    @Test
+    void invalidTransfer()
+    {
+        assertEquals(ResponseEntity.badRequest().build(), transfers.transfer(2L, null));
+        assertEquals(ResponseEntity.badRequest().build(),
+                transfers.transfer(2L, new NoteTransfer(SOURCE, 7L, " ")));
+        assertEquals(ResponseEntity.badRequest().build(),
+                transfers.transfer(2L, new NoteTransfer("file:///etc/passwd", 7L, "k")));
+        assertEquals(ResponseEntity.badRequest().build(),
+                transfers.transfer(2L, new NoteTransfer("http://169.254.169.254/", 7L, "k")));
+        verify(remoteNotes, never()).fetch(any(), anyLong());
+    }
+}
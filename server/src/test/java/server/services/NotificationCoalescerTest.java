@@ -0,0 +1,143 @@
+package server.services;
+
+import commons.Note;
+import commons.Notification;
+import commons.NotificationBatch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+class NotificationCoalescerTest
+{
+    @Mock
+    private MessageBroadcaster broadcaster;
+    private NotificationCoalescer coalescer;
+
+    @BeforeEach
+    void setUp()
+    {
+        MockitoAnnotations.openMocks(this);
+        coalescer = new NotificationCoalescer(broadcaster, 3);
+    }
+
+    private static Notification update(long id, String body, String origin)
+    {
+        return Notification.ofNote(Notification.Type.UPDATE_NOTE, new Note(id, 5L, "T", body))
+                .withOrigin(origin);
+    }
+
+    @Test
+    void nothingIsPushedBeforeFlush()
+    {
+        coalescer.add(update(1L, "a", "client"));
+
+        verifyNoInteractions(broadcaster);
+    }
+
+    @Test
+    void updatesToSameNoteAreMerged()
+    {
+        coalescer.add(update(1L, "a", "client"));
+        coalescer.add(update(2L, "x", "client"));
+        coalescer.add(update(1L, "ab", "client"));
+        coalescer.add(update(1L, "abc", "client"));
+
+        coalescer.flush();
+
+        verify(broadcaster).broadcast("/topic/collections/5", new NotificationBatch(
+                List.of(update(1L, "abc", "client"), update(2L, "x", "client"))));
+        verifyNoMoreInteractions(broadcaster);
+    }
+
+    @Test
+    void updateIsMergedIntoAdd()
+    {
+        Note note = new Note(1L, 5L, "T", "a");
+        coalescer.add(Notification.ofNote(Notification.Type.ADD_NOTE, note));
+        coalescer.add(update(1L, "ab", null));
+
+        coalescer.flush();
+
+        verify(broadcaster).broadcast("/topic/collections/5", NotificationBatch.of(
+                Notification.ofNote(Notification.Type.ADD_NOTE, new Note(1L, 5L, "T", "ab"))));
+    }
+
+    @Test
+    void updatesOfDifferentClientsAreKept()
+    {
+        coalescer.add(update(1L, "a", "client"));
+        coalescer.add(update(1L, "ab", "other"));
+
+        coalescer.flush();
+
+        verify(broadcaster).broadcast("/topic/collections/5", new NotificationBatch(
+                List.of(update(1L, "a", "client"), update(1L, "ab", "other"))));
+    }
+
+    @Test
+    void updateAfterDeleteIsNotMergedBeforeIt()
+    {
+        coalescer.add(update(1L, "a", null));
+        coalescer.add(Notification.deleted(1L, 5L));
+        coalescer.add(update(1L, "ab", null));
+
+        coalescer.flush();
+
+        verify(broadcaster).broadcast("/topic/collections/5", new NotificationBatch(
+                List.of(update(1L, "a", null), Notification.deleted(1L, 5L),
+                        update(1L, "ab", null))));
+    }
+
+    @Test
+    void fullBatchIsPushedRightAway()
+    {
+        coalescer.add(update(1L, "a", null));
+        coalescer.add(update(2L, "a", null));
+        coalescer.add(update(3L, "a", null));
+
+        verify(broadcaster).broadcast("/topic/collections/5", new NotificationBatch(
+                List.of(update(1L, "a", null), update(2L, "a", null), update(3L, "a", null))));
+
+        coalescer.flush();
+        verifyNoMoreInteractions(broadcaster);
+    }
+
+    @Test
+    void topicsArePushedSeparately()
+    {
+        Notification move = Notification.moved(Notification.Type.MOVE_NOTE_LOCAL,
+                new Note(1L, 6L, "T", "a"), 5L);
+        coalescer.add(move);
+
+        coalescer.flush();
+
+        verify(broadcaster).broadcast("/topic/collections/6", NotificationBatch.of(move));
+        verify(broadcaster).broadcast("/topic/collections/5", NotificationBatch.of(move));
+    }
+
+    @Test
+    void invalidBatchSize()
+    {
+        assertThrows(IllegalArgumentException.class,
+                () -> new NotificationCoalescer(broadcaster, 0));
+    }
+
+    @Test
+    void bulkChangesAreQueuedLikeSingleOnes()
+    {
+        coalescer.addAll(new NotificationBatch(List.of(update(1L, "a", "client"),
+                update(2L, "x", "client"), update(1L, "ab", "client"))));
+
+        coalescer.flush();
+
+        verify(broadcaster).broadcast("/topic/collections/5", new NotificationBatch(
+                List.of(update(1L, "ab", "client"), update(2L, "x", "client"))));
+        verifyNoMoreInteractions(broadcaster);
+    }
+}
@@ -0,0 +1,73 @@
+package server.services;
+
+import commons.Notification;
+import commons.NotificationBatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.List;
+
+import static org.mockito.Mockito.verify;
+
+class NotificationPublisherTest
+{
+    @Mock
+    private ApplicationEventPublisher events;
+    private NotificationPublisher publisher;
+
+    @BeforeEach
+    void setUp()
+    {
+        MockitoAnnotations.openMocks(this);
+        publisher = new NotificationPublisher(events);
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void originIsRequestingClient()
+    {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(Notification.CLIENT_ID_HEADER, "client");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        publisher.publish(Notification.of(Notification.Type.DELETE_NOTE, 3L));
+
+        verify(events).publishEvent(Notification.of(Notification.Type.DELETE_NOTE, 3L)
+                .withOrigin("client"));
+    }
+
+    @Test
+    void noOriginOutsideRequest()
+    {
+        publisher.publish(Notification.of(Notification.Type.DELETE_NOTE, 3L));
+
+        verify(events).publishEvent(Notification.of(Notification.Type.DELETE_NOTE, 3L));
+    }
+
+    @Test
+    void bulkChangesArePublishedTogether()
+    {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(Notification.CLIENT_ID_HEADER, "client");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        publisher.publishAll(List.of(Notification.of(Notification.Type.DELETE_NOTE, 3L),
+                Notification.of(Notification.Type.DELETE_NOTE, 4L)));
+
+        verify(events).publishEvent(new NotificationBatch(List.of(
+                Notification.of(Notification.Type.DELETE_NOTE, 3L).withOrigin("client"),
+                Notification.of(Notification.Type.DELETE_NOTE, 4L).withOrigin("client"))));
+    }
+}
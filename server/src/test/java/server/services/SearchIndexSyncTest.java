@@ -0,0 +1,77 @@
+package server.services;
+
+import commons.Note;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import server.database.ChangeLogEntry;
+import server.database.NoteRepository;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+class SearchIndexSyncTest
+{
+    @Mock
+    private ChangeLog changeLog;
+    @Mock
+    private NoteRepository noteRepository;
+    private SearchIndex searchIndex;
+    private SearchIndexSync sync;
+
+    @BeforeEach
+    void setUp()
+    {
+        MockitoAnnotations.openMocks(this);
+        searchIndex = new SearchIndex(noteRepository);
+        sync = new SearchIndexSync(changeLog, noteRepository, searchIndex);
+    }
+
+    @Test
+    void waitsForTheIndex()
+    {
+        sync.sync();
+
+        verifyNoInteractions(changeLog, noteRepository);
+    }
+
+    @Test
+    void indexesChangesOfOtherServers()
+    {
+        when(changeLog.currentRevision()).thenReturn(4L);
+        Note saved = new Note(2L, 1L, "Saved elsewhere", "milk");
+        Note deleted = new Note(3L, 1L, "Deleted elsewhere", "milk");
+        searchIndex.index(deleted);
+        when(changeLog.changesSince(4L, NoteService.MAX_PAGE_SIZE)).thenReturn(List.of(
+                new ChangeLogEntry(2L, 1L, 5L, false),
+                new ChangeLogEntry(3L, 1L, 6L, true)));
+        when(noteRepository.findAllById(List.of(2L))).thenReturn(List.of(saved));
+
+        // Starts after the changes the index was built from
+        sync.start();
+        sync.sync();
+
+        assertEquals(List.of(2L), searchIndex.search("milk", null, 0, 10));
+        // The next sync continues after the last change
+        sync.sync();
+        verify(changeLog).changesSince(6L, NoteService.MAX_PAGE_SIZE);
+    }
+
+    @Test
+    void skipsOwnChanges()
+    {
+        Note own = new Note(2L, 1L, "Saved here", "milk");
+        own.setRevision(5L);
+        searchIndex.index(own);
+        when(changeLog.changesSince(anyLong(), anyInt())).thenReturn(List.of(
+                new ChangeLogEntry(2L, 1L, 5L, false)));
+
+        sync.start();
+        sync.sync();
+
+        verify(noteRepository, never()).findAllById(any());
+    }
+}
@@ -0,0 +1,153 @@
+package server.services;
+
+import commons.Note;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import server.database.NoteRepository;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SearchIndexTest
+{
+    private NoteRepository noteRepository;
+    private SearchIndex searchIndex;
+
+    @BeforeEach
+    void setUp()
+    {
+        noteRepository = mock(NoteRepository.class);
+        searchIndex = new SearchIndex(noteRepository);
+    }
+
+    private static Note note(long id, long collectionId, String title, String body)
+    {
+        Note note = new Note(collectionId, title, body);
+        ReflectionTestUtils.setField(note, "id", id);
+        return note;
+    }
+
+    @Test
+    void findsBodyWord()
+    {
+        searchIndex.index(note(1, 1, "Groceries", "Milk, eggs and bread"));
+        searchIndex.index(note(2, 1, "Todo", "Call the plumber"));
+
+        assertEquals(List.of(1L), searchIndex.search("EGGS", null, 0, 10));
+    }
+
+    @Test
+    void lastWordIsPrefix()
+    {
+        searchIndex.index(note(1, 1, "Groceries", "Milk, eggs and bread"));
+
+        assertEquals(List.of(1L), searchIndex.search("milk br", null, 0, 10));
+        assertEquals(List.of(), searchIndex.search("br milk", null, 0, 10));
+    }
+
+    @Test
+    void allWordsRequired()
+    {
+        searchIndex.index(note(1, 1, "Groceries", "Milk, eggs and bread"));
+        searchIndex.index(note(2, 1, "Breakfast", "Eggs"));
+
+        assertEquals(List.of(1L), searchIndex.search("eggs milk", null, 0, 10));
+    }
+
+    @Test
+    void titleRanksHigher()
+    {
+        searchIndex.index(note(1, 1, "Notes", "Something about java"));
+        searchIndex.index(note(2, 1, "Java", "Something"));
+
+        assertEquals(List.of(2L, 1L), searchIndex.search("java", null, 0, 10));
+    }
+
+    @Test
+    void updateReplacesOldWords()
+    {
+        searchIndex.index(note(1, 1, "Title", "old text"));
+        searchIndex.index(note(1, 1, "Title", "new text"));
+
+        assertEquals(List.of(), searchIndex.search("old", null, 0, 10));
+        assertEquals(List.of(1L), searchIndex.search("new", null, 0, 10));
+    }
+
+    @Test
+    void olderRevisionIsIgnored()
+    {
+        Note newer = note(1, 1, "Title", "new text");
+        newer.setRevision(6L);
+        Note older = note(1, 1, "Title", "old text");
+        older.setRevision(5L);
+
+        searchIndex.index(newer);
+        searchIndex.index(older);
+
+        assertEquals(List.of(), searchIndex.search("old", null, 0, 10));
+        assertEquals(List.of(1L), searchIndex.search("new", null, 0, 10));
+    }
+
+    @Test
+    void remove()
+    {
+        searchIndex.index(note(1, 1, "Title", "text"));
+        searchIndex.remove(1);
+
+        assertEquals(List.of(), searchIndex.search("text", null, 0, 10));
+    }
+
+    @Test
+    void removeCollection()
+    {
+        searchIndex.index(note(1, 1, "Title", "text"));
+        searchIndex.index(note(2, 2, "Title", "text"));
+        searchIndex.removeCollection(1);
+
+        assertEquals(List.of(2L), searchIndex.search("text", null, 0, 10));
+    }
+
+    @Test
+    void collectionFilter()
+    {
+        searchIndex.index(note(1, 1, "Title", "text"));
+        searchIndex.index(note(2, 2, "Title", "text"));
+
+        assertEquals(List.of(2L), searchIndex.search("text", 2L, 0, 10));
+    }
+
+    @Test
+    void pagination()
+    {
+        for (long i = 1; i <= 5; i++)
+        {
+            searchIndex.index(note(i, 1, "Title", "text"));
+        }
+
+        assertEquals(List.of(1L, 2L), searchIndex.search("text", null, 0, 2));
+        assertEquals(List.of(5L), searchIndex.search("text", null, 2, 2));
+    }
+
+    @Test
+    void emptyQuery()
+    {
+        searchIndex.index(note(1, 1, "Title", "text"));
+
+        assertEquals(List.of(), searchIndex.search("  ", null, 0, 10));
+    }
+
+    @Test
+    void rebuild()
+    {
+        when(noteRepository.findAll()).thenReturn(List.of(note(3, 1, "Loaded", "from db")));
+        searchIndex.index(note(1, 1, "Stale", "entry"));
+
+        searchIndex.rebuild();
+
+        assertEquals(List.of(), searchIndex.search("stale", null, 0, 10));
+        assertEquals(List.of(3L), searchIndex.search("loaded", null, 0, 10));
+    }
+}
@@ -0,0 +1,61 @@
+package server.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+class WebSocketStatisticsTest
+{
+    @Mock
+    private ThreadPoolTaskExecutor inbound;
+    @Mock
+    private ThreadPoolTaskExecutor outbound;
+    private WebSocketStatistics statistics;
+
+    @BeforeEach
+    void setUp()
+    {
+        MockitoAnnotations.openMocks(this);
+        statistics = new WebSocketStatistics(inbound, outbound);
+    }
+
+    private void close(CloseStatus status)
+    {
+        Message<byte[]> message = MessageBuilder.withPayload(new byte[0]).build();
+        statistics.sessionClosed(new SessionDisconnectEvent(this, message, "s1", status));
+    }
+
+    @Test
+    void channelLoadIsReported()
+    {
+        when(inbound.getPoolSize()).thenReturn(4);
+        when(inbound.getActiveCount()).thenReturn(1);
+        when(outbound.getPoolSize()).thenReturn(8);
+        when(outbound.getActiveCount()).thenReturn(8);
+        when(outbound.getQueueSize()).thenReturn(120);
+
+        WebSocketStatistics.Snapshot snapshot = statistics.getSnapshot();
+
+        assertEquals(new WebSocketStatistics.ChannelStatistics(4, 1, 0), snapshot.inbound());
+        assertEquals(new WebSocketStatistics.ChannelStatistics(8, 8, 120), snapshot.outbound());
+    }
+
+    @Test
+    void onlySlowClientsAreCounted()
+    {
+        close(CloseStatus.SESSION_NOT_RELIABLE);
+        close(CloseStatus.NORMAL);
+        close(CloseStatus.SESSION_NOT_RELIABLE);
+
+        assertEquals(2, statistics.getSnapshot().slowClients());
+    }
+}